@@ -0,0 +1,63 @@
+package com.bloyot.recordhomeworkapi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of a bulk upload of records: how many lines were added and how many were rejected, along with why the first few
+ * rejected lines couldn't be parsed.
+ */
+public class BatchResult {
+
+    private long accepted;
+    private long rejected;
+    private final List<LineError> errors = new ArrayList<>();
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the first rejected lines, in the order they were uploaded, up to the max number of errors kept
+     */
+    public List<LineError> getErrors() {
+        return errors;
+    }
+
+    void addAccepted(int count) {
+        accepted += count;
+    }
+
+    void addRejected(long line, String error, int maxErrors) {
+        rejected++;
+        if (errors.size() < maxErrors) {
+            errors.add(new LineError(line, error));
+        }
+    }
+
+    /**
+     * A line that was rejected, with its line number (starting from 1) and why it couldn't be parsed
+     */
+    public static class LineError {
+
+        private final long line;
+        private final String error;
+
+        public LineError(long line, String error) {
+            this.line = line;
+            this.error = error;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -1,16 +1,36 @@
 package com.bloyot.recordhomeworkapi;
 
 import com.bloyot.recordhomeworkcommon.Record;
+import com.bloyot.recordhomeworkcommon.RecordCollation;
 import com.bloyot.recordhomeworkcommon.RecordParseException;
 import com.bloyot.recordhomeworkcommon.RecordParser;
+import com.bloyot.recordhomeworkcommon.RecordSnapshot;
+import com.bloyot.recordhomeworkcommon.StringPool;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
 
 import static com.bloyot.recordhomeworkcommon.RecordParser.VALID_DELIMITERS;
 
@@ -21,11 +41,90 @@ import static com.bloyot.recordhomeworkcommon.RecordParser.VALID_DELIMITERS;
 @RequestMapping("/records")
 public class RecordController {
 
+    /**
+     * The response header holding the cursor of the next page of records.
+     */
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * Newline delimited json, one record per line, which the get endpoints stream out when asked for with the Accept header.
+     */
+    static final String NDJSON = "application/x-ndjson";
+    private static final MediaType NDJSON_TYPE = MediaType.parseMediaType(NDJSON);
+
+    /**
+     * How many parsed records of a bulk upload to collect before adding them to the store.
+     */
+    private static final int INSERT_BATCH_SIZE = 1024;
+
     /**
      * This is our stand-in for a database/datastore in this toy application. Simply add records here when post requests
-     * are made, and return them when get requests are made.
+     * are made, and return them when get requests are made. Safe for concurrent requests, and keeps the records indexed in
+     * every sort order so a get doesn't have to sort them.
      */
-    private final List<Record> records = new ArrayList<>();
+    private final RecordStore store;
+
+    /**
+     * Names and colors repeat heavily between records, so share a single instance of each value between the stored records
+     * rather than each record holding its own copy.
+     */
+    private final StringPool stringPool = new StringPool();
+
+    /**
+     * Spring's json mapper, to write streamed and cached records the same as the records in a json response.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The serialized json responses of the get endpoints, valid until the store's version changes.
+     */
+    private final ResponseCache cache;
+
+    /**
+     * Different for every run of the api, so the etag of a response from before a restart never matches a response of the
+     * same store version after it.
+     */
+    private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Optionally starts with the records of a prebuilt snapshot (see {@link RecordSnapshot}), set with the records.snapshot
+     * property. Loading a snapshot is much faster than posting the records one at a time.
+     *
+     * Last names are compared by their chars unless the records.collation.locale property is set (to a language tag such as
+     * en-US, or "root" for an order that suits most languages), in which case they're ordered for that locale with
+     * precomputed collation keys (see {@link RecordCollation}). records.collation.case-sensitive=false also treats names
+     * that only differ by case as equal.
+     *
+     * The json responses of the get endpoints are cached (see {@link ResponseCache}), up to records.cache.max-bytes of them.
+     * @param snapshot path to the snapshot file, or empty to start with no records
+     * @param collationLocale language tag of the locale to order last names for, or empty to compare their chars
+     * @param caseSensitive whether the collation tells upper and lower case apart
+     * @param cacheMaxBytes the most bytes of responses to cache, 0 to not cache them
+     * @param objectMapper the json mapper to stream records out with
+     * @throws IOException if the snapshot can't be read
+     */
+    public RecordController(@Value("${records.snapshot:}") String snapshot,
+                            @Value("${records.collation.locale:}") String collationLocale,
+                            @Value("${records.collation.case-sensitive:true}") boolean caseSensitive,
+                            @Value("${records.cache.max-bytes:67108864}") long cacheMaxBytes,
+                            ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        this.cache = new ResponseCache(cacheMaxBytes);
+        RecordCollation collation = null;
+        if (!StringUtils.isEmpty(collationLocale)) {
+            Locale locale;
+            try {
+                locale = RecordCollation.parseLocale(collationLocale);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid records.collation.locale " + collationLocale, e);
+            }
+            collation = new RecordCollation(locale, caseSensitive);
+        }
+        store = new RecordStore(collation);
+        if (!StringUtils.isEmpty(snapshot)) {
+            store.addAll(RecordSnapshot.read(Paths.get(snapshot)).asRecords());
+        }
+    }
 
     /**
      * Allows creation of a record by sending the record data and delimiter in a json message mapped to {@link CreateRecordCommand}.
@@ -47,7 +146,7 @@ public class RecordController {
 
         // parse and add to the record list
         try {
-            records.add(RecordParser.parseLine(recordCommand.getData(), recordCommand.getDelimiter()));
+            store.add(RecordParser.parseLine(recordCommand.getData(), recordCommand.getDelimiter(), stringPool));
         } catch (RecordParseException e) {
             return badRequest("Unable to parse provided record data");
         }
@@ -56,34 +155,159 @@ public class RecordController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Bulk creation of records from a plain text body with one record per line, all with the same delimiter. The body is parsed
+     * as it's read, so it's never held in memory as a whole, and the records are added to the store in batches as they're
+     * parsed. Lines that can't be parsed are skipped rather than failing the whole upload, and blank lines are ignored.
+     * @param delimiter the delimiter of every line
+     * @return 200 with a {@link BatchResult} of the accepted and rejected lines, 400 if the delimiter is invalid
+     * @throws IOException if unable to read the body
+     */
+    @PostMapping(path = "/batch", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity createRecordsFromText(@RequestParam(required = false) String delimiter, HttpServletRequest request) throws IOException {
+        return createRecords(delimiter, request.getInputStream());
+    }
+
+    /**
+     * Same as {@link #createRecordsFromText}, but with the lines uploaded as the file part of a multipart body. Unlike a plain text
+     * body the part isn't parsed as it arrives: the multipart resolver writes it to a temporary file before this runs, so it's
+     * bounded by spring.servlet.multipart.max-file-size, and is only parsed (as it's read back) once the upload is complete.
+     * @param delimiter the delimiter of every line
+     * @param file the file of records
+     * @return 200 with a {@link BatchResult} of the accepted and rejected lines, 400 if the delimiter is invalid
+     * @throws IOException if unable to read the file
+     */
+    @PostMapping(path = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity createRecordsFromFile(@RequestParam(required = false) String delimiter, @RequestParam MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return createRecords(delimiter, in);
+        }
+    }
+
     /**
      * Returns the records sorted by gender.
      * @param sortOrder whether to sort in ascending or descending order, defaults to asc
-     * @return A list of {@link Record}
+     * @param limit the most records to return, defaults to all of them
+     * @param cursor where to continue from, the X-Next-Cursor header of the previous page
+     * @param request the request, the records are written straight to its response
+     * @return A list of {@link Record}, 400 if the limit or cursor are invalid, 304 if the If-None-Match header has the current etag
+     * @throws IOException if unable to write the records
      */
     @GetMapping("/gender")
-    public List<Record> getRecordsSortedByGender(@RequestParam(required = false) String sortOrder) {
-        return getRecords(Comparator.comparing(Record::getGender), sortOrder);
+    public ResponseEntity getRecordsSortedByGender(@RequestParam(required = false) String sortOrder,
+                                                   @RequestParam(required = false) Integer limit,
+                                                   @RequestParam(required = false) String cursor,
+                                                   ServletWebRequest request) throws IOException {
+        return getRecords(RecordStore.SortKey.GENDER, sortOrder, limit, cursor, request);
+    }
+
+    /**
+     * Same as {@link #getRecordsSortedByGender}, but streams the records out as newline delimited json.
+     */
+    @GetMapping(path = "/gender", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamRecordsSortedByGender(@RequestParam(required = false) String sortOrder,
+                                                      @RequestParam(required = false) Integer limit,
+                                                      @RequestParam(required = false) String cursor) {
+        return streaming(streamRecords(RecordStore.SortKey.GENDER, sortOrder, limit, cursor));
     }
 
     /**
      * Returns the records sorted by birth date.
      * @param sortOrder whether to sort in ascending or descending order, defaults to asc
-     * @return A list of {@link Record}
+     * @param limit the most records to return, defaults to all of them
+     * @param cursor where to continue from, the X-Next-Cursor header of the previous page
+     * @param request the request, the records are written straight to its response
+     * @return A list of {@link Record}, 400 if the limit or cursor are invalid, 304 if the If-None-Match header has the current etag
+     * @throws IOException if unable to write the records
      */
     @GetMapping("/birthdate")
-    public List<Record> getRecordsSortedByBirthDate(@RequestParam(required = false) String sortOrder) {
-        return getRecords(Comparator.comparing(Record::getDateOfBirth), sortOrder);
+    public ResponseEntity getRecordsSortedByBirthDate(@RequestParam(required = false) String sortOrder,
+                                                   @RequestParam(required = false) Integer limit,
+                                                   @RequestParam(required = false) String cursor,
+                                                   ServletWebRequest request) throws IOException {
+        return getRecords(RecordStore.SortKey.BIRTH_DATE, sortOrder, limit, cursor, request);
+    }
+
+    /**
+     * Same as {@link #getRecordsSortedByBirthDate}, but streams the records out as newline delimited json.
+     */
+    @GetMapping(path = "/birthdate", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamRecordsSortedByBirthDate(@RequestParam(required = false) String sortOrder,
+                                                      @RequestParam(required = false) Integer limit,
+                                                      @RequestParam(required = false) String cursor) {
+        return streaming(streamRecords(RecordStore.SortKey.BIRTH_DATE, sortOrder, limit, cursor));
     }
 
     /**
      * Returns the records sorted by lastName.
      * @param sortOrder whether to sort in ascending or descending order, defaults to asc
-     * @return A list of {@link Record}
+     * @param limit the most records to return, defaults to all of them
+     * @param cursor where to continue from, the X-Next-Cursor header of the previous page
+     * @param request the request, the records are written straight to its response
+     * @return A list of {@link Record}, 400 if the limit or cursor are invalid, 304 if the If-None-Match header has the current etag
+     * @throws IOException if unable to write the records
      */
     @GetMapping("/name")
-    public List<Record> getRecordsSortedByLastName(@RequestParam(required = false) String sortOrder) {
-        return getRecords(Comparator.comparing(Record::getLastName), sortOrder);
+    public ResponseEntity getRecordsSortedByLastName(@RequestParam(required = false) String sortOrder,
+                                                   @RequestParam(required = false) Integer limit,
+                                                   @RequestParam(required = false) String cursor,
+                                                   ServletWebRequest request) throws IOException {
+        return getRecords(RecordStore.SortKey.LAST_NAME, sortOrder, limit, cursor, request);
+    }
+
+    /**
+     * Same as {@link #getRecordsSortedByLastName}, but streams the records out as newline delimited json.
+     */
+    @GetMapping(path = "/name", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamRecordsSortedByLastName(@RequestParam(required = false) String sortOrder,
+                                                      @RequestParam(required = false) Integer limit,
+                                                      @RequestParam(required = false) String cursor) {
+        return streaming(streamRecords(RecordStore.SortKey.LAST_NAME, sortOrder, limit, cursor));
+    }
+
+    /**
+     * Returns how well the response cache of the get endpoints is doing: its hits, misses and evictions, and how many responses
+     * and bytes it holds.
+     * @return the {@link ResponseCache.Stats}
+     */
+    @GetMapping("/cache")
+    public ResponseCache.Stats getCacheStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Helper method to parse and add the UTF-8 lines of a bulk upload, keeping up to {@link RecordParser#DEFAULT_MAX_ERRORS}
+     * errors in the result
+     */
+    private ResponseEntity createRecords(String delimiter, InputStream in) throws IOException {
+        if (StringUtils.isEmpty(delimiter) || !VALID_DELIMITERS.contains(delimiter)) {
+            return badRequest("Invalid delimiter");
+        }
+
+        BatchResult result = new BatchResult();
+        List<Record> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        for (String line; (line = reader.readLine()) != null; ) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                batch.add(RecordParser.parseLine(line, delimiter, stringPool));
+            } catch (RecordParseException e) {
+                result.addRejected(lineNumber, e.getMessage(), RecordParser.DEFAULT_MAX_ERRORS);
+                continue;
+            }
+            if (batch.size() == INSERT_BATCH_SIZE) {
+                store.addAll(batch);
+                result.addAccepted(batch.size());
+                batch.clear();
+            }
+        }
+        store.addAll(batch);
+        result.addAccepted(batch.size());
+        return ResponseEntity.ok(result);
     }
 
     /**
@@ -94,14 +318,184 @@ public class RecordController {
     }
 
     /**
-     * Helper method to return sorted records
+     * Helper method to write sorted records out as a json array, read in order from the store's index for the sort key. With a
+     * limit or cursor only writes a page of records, and if there are more after it, the cursor to continue from in the
+     * X-Next-Cursor header.
+     *
+     * The response is tagged with an etag of the store version, so a client that already has it gets a 304, which doesn't need
+     * the body. The records are serialized straight to the response as they're read, keeping a copy only while it fits in the
+     * cache, so a response is cached until a record is added if it fits, and otherwise never held in memory as a whole.
+     * @return a 400 if the limit or cursor are invalid, otherwise null once the response has been written
      */
-    private List<Record> getRecords(Comparator<Record> comparator, String sortOrder) {
+    private ResponseEntity getRecords(RecordStore.SortKey sortKey, String sortOrder, Integer limit, String cursor,
+                                      ServletWebRequest request) throws IOException {
         // no need to check for asc as that is the default
-        if ("desc".equalsIgnoreCase(sortOrder)) {
-            comparator = comparator.reversed();
+        boolean descending = "desc".equalsIgnoreCase(sortOrder);
+        // the version has to be read first, so the records read after it are at least as new as the version they're cached as
+        long version = store.getVersion();
+        String key = sortKey + ":" + descending + ":" + limit + ":" + cursor;
+        ResponseCache.Entry cached = cache.get(key, version);
+        Selection selection = null;
+        if (cached == null) {
+            try {
+                selection = select(sortKey, descending, limit, cursor);
+            } catch (IllegalArgumentException e) {
+                return badRequest(e.getMessage());
+            }
+        }
+        // sets the etag header, and the 304 if the If-None-Match header has it
+        if (request.checkNotModified(etagPrefix + "-" + version)) {
+            return null;
+        }
+
+        HttpServletResponse response = request.getResponse();
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        String nextCursor = cached != null ? cached.getNextCursor() : selection.nextCursor;
+        if (nextCursor != null) {
+            response.setHeader(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        if (cached != null) {
+            response.setContentLength(cached.getBody().length);
+            response.getOutputStream().write(cached.getBody());
+            return null;
+        }
+        CopyingOutputStream out = new CopyingOutputStream(response.getOutputStream(), cache.getMaxBytes());
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeObject(selection.records);
+        }
+        if (out.getCopy() != null) {
+            cache.put(key, new ResponseCache.Entry(version, out.getCopy(), nextCursor));
+        }
+        // the response has been written, so there's nothing more for spring to do
+        return null;
+    }
+
+    /**
+     * Helper method to stream sorted records out as newline delimited json, a page of them with a limit or cursor, the same as
+     * {@link #getRecords}. Streamed responses can be any size, so they aren't cached.
+     */
+    private ResponseEntity streamRecords(RecordStore.SortKey sortKey, String sortOrder, Integer limit, String cursor) {
+        Selection selection;
+        try {
+            selection = select(sortKey, "desc".equalsIgnoreCase(sortOrder), limit, cursor);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (selection.nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, selection.nextCursor);
+        }
+        return response.contentType(NDJSON_TYPE).body(ndjson(selection.records));
+    }
+
+    /**
+     * Helper method to read the records a get endpoint returns, by walking the store's index for the sort key. Without a limit
+     * that's a live view of every record (after the cursor, if there is one), rather than a copy of them, and with a limit a
+     * page of them.
+     * @throws IllegalArgumentException with the message of the 400 response if the limit or cursor is invalid
+     */
+    private Selection select(RecordStore.SortKey sortKey, boolean descending, Integer limit, String cursor) {
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        if (StringUtils.isEmpty(cursor)) {
+            cursor = null;
+        }
+        try {
+            if (limit == null) {
+                return new Selection(store.records(sortKey, descending, cursor), null);
+            }
+            RecordStore.Page page = store.page(sortKey, descending, cursor, limit);
+            return new Selection(page.getRecords(), page.getNextCursor());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
         }
+    }
+
+    /**
+     * Helper method to stream records out as newline delimited json. The records are serialized as they're iterated, which for
+     * a live view of the store's index means only a buffer's worth is held in memory however many records there are, and the
+     * first records are sent before the rest are serialized.
+     */
+    private StreamingResponseBody ndjson(Iterable<Record> records) {
+        return out -> {
+            // the generator buffers its output, and the servlet container sends each buffer full as a chunk
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                for (Record record : records) {
+                    generator.writeObject(record);
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+    }
+
+    /**
+     * Spring only streams the body of a response entity declared to hold a {@link StreamingResponseBody}, so an error response
+     * has to be written out as one too.
+     */
+    private static ResponseEntity<StreamingResponseBody> streaming(ResponseEntity<?> response) {
+        Object body = response.getBody();
+        StreamingResponseBody streamingBody = body instanceof StreamingResponseBody ? (StreamingResponseBody) body
+            : out -> out.write(String.valueOf(body).getBytes(StandardCharsets.UTF_8));
+        return new ResponseEntity<>(streamingBody, response.getHeaders(), response.getStatusCode());
+    }
 
-        return records.stream().sorted(comparator).collect(Collectors.toList());
+    /**
+     * The records a get endpoint returns, and the cursor of the page after them if there is one.
+     */
+    private static final class Selection {
+        private final Iterable<Record> records;
+        private final String nextCursor;
+
+        Selection(Iterable<Record> records, String nextCursor) {
+            this.records = records;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    /**
+     * Passes everything written on to the response, keeping a copy of it until the copy would grow past a limit, after which
+     * the copy is dropped.
+     */
+    private static final class CopyingOutputStream extends FilterOutputStream {
+        private final long maxBytes;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CopyingOutputStream(OutputStream out, long maxBytes) {
+            super(out);
+            // leave some room under the largest array a byte array stream can grow to
+            this.maxBytes = Math.min(maxBytes, Integer.MAX_VALUE - 8);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy(b, off, len);
+        }
+
+        private void copy(byte[] b, int off, int len) {
+            if (copy != null && copy.size() + (long) len > maxBytes) {
+                copy = null;
+            }
+            if (copy != null) {
+                copy.write(b, off, len);
+            }
+        }
+
+        /**
+         * @return everything written, or null if it didn't fit
+         */
+        byte[] getCopy() {
+            return copy == null ? null : copy.toByteArray();
+        }
     }
 }
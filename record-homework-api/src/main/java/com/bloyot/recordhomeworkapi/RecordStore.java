@@ -0,0 +1,273 @@
+package com.bloyot.recordhomeworkapi;
+
+import com.bloyot.recordhomeworkcommon.Gender;
+import com.bloyot.recordhomeworkcommon.Record;
+import com.bloyot.recordhomeworkcommon.RecordCollation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe in memory store of records, our stand-in for a database. Rather than sorting every record on every request,
+ * the store keeps an index for each way records can be sorted, in each direction, which is updated as records are added:
+ * a concurrent skip list ordered by the sort key, then by when the record was added. Adding a record takes O(log n) per
+ * index, and reading the records in any order just walks an index, without locking out writers.
+ *
+ * Records that are equal by the sort key are kept in the order they were added in both directions, the same as a stable sort
+ * of the records and then of the sort reversed. Reads are weakly consistent: a read while records are being added sees
+ * every record added before it started, and may or may not see ones added since.
+ *
+ * Records can also be read a page at a time. Each page ends with a cursor, which holds the direction, the sort key of the
+ * last record on the page and when it was added. The next page starts straight from that position in the index, so it doesn't matter how
+ * far in it is, and records added in between don't shift later pages: those that sort before the cursor are skipped, and
+ * those after it are on the pages to come.
+ */
+public class RecordStore {
+
+    /**
+     * The ways records can be sorted.
+     */
+    public enum SortKey {
+        LAST_NAME,
+        BIRTH_DATE,
+        GENDER
+    }
+
+    private final RecordCollation collation;
+    private final Map<SortKey, NavigableSet<Entry>> ascending = new EnumMap<>(SortKey.class);
+    private final Map<SortKey, NavigableSet<Entry>> descending = new EnumMap<>(SortKey.class);
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @param collation the order of last names, or null to compare them by their chars
+     */
+    public RecordStore(RecordCollation collation) {
+        this.collation = collation;
+        for (SortKey sortKey : SortKey.values()) {
+            Comparator<Record> order = order(sortKey);
+            Comparator<Entry> byId = Comparator.comparingLong(entry -> entry.id);
+            ascending.put(sortKey, new ConcurrentSkipListSet<>(Comparator.comparing((Entry entry) -> entry.record, order).thenComparing(byId)));
+            descending.put(sortKey, new ConcurrentSkipListSet<>(Comparator.comparing((Entry entry) -> entry.record, order.reversed()).thenComparing(byId)));
+        }
+    }
+
+    /**
+     * @return the order of last names, or null if they're compared by their chars
+     */
+    public RecordCollation getCollation() {
+        return collation;
+    }
+
+    /**
+     * Adds a record to every index. Records mustn't be changed once added, or the indexes would be out of order.
+     */
+    public void add(Record record) {
+        if (collation != null) {
+            // work out the collation key up front, rather than on the first comparison
+            collation.lastNameKey(record);
+        }
+        Entry entry = new Entry(record, nextId.getAndIncrement());
+        for (SortKey sortKey : SortKey.values()) {
+            ascending.get(sortKey).add(entry);
+            descending.get(sortKey).add(entry);
+        }
+        size.incrementAndGet();
+        // only once the record is in every index, so a read that sees a version sees every record added before it
+        version.incrementAndGet();
+    }
+
+    public void addAll(Iterable<Record> records) {
+        records.forEach(this::add);
+    }
+
+    /**
+     * @return the number of records added so far
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return a counter of the changes to the store, which goes up every time a record is added. Anything read from the store
+     * after getting the version has at least the records of that version, so it can be cached until the version changes.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return every record in order of a sort key, by walking its index
+     */
+    public List<Record> sorted(SortKey sortKey, boolean descending) {
+        List<Record> records = new ArrayList<>(size());
+        records(sortKey, descending).forEach(records::add);
+        return records;
+    }
+
+    /**
+     * @return a live view of the records in order of a sort key, which walks its index each time it's iterated without copying
+     * any records, so the records can be streamed out in constant memory
+     */
+    public Iterable<Record> records(SortKey sortKey, boolean descending) {
+        return records(sortKey, descending, null);
+    }
+
+    /**
+     * Same as {@link #records(SortKey, boolean)}, but only the records after a cursor, which are every page after it without
+     * reading them a page at a time.
+     * @param cursor the cursor of a page, or null for every record
+     * @throws IllegalArgumentException if the cursor is invalid, or was for a different sort key or direction
+     */
+    public Iterable<Record> records(SortKey sortKey, boolean descending, String cursor) {
+        NavigableSet<Entry> sorted = (descending ? this.descending : ascending).get(sortKey);
+        NavigableSet<Entry> index = cursor == null ? sorted : sorted.tailSet(decodeCursor(sortKey, descending, cursor), false);
+        return () -> {
+            Iterator<Entry> entries = index.iterator();
+            return new Iterator<Record>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public Record next() {
+                    return entries.next().record;
+                }
+            };
+        };
+    }
+
+    /**
+     * Reads a page of records in order of a sort key.
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param limit the most records to return
+     * @return the page, with a cursor for the next one if there are more records after it
+     * @throws IllegalArgumentException if the cursor is invalid, or was for a different sort key or direction
+     */
+    public Page page(SortKey sortKey, boolean descending, String cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Invalid limit " + limit);
+        }
+        NavigableSet<Entry> index = (descending ? this.descending : ascending).get(sortKey);
+        if (cursor != null) {
+            index = index.tailSet(decodeCursor(sortKey, descending, cursor), false);
+        }
+        List<Record> records = new ArrayList<>(Math.min(limit, size()));
+        Entry last = null;
+        for (Entry entry : index) {
+            if (records.size() == limit) {
+                return new Page(records, encodeCursor(sortKey, descending, last));
+            }
+            records.add(entry.record);
+            last = entry;
+        }
+        return new Page(records, null);
+    }
+
+    /**
+     * Encodes the position of a record in an index as the sort key, the direction, when the record was added and its value of
+     * the sort key, base64 encoded so it can be passed around as an opaque token.
+     */
+    private static String encodeCursor(SortKey sortKey, boolean descending, Entry entry) {
+        String value;
+        switch (sortKey) {
+            case LAST_NAME:
+                value = entry.record.getLastName();
+                break;
+            case BIRTH_DATE:
+                value = Integer.toString(entry.record.dateOfBirthEpochDay());
+                break;
+            default:
+                value = entry.record.getGender().name();
+        }
+        String cursor = sortKey.name() + ':' + direction(descending) + ':' + entry.id + ':' + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return an entry at the cursor's position in the index, with a stand-in record that only has the sort key filled in
+     */
+    private static Entry decodeCursor(SortKey sortKey, boolean descending, String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 4);
+            // a position in one direction is a different place in the other, so the cursor only continues the same sort
+            if (parts.length != 4 || !parts[0].equals(sortKey.name()) || !parts[1].equals(direction(descending))) {
+                throw new IllegalArgumentException("Invalid cursor " + cursor);
+            }
+            long id = Long.parseLong(parts[2]);
+            String lastName = sortKey == SortKey.LAST_NAME ? parts[3] : "";
+            int epochDay = sortKey == SortKey.BIRTH_DATE ? Integer.parseInt(parts[3]) : 0;
+            Gender gender = sortKey == SortKey.GENDER ? Gender.valueOf(parts[3]) : Gender.FEMALE;
+            return new Entry(new Record(lastName, "", gender, "", epochDay), id);
+        } catch (IllegalArgumentException e) {
+            // a bad base64 or number is also an IllegalArgumentException
+            throw new IllegalArgumentException("Invalid cursor " + cursor, e);
+        }
+    }
+
+    private static String direction(boolean descending) {
+        return descending ? "desc" : "asc";
+    }
+
+    private Comparator<Record> order(SortKey sortKey) {
+        switch (sortKey) {
+            case LAST_NAME:
+                return collation == null ? Comparator.comparing(Record::getLastName) : collation.lastNameOrder();
+            case BIRTH_DATE:
+                return Comparator.comparingInt(Record::dateOfBirthEpochDay);
+            case GENDER:
+                return Comparator.comparing(Record::getGender);
+            default:
+                throw new IllegalArgumentException("Unknown sort key " + sortKey);
+        }
+    }
+
+    /**
+     * A page of records, and the cursor to read the next page from.
+     */
+    public static final class Page {
+        private final List<Record> records;
+        private final String nextCursor;
+
+        Page(List<Record> records, String nextCursor) {
+            this.records = records;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Record> getRecords() {
+            return records;
+        }
+
+        /**
+         * @return the cursor to pass to {@link #page} for the next page, or null if this is the last page
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * A record in an index, with the order it was added in to break ties.
+     */
+    private static final class Entry {
+        private final Record record;
+        private final long id;
+
+        Entry(Record record, long id) {
+            this.record = record;
+            this.id = id;
+        }
+    }
+}
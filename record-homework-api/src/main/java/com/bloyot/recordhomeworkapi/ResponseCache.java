@@ -0,0 +1,147 @@
+package com.bloyot.recordhomeworkapi;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of serialized get responses, so clients polling for records that haven't changed don't pay for reading and
+ * serializing them again. Each response is cached under its request (the sort, order, limit and cursor) along with the
+ * {@link RecordStore#getVersion() store version} it was read at, and only counts as a hit while the store is still at that
+ * version, so adding a record invalidates every cached response without having to find them.
+ *
+ * The cache holds up to a maximum number of bytes of responses, past which the least recently used are evicted, and counts
+ * its hits, misses and evictions. Thread safe.
+ */
+public class ResponseCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes the most bytes of responses to hold, 0 to not cache anything
+     */
+    public ResponseCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Invalid max bytes " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the most bytes of responses to hold, so a response bigger than this needn't be kept around to cache
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the response cached for a request at the store version, or null if there isn't one
+     */
+    public synchronized Entry get(String key, long version) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == version) {
+            hits++;
+            return entry;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Caches a response for a request, replacing any response of an earlier version, then evicts the least recently used
+     * responses until the cache is back under its maximum size. A response bigger than the whole cache isn't cached.
+     */
+    public synchronized void put(String key, Entry entry) {
+        if (entry.body.length > maxBytes) {
+            return;
+        }
+        Entry replaced = entries.put(key, entry);
+        if (replaced != null) {
+            bytes -= replaced.body.length;
+        }
+        bytes += entry.body.length;
+        for (Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator(); bytes > maxBytes; ) {
+            bytes -= eldest.next().getValue().body.length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    /**
+     * A serialized response body, the cursor of the next page if it's a page with more after it, and the store version it
+     * was read at.
+     */
+    public static class Entry {
+
+        private final long version;
+        private final byte[] body;
+        private final String nextCursor;
+
+        public Entry(long version, byte[] body, String nextCursor) {
+            this.version = version;
+            this.body = body;
+            this.nextCursor = nextCursor;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * Counters of how well the cache is doing, and how much it holds.
+     */
+    public static class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int entries;
+        private final long bytes;
+
+        Stats(long hits, long misses, long evictions, int entries, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -2,24 +2,39 @@ package com.bloyot.recordhomeworkapi;
 
 import com.bloyot.recordhomeworkcommon.Gender;
 import com.bloyot.recordhomeworkcommon.Record;
+import com.bloyot.recordhomeworkcommon.RecordCollation;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.unit.DataSize;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -39,16 +54,18 @@ class RecordHomeworkApiApplicationTests {
 	@Autowired
 	private RecordController recordController;
 
+	@Autowired
+	private MultipartProperties multipartProperties;
+
 	@BeforeEach
 	public void setup() {
 		// initialize some test data
-		// have to create a new array list wrapper because Arrays.asList creates an immutable list
-		List<Record> testRecords = new ArrayList<>(Arrays.asList(
+		List<Record> testRecords = Arrays.asList(
 			new Record("Ada", "Weaver", Gender.FEMALE, "red", LocalDate.of(2037,12,15)),
 			new Record("Kobe", "Bass", Gender.MALE, "green", LocalDate.of(1949,10,11)),
 			new Record("Riya", "Murray", Gender.FEMALE, "orange", LocalDate.of(1945,9,26))
-		));
-		ReflectionTestUtils.setField(recordController, "records", testRecords);
+		);
+		setRecords(testRecords, null);
 	}
 
 	@Test
@@ -120,9 +137,227 @@ class RecordHomeworkApiApplicationTests {
 			.andExpect(jsonPath("$[2].lastName", is("Ada")));
 	}
 
+	@Test
+	void getRecordsByLastNameWithCollation() throws Exception {
+		List<Record> testRecords = Arrays.asList(
+			new Record("Zed", "Weaver", Gender.FEMALE, "red", LocalDate.of(2037,12,15)),
+			new Record("\u00c9mile", "Bass", Gender.MALE, "green", LocalDate.of(1949,10,11)),
+			new Record("adams", "Murray", Gender.FEMALE, "orange", LocalDate.of(1945,9,26)),
+			new Record("Ada", "Murray", Gender.FEMALE, "orange", LocalDate.of(1945,9,26))
+		);
+		setRecords(testRecords, null);
+		// by chars upper case comes before lower case, and accented letters after both
+		mockMvc.perform(
+			get("/records/name"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].lastName", is("Ada")))
+			.andExpect(jsonPath("$[1].lastName", is("Zed")))
+			.andExpect(jsonPath("$[2].lastName", is("adams")))
+			.andExpect(jsonPath("$[3].lastName", is("\u00c9mile")));
+
+		setRecords(testRecords, new RecordCollation(Locale.ROOT, false));
+		mockMvc.perform(
+			get("/records/name"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()", is(4)))
+			.andExpect(jsonPath("$[0].lastName", is("Ada")))
+			.andExpect(jsonPath("$[1].lastName", is("adams")))
+			.andExpect(jsonPath("$[2].lastName", is("\u00c9mile")))
+			.andExpect(jsonPath("$[3].lastName", is("Zed")))
+			.andExpect(jsonPath("$[0].lastNameKey").doesNotExist());
+	}
+
+	@Test
+	void getRecordsByLastNamePaged() throws Exception {
+		String cursor = mockMvc.perform(
+			get("/records/name")
+				.queryParam("limit", "2"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()", is(2)))
+			.andExpect(jsonPath("$[0].lastName", is("Ada")))
+			.andExpect(jsonPath("$[1].lastName", is("Kobe")))
+			.andReturn().getResponse().getHeader(RecordController.NEXT_CURSOR_HEADER);
+		assertNotNull(cursor);
+
+		// records added before the cursor don't shift the next page, ones after it are on it
+		for (String data : new String[]{"Aaron,Ford,male,blue,01/02/1990", "Zoe,Hart,female,teal,03/04/1980"}) {
+			mockMvc.perform(
+				post("/records")
+					.content(GSON.toJson(new CreateRecordCommand(data, ",")))
+					.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isNoContent());
+		}
+		mockMvc.perform(
+			get("/records/name")
+				.queryParam("limit", "2")
+				.queryParam("cursor", cursor))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()", is(2)))
+			.andExpect(jsonPath("$[0].lastName", is("Riya")))
+			.andExpect(jsonPath("$[1].lastName", is("Zoe")))
+			.andExpect(header().doesNotExist(RecordController.NEXT_CURSOR_HEADER));
+
+		// the cursor only continues the same sort, not the other direction
+		mockMvc.perform(
+			get("/records/name")
+				.queryParam("sortOrder", "desc")
+				.queryParam("cursor", cursor))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("{\"status\": \"400\", \"response\": \"Invalid cursor\"}"));
+	}
+
+	@Test
+	void getRecordsPagedWithInvalidParams() throws Exception {
+		mockMvc.perform(
+			get("/records/birthdate")
+				.queryParam("limit", "0"))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("{\"status\": \"400\", \"response\": \"Limit must be positive\"}"));
+
+		String cursor = mockMvc.perform(
+			get("/records/name")
+				.queryParam("limit", "1"))
+			.andReturn().getResponse().getHeader(RecordController.NEXT_CURSOR_HEADER);
+		// a cursor is only valid for the sort it came from
+		mockMvc.perform(
+			get("/records/birthdate")
+				.queryParam("cursor", cursor))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("{\"status\": \"400\", \"response\": \"Invalid cursor\"}"));
+		mockMvc.perform(
+			get("/records/gender")
+				.queryParam("cursor", "not a cursor"))
+			.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void streamRecordsByBirthDate() throws Exception {
+		MvcResult result = mockMvc.perform(
+			get("/records/birthdate")
+				.queryParam("sortOrder", "desc")
+				.accept(RecordController.NDJSON))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		String[] lines = mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType(RecordController.NDJSON))
+			.andReturn().getResponse().getContentAsString().split("\n");
+		assertEquals(3, lines.length);
+		assertEquals("Ada", GSON.fromJson(lines[0], JsonObject.class).get("lastName").getAsString());
+		assertEquals("Kobe", GSON.fromJson(lines[1], JsonObject.class).get("lastName").getAsString());
+		assertEquals("Riya", GSON.fromJson(lines[2], JsonObject.class).get("lastName").getAsString());
+		assertEquals("1949-10-11", GSON.fromJson(lines[1], JsonObject.class).get("dateOfBirth").getAsString());
+	}
+
+	@Test
+	void streamRecordsByGenderPaged() throws Exception {
+		MvcResult result = mockMvc.perform(
+			get("/records/gender")
+				.queryParam("limit", "2")
+				.accept(RecordController.NDJSON))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		MockHttpServletResponse response = mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andExpect(header().exists(RecordController.NEXT_CURSOR_HEADER))
+			.andReturn().getResponse();
+		String[] lines = response.getContentAsString().split("\n");
+		assertEquals(2, lines.length);
+		assertEquals("Kobe", GSON.fromJson(lines[0], JsonObject.class).get("lastName").getAsString());
+		assertEquals("Ada", GSON.fromJson(lines[1], JsonObject.class).get("lastName").getAsString());
+
+		// the rest of the records after the cursor, without a limit
+		result = mockMvc.perform(
+			get("/records/gender")
+				.queryParam("cursor", response.getHeader(RecordController.NEXT_CURSOR_HEADER))
+				.accept(RecordController.NDJSON))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		lines = mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andExpect(header().doesNotExist(RecordController.NEXT_CURSOR_HEADER))
+			.andReturn().getResponse().getContentAsString().split("\n");
+		assertEquals(1, lines.length);
+		assertEquals("Riya", GSON.fromJson(lines[0], JsonObject.class).get("lastName").getAsString());
+
+		result = mockMvc.perform(
+			get("/records/gender")
+				.queryParam("limit", "0")
+				.accept(RecordController.NDJSON))
+			.andReturn();
+		mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("{\"status\": \"400\", \"response\": \"Limit must be positive\"}"));
+	}
+
+	@Test
+	void getRecordsCachedWithEtag() throws Exception {
+		String etag = mockMvc.perform(
+			get("/records/birthdate"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()", is(3)))
+			.andExpect(header().exists("ETag"))
+			.andReturn().getResponse().getHeader("ETag");
+		mockMvc.perform(
+			get("/records/birthdate"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].lastName", is("Riya")))
+			.andExpect(header().string("ETag", etag));
+		mockMvc.perform(
+			get("/records/birthdate")
+				.header("If-None-Match", etag))
+			.andExpect(status().isNotModified())
+			.andExpect(content().string(""));
+		mockMvc.perform(
+			get("/records/cache"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.hits", is(2)))
+			.andExpect(jsonPath("$.misses", is(1)))
+			.andExpect(jsonPath("$.entries", is(1)));
+
+		// adding a record changes the version, so the cached response and the etag are no longer current
+		mockMvc.perform(
+			post("/records")
+				.content(GSON.toJson(new CreateRecordCommand("Russell,Khalid,male,indigo,03/24/1900", ",")))
+				.contentType(MediaType.APPLICATION_JSON))
+			.andExpect(status().isNoContent());
+		String newEtag = mockMvc.perform(
+			get("/records/birthdate")
+				.header("If-None-Match", etag))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()", is(4)))
+			.andExpect(jsonPath("$[0].lastName", is("Russell")))
+			.andReturn().getResponse().getHeader("ETag");
+		assertNotEquals(etag, newEtag);
+		mockMvc.perform(
+			get("/records/cache"))
+			.andExpect(jsonPath("$.hits", is(2)))
+			.andExpect(jsonPath("$.misses", is(2)))
+			.andExpect(jsonPath("$.entries", is(1)));
+	}
+
+	@Test
+	void getRecordsTooBigToCache() throws Exception {
+		// smaller than the response, which is still written out whole, just not kept
+		ReflectionTestUtils.setField(recordController, "cache", new ResponseCache(64));
+		for (int i = 0; i < 2; i++) {
+			mockMvc.perform(
+				get("/records/birthdate"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()", is(3)))
+				.andExpect(jsonPath("$[2].lastName", is("Ada")))
+				.andExpect(header().exists("ETag"));
+		}
+		mockMvc.perform(
+			get("/records/cache"))
+			.andExpect(jsonPath("$.hits", is(0)))
+			.andExpect(jsonPath("$.misses", is(2)))
+			.andExpect(jsonPath("$.entries", is(0)));
+	}
+
     @Test
     void getRecordsEmpty() throws Exception {
-        ReflectionTestUtils.setField(recordController, "records", new ArrayList<>());
+        setRecords(Collections.emptyList(), null);
         mockMvc.perform(
             get("/records/name")
                 .queryParam("sortOrder", "desc"))
@@ -139,13 +374,15 @@ class RecordHomeworkApiApplicationTests {
 				.contentType(MediaType.APPLICATION_JSON))
 			.andExpect(status().isNoContent());
 
-		List<Record> records = (List<Record>)ReflectionTestUtils.getField(recordController, "records");
-		assertEquals(4, records.size());
-		assertEquals("Russell", records.get(3).getLastName());
-		assertEquals("Khalid", records.get(3).getFirstName());
-		assertEquals(Gender.MALE, records.get(3).getGender());
-		assertEquals("indigo", records.get(3).getFavoriteColor());
-		assertEquals(LocalDate.of(2078, 3, 24), records.get(3).getDateOfBirth());
+		RecordStore store = (RecordStore)ReflectionTestUtils.getField(recordController, "store");
+		assertEquals(4, store.size());
+		// the new record is the youngest
+		Record record = store.sorted(RecordStore.SortKey.BIRTH_DATE, true).get(0);
+		assertEquals("Russell", record.getLastName());
+		assertEquals("Khalid", record.getFirstName());
+		assertEquals(Gender.MALE, record.getGender());
+		assertEquals("indigo", record.getFavoriteColor());
+		assertEquals(LocalDate.of(2078, 3, 24), record.getDateOfBirth());
 	}
 
 	@Test
@@ -157,13 +394,15 @@ class RecordHomeworkApiApplicationTests {
 				.contentType(MediaType.APPLICATION_JSON))
 			.andExpect(status().isNoContent());
 
-		List<Record> records = (List<Record>)ReflectionTestUtils.getField(recordController, "records");
-		assertEquals(4, records.size());
-		assertEquals("Russell", records.get(3).getLastName());
-		assertEquals("Khalid", records.get(3).getFirstName());
-		assertEquals(Gender.MALE, records.get(3).getGender());
-		assertEquals("indigo", records.get(3).getFavoriteColor());
-		assertEquals(LocalDate.of(2078, 3, 24), records.get(3).getDateOfBirth());
+		RecordStore store = (RecordStore)ReflectionTestUtils.getField(recordController, "store");
+		assertEquals(4, store.size());
+		// the new record is the youngest
+		Record record = store.sorted(RecordStore.SortKey.BIRTH_DATE, true).get(0);
+		assertEquals("Russell", record.getLastName());
+		assertEquals("Khalid", record.getFirstName());
+		assertEquals(Gender.MALE, record.getGender());
+		assertEquals("indigo", record.getFavoriteColor());
+		assertEquals(LocalDate.of(2078, 3, 24), record.getDateOfBirth());
 	}
 
 	@Test
@@ -175,13 +414,71 @@ class RecordHomeworkApiApplicationTests {
 				.contentType(MediaType.APPLICATION_JSON))
 			.andExpect(status().isNoContent());
 
-		List<Record> records = (List<Record>)ReflectionTestUtils.getField(recordController, "records");
-		assertEquals(4, records.size());
-		assertEquals("Russell", records.get(3).getLastName());
-		assertEquals("Khalid", records.get(3).getFirstName());
-		assertEquals(Gender.MALE, records.get(3).getGender());
-		assertEquals("indigo", records.get(3).getFavoriteColor());
-		assertEquals(LocalDate.of(2078, 3, 24), records.get(3).getDateOfBirth());
+		RecordStore store = (RecordStore)ReflectionTestUtils.getField(recordController, "store");
+		assertEquals(4, store.size());
+		// the new record is the youngest
+		Record record = store.sorted(RecordStore.SortKey.BIRTH_DATE, true).get(0);
+		assertEquals("Russell", record.getLastName());
+		assertEquals("Khalid", record.getFirstName());
+		assertEquals(Gender.MALE, record.getGender());
+		assertEquals("indigo", record.getFavoriteColor());
+		assertEquals(LocalDate.of(2078, 3, 24), record.getDateOfBirth());
+	}
+
+	@Test
+	void createRecordsFromText() throws Exception {
+		String body = "Russell|Khalid|male|indigo|03/24/2078\n"
+			+ "Moss|Ines|female|teal\n"
+			+ "\n"
+			+ "Pike|Omar|male|gold|01/02/1999\r\n"
+			+ "Hale|Uma|unknown|red|05/06/1970\n";
+		mockMvc.perform(
+			post("/records/batch")
+				.queryParam("delimiter", "|")
+				.content(body)
+				.contentType(MediaType.TEXT_PLAIN))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.accepted", is(2)))
+			.andExpect(jsonPath("$.rejected", is(2)))
+			.andExpect(jsonPath("$.errors.length()", is(2)))
+			.andExpect(jsonPath("$.errors[0].line", is(2)))
+			.andExpect(jsonPath("$.errors[0].error", is("Expected 5 fields while parsing record, found 4")))
+			.andExpect(jsonPath("$.errors[1].line", is(5)));
+
+		RecordStore store = (RecordStore)ReflectionTestUtils.getField(recordController, "store");
+		assertEquals(5, store.size());
+		mockMvc.perform(
+			get("/records/name"))
+			.andExpect(jsonPath("$[2].lastName", is("Pike")))
+			.andExpect(jsonPath("$[4].lastName", is("Russell")));
+	}
+
+	@Test
+	void createRecordsFromFile() throws Exception {
+		MockMultipartFile file = new MockMultipartFile("file", "records.csv", MediaType.TEXT_PLAIN_VALUE,
+			"Russell,Khalid,male,indigo,03/24/2078\nPike,Omar,male,gold,01/02/1999\n".getBytes(StandardCharsets.UTF_8));
+		mockMvc.perform(
+			multipart("/records/batch")
+				.file(file)
+				.queryParam("delimiter", ","))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.accepted", is(2)))
+			.andExpect(jsonPath("$.rejected", is(0)))
+			.andExpect(jsonPath("$.errors.length()", is(0)));
+
+		RecordStore store = (RecordStore)ReflectionTestUtils.getField(recordController, "store");
+		assertEquals(5, store.size());
+	}
+
+	@Test
+	void createRecordsWithInvalidDelimiter() throws Exception {
+		mockMvc.perform(
+			post("/records/batch")
+				.queryParam("delimiter", "/")
+				.content("Russell/Khalid/male/indigo/03/24/2078\n")
+				.contentType(MediaType.TEXT_PLAIN))
+			.andExpect(status().isBadRequest())
+			.andExpect(content().string("{\"status\": \"400\", \"response\": \"Invalid delimiter\"}"));
 	}
 
 	@Test
@@ -227,4 +524,31 @@ class RecordHomeworkApiApplicationTests {
 			.andExpect(status().isBadRequest())
 			.andExpect(content().string("{\"status\": \"400\", \"response\": \"Unable to parse provided record data\"}"));
 	}
+
+	@Test
+	void multipartUploadsAreBounded() {
+		// multipart files are written out in full before they're parsed, so unlike text/plain bodies they keep a size limit
+		assertEquals(DataSize.ofMegabytes(256), multipartProperties.getMaxFileSize());
+		assertEquals(DataSize.ofMegabytes(256), multipartProperties.getMaxRequestSize());
+	}
+
+	@Test
+	void collationLocales() throws Exception {
+		ObjectMapper objectMapper = new ObjectMapper();
+		RecordController controller = new RecordController("", "root", true, 0, objectMapper);
+		RecordStore store = (RecordStore) ReflectionTestUtils.getField(controller, "store");
+		assertEquals(Locale.ROOT, store.getCollation().getLocale());
+		// a well formed tag, but for a language without a collation
+		assertThrows(IllegalArgumentException.class, () -> new RecordController("", "xx", true, 0, objectMapper));
+	}
+
+	/**
+	 * Replaces the controller's store with one holding just the given records, and empties its response cache.
+	 */
+	private void setRecords(List<Record> records, RecordCollation collation) {
+		RecordStore store = new RecordStore(collation);
+		store.addAll(records);
+		ReflectionTestUtils.setField(recordController, "store", store);
+		ReflectionTestUtils.setField(recordController, "cache", new ResponseCache(1024 * 1024));
+	}
 }
@@ -0,0 +1,138 @@
+package com.bloyot.recordhomeworkapi;
+
+import com.bloyot.recordhomeworkcommon.Gender;
+import com.bloyot.recordhomeworkcommon.Record;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordStoreTest {
+
+	@Test
+	void sortedKeepsTiesInOrderAdded() {
+		RecordStore store = new RecordStore(null);
+		Record ada = new Record("Weaver", "Ada", Gender.FEMALE, "red", LocalDate.of(2037, 12, 15));
+		Record kobe = new Record("Bass", "Kobe", Gender.MALE, "green", LocalDate.of(1949, 10, 11));
+		Record riya = new Record("Murray", "Riya", Gender.FEMALE, "orange", LocalDate.of(1945, 9, 26));
+		Record sam = new Record("Bass", "Sam", Gender.MALE, "blue", LocalDate.of(1949, 10, 11));
+		store.add(ada);
+		store.add(kobe);
+		store.add(riya);
+		store.add(sam);
+
+		assertEquals(4, store.size());
+		assertEquals(listOf(kobe, sam, ada, riya), store.sorted(RecordStore.SortKey.GENDER, false));
+		assertEquals(listOf(ada, riya, kobe, sam), store.sorted(RecordStore.SortKey.GENDER, true));
+		assertEquals(listOf(riya, kobe, sam, ada), store.sorted(RecordStore.SortKey.BIRTH_DATE, false));
+		assertEquals(listOf(ada, kobe, sam, riya), store.sorted(RecordStore.SortKey.BIRTH_DATE, true));
+		assertEquals(listOf(kobe, sam, riya, ada), store.sorted(RecordStore.SortKey.LAST_NAME, false));
+		assertEquals(listOf(ada, riya, kobe, sam), store.sorted(RecordStore.SortKey.LAST_NAME, true));
+	}
+
+	@Test
+	void pages() {
+		RecordStore store = new RecordStore(null);
+		for (int i = 0; i < 25; i++) {
+			// plenty of ties, which have to be split across pages
+			store.add(new Record("Last" + i, "First" + i, i % 3 == 0 ? Gender.MALE : Gender.FEMALE, "red", LocalDate.of(1950, 1, 1).plusDays(i % 4)));
+		}
+
+		for (RecordStore.SortKey sortKey : RecordStore.SortKey.values()) {
+			for (boolean descending : new boolean[]{false, true}) {
+				List<Record> paged = new ArrayList<>();
+				String cursor = null;
+				do {
+					RecordStore.Page page = store.page(sortKey, descending, cursor, 4);
+					assertTrue(page.getRecords().size() <= 4);
+					paged.addAll(page.getRecords());
+					cursor = page.getNextCursor();
+				} while (cursor != null);
+				assertEquals(store.sorted(sortKey, descending), paged);
+			}
+		}
+
+		// every record after a cursor, without a limit
+		RecordStore.Page first = store.page(RecordStore.SortKey.BIRTH_DATE, true, null, 10);
+		List<Record> rest = new ArrayList<>();
+		store.records(RecordStore.SortKey.BIRTH_DATE, true, first.getNextCursor()).forEach(rest::add);
+		assertEquals(store.sorted(RecordStore.SortKey.BIRTH_DATE, true).subList(10, 25), rest);
+
+		RecordStore.Page page = store.page(RecordStore.SortKey.GENDER, false, null, 25);
+		assertEquals(25, page.getRecords().size());
+		assertNull(page.getNextCursor());
+		String cursor = store.page(RecordStore.SortKey.GENDER, false, null, 1).getNextCursor();
+		assertThrows(IllegalArgumentException.class, () -> store.page(RecordStore.SortKey.LAST_NAME, false, cursor, 1));
+		assertThrows(IllegalArgumentException.class, () -> store.page(RecordStore.SortKey.GENDER, true, cursor, 1));
+		assertThrows(IllegalArgumentException.class, () -> store.records(RecordStore.SortKey.GENDER, true, cursor));
+		assertThrows(IllegalArgumentException.class, () -> store.page(RecordStore.SortKey.GENDER, false, "%%", 1));
+		assertThrows(IllegalArgumentException.class, () -> store.page(RecordStore.SortKey.GENDER, false, null, 0));
+	}
+
+	@Test
+	void concurrentAdds() throws Exception {
+		RecordStore store = new RecordStore(null);
+		int threads = 8;
+		int perThread = 2000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < perThread; i++) {
+						int n = thread * perThread + i;
+						store.add(new Record("Last" + (n % 97), "First" + n, n % 2 == 0 ? Gender.FEMALE : Gender.MALE, "red",
+							LocalDate.of(1950, 1, 1).plusDays(n % 365)));
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(threads * perThread, store.size());
+		for (RecordStore.SortKey sortKey : RecordStore.SortKey.values()) {
+			Comparator<Record> order = order(sortKey);
+			List<Record> ascending = store.sorted(sortKey, false);
+			List<Record> descending = store.sorted(sortKey, true);
+			assertEquals(threads * perThread, ascending.size());
+			assertEquals(threads * perThread, descending.size());
+			assertEquals(ascending.stream().sorted(order).collect(Collectors.toList()), ascending);
+			assertEquals(descending.stream().sorted(order.reversed()).collect(Collectors.toList()), descending);
+		}
+	}
+
+	private static Comparator<Record> order(RecordStore.SortKey sortKey) {
+		switch (sortKey) {
+			case LAST_NAME:
+				return Comparator.comparing(Record::getLastName);
+			case BIRTH_DATE:
+				return Comparator.comparing(Record::getDateOfBirth);
+			default:
+				return Comparator.comparing(Record::getGender);
+		}
+	}
+
+	private static List<Record> listOf(Record... records) {
+		List<Record> list = new ArrayList<>();
+		for (Record record : records) {
+			list.add(record);
+		}
+		return list;
+	}
+}
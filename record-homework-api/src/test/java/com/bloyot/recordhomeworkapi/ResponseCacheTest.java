@@ -0,0 +1,55 @@
+package com.bloyot.recordhomeworkapi;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResponseCacheTest {
+
+	@Test
+	void hitsOnlyAtTheSameVersion() {
+		ResponseCache cache = new ResponseCache(100);
+		assertNull(cache.get("name", 1));
+		cache.put("name", new ResponseCache.Entry(1, new byte[10], "cursor"));
+		ResponseCache.Entry entry = cache.get("name", 1);
+		assertNotNull(entry);
+		assertEquals("cursor", entry.getNextCursor());
+		assertNull(cache.get("name", 2));
+		assertNull(cache.get("gender", 1));
+
+		// a newer version replaces the older one
+		cache.put("name", new ResponseCache.Entry(2, new byte[20], null));
+		assertNotNull(cache.get("name", 2));
+
+		ResponseCache.Stats stats = cache.getStats();
+		assertEquals(2, stats.getHits());
+		assertEquals(3, stats.getMisses());
+		assertEquals(0, stats.getEvictions());
+		assertEquals(1, stats.getEntries());
+		assertEquals(20, stats.getBytes());
+	}
+
+	@Test
+	void evictsLeastRecentlyUsed() {
+		ResponseCache cache = new ResponseCache(100);
+		cache.put("a", new ResponseCache.Entry(1, new byte[40], null));
+		cache.put("b", new ResponseCache.Entry(1, new byte[40], null));
+		// using a makes b the least recently used
+		assertNotNull(cache.get("a", 1));
+		cache.put("c", new ResponseCache.Entry(1, new byte[40], null));
+		assertNotNull(cache.get("a", 1));
+		assertNull(cache.get("b", 1));
+		assertNotNull(cache.get("c", 1));
+
+		// too big to cache at all
+		cache.put("d", new ResponseCache.Entry(1, new byte[101], null));
+		assertNull(cache.get("d", 1));
+
+		ResponseCache.Stats stats = cache.getStats();
+		assertEquals(1, stats.getEvictions());
+		assertEquals(2, stats.getEntries());
+		assertEquals(80, stats.getBytes());
+	}
+}
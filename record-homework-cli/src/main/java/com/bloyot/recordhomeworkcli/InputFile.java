@@ -0,0 +1,168 @@
+package com.bloyot.recordhomeworkcli;
+
+import com.bloyot.recordhomeworkcommon.Record;
+import com.bloyot.recordhomeworkcommon.RecordParseException;
+import com.bloyot.recordhomeworkcommon.RecordParser;
+import com.bloyot.recordhomeworkcommon.RecordSnapshot;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A single file to read records from, either a text file with its delimiter or a snapshot, along with statistics about
+ * reading it for the summary. Also expands the values of the input options, which can each be a file, a directory or a glob,
+ * into the files they name.
+ */
+final class InputFile {
+
+    private final Path path;
+    private final String delimiter;
+    private final long size;
+    private long records;
+    private long nanos;
+
+    private InputFile(Path path, String delimiter) {
+        this.path = path;
+        this.delimiter = delimiter;
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (IOException e) {
+            size = 0;
+        }
+        this.size = size;
+    }
+
+    /**
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     */
+    static InputFile text(Path path, String delimiter) {
+        return new InputFile(path, delimiter);
+    }
+
+    static InputFile snapshot(Path path) {
+        return new InputFile(path, null);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the delimiter to parse with, or null for a snapshot
+     */
+    String getDelimiter() {
+        return delimiter;
+    }
+
+    boolean isSnapshot() {
+        return delimiter == null;
+    }
+
+    /**
+     * @return the size of the file in bytes when it was found, 0 if it couldn't be read
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Opens the file as a lazily parsed stream of records. Closing the stream closes the file.
+     */
+    Stream<Record> open() throws IOException, RecordParseException {
+        if (isSnapshot()) {
+            return RecordSnapshot.read(path).asRecords().stream();
+        }
+        return RecordParser.stream(path, delimiter);
+    }
+
+    /**
+     * Records how reading the file went, for the summary.
+     */
+    void setStats(long records, long nanos) {
+        this.records = records;
+        this.nanos = nanos;
+    }
+
+    long getRecords() {
+        return records;
+    }
+
+    long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Expands the value of an input option into the files it names: a file is itself, a directory is every file directly
+     * inside it, and a glob (anything with *, ?, [ or {) is every file matching it, where ** matches across directories.
+     * @return the files in order of their paths, empty if none match, or null if the value isn't a glob and doesn't exist
+     * @throws IOException if unable to list a directory
+     */
+    static List<Path> expand(String input) throws IOException {
+        if (!isGlob(input)) {
+            Path path = Paths.get(input);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+            }
+            return Files.exists(path) ? Collections.singletonList(path) : null;
+        }
+
+        // walk from the deepest directory before the first glob char, only as deep as the glob can match
+        Path glob = Paths.get(input);
+        Path base = glob.getRoot();
+        int segment = 0;
+        for (; segment < glob.getNameCount() && !isGlob(glob.getName(segment).toString()); segment++) {
+            base = base == null ? glob.getName(segment) : base.resolve(glob.getName(segment));
+        }
+        if (base == null) {
+            base = Paths.get("");
+        }
+        if (!Files.isDirectory(base)) {
+            return Collections.emptyList();
+        }
+        int depth = input.contains("**") ? Integer.MAX_VALUE : glob.getNameCount() - segment;
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        try (Stream<Path> files = Files.walk(base, depth)) {
+            return files.filter(path -> matcher.matches(path) && Files.isRegularFile(path)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Infers the delimiter of a file from its extension, .csv, .ssv or .psv, looking past a compression extension such as .gz.
+     * @return the delimiter, or null if the extension isn't one of those
+     */
+    static String inferDelimiter(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String compressed : new String[]{".gz", ".bgz", ".zst"}) {
+            if (name.endsWith(compressed)) {
+                name = name.substring(0, name.length() - compressed.length());
+                break;
+            }
+        }
+        if (name.endsWith(".csv")) {
+            return ",";
+        }
+        if (name.endsWith(".ssv")) {
+            return " ";
+        }
+        if (name.endsWith(".psv")) {
+            return "|";
+        }
+        return null;
+    }
+
+    private static boolean isGlob(String value) {
+        return value.indexOf('*') >= 0 || value.indexOf('?') >= 0 || value.indexOf('[') >= 0 || value.indexOf('{') >= 0;
+    }
+}
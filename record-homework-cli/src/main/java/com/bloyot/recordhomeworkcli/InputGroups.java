@@ -0,0 +1,167 @@
+package com.bloyot.recordhomeworkcli;
+
+import com.bloyot.recordhomeworkcommon.Record;
+import com.bloyot.recordhomeworkcommon.RecordFingerprintSet;
+import com.bloyot.recordhomeworkcommon.RecordParseException;
+import com.bloyot.recordhomeworkcommon.UncheckedRecordParseException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reads the inputs in parallel for the sorted and aggregate modes. The inputs are split into contiguous groups of about the
+ * same size, one per file that can be open at once, and each group is read a file at a time on its own thread into a sink of
+ * its own, e.g. a sort or a count of just that group's records.
+ */
+final class InputGroups {
+
+    private InputGroups() {
+    }
+
+    /**
+     * Takes the records of one input as it is parsed.
+     */
+    interface RecordSink {
+        void add(Record record) throws IOException;
+    }
+
+    /**
+     * Splits the inputs into at most the given number of contiguous groups, balanced by file size. Keeping each group in
+     * input order means merging the sorted groups gives the same order as sorting all the inputs joined together.
+     */
+    static List<List<InputFile>> split(List<InputFile> inputs, int maxGroups) {
+        int groupCount = Math.min(maxGroups, inputs.size());
+        List<List<InputFile>> groups = new ArrayList<>();
+        if (groupCount == 0) {
+            return groups;
+        }
+        long total = 0;
+        for (InputFile input : inputs) {
+            // count every file as at least a byte, so empty files are spread out too
+            total += Math.max(1, input.getSize());
+        }
+        long before = 0;
+        List<InputFile> group = new ArrayList<>();
+        int groupIndex = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            InputFile input = inputs.get(i);
+            // start the next group once this one has its share, leaving at least a file for each group still to come
+            boolean full = before * groupCount >= total * (groupIndex + 1);
+            boolean needed = inputs.size() - i <= groupCount - groupIndex - 1;
+            if (!group.isEmpty() && (full || needed) && groupIndex < groupCount - 1) {
+                groups.add(group);
+                group = new ArrayList<>();
+                groupIndex++;
+            }
+            group.add(input);
+            before += Math.max(1, input.getSize());
+        }
+        groups.add(group);
+        return groups;
+    }
+
+    /**
+     * Reads each group of inputs into its sink on its own thread, returning once they've all been read.
+     */
+    static void read(List<List<InputFile>> groups, List<RecordSink> sinks)
+            throws IOException, RecordParseException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, groups.size()), runnable -> {
+            Thread thread = new Thread(runnable, "record-input");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < groups.size(); i++) {
+                List<InputFile> group = groups.get(i);
+                RecordSink sink = sinks.get(i);
+                completion.submit(() -> readInputs(group, sink));
+            }
+            // wait in the order the groups finish, so a bad input fails the run without waiting on the others
+            for (int i = 0; i < groups.size(); i++) {
+                awaitInput(completion.take());
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Parses a group of inputs into their sink one at a time, stopping early if the run is interrupted because another
+     * input failed.
+     */
+    private static Void readInputs(List<InputFile> inputs, RecordSink sink) throws IOException, RecordParseException {
+        for (InputFile input : inputs) {
+            long started = System.nanoTime();
+            long count = 0;
+            try (Stream<Record> records = input.open()) {
+                Iterator<Record> iterator = records.iterator();
+                while (iterator.hasNext()) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Interrupted while reading input");
+                    }
+                    sink.add(iterator.next());
+                    count++;
+                }
+            } catch (UncheckedRecordParseException e) {
+                // surface the same checked exception the list based parsing did
+                throw e.getCause();
+            }
+            input.setStats(count, System.nanoTime() - started);
+        }
+        return null;
+    }
+
+    /**
+     * @return a sink that only passes on records the set hasn't seen. The set is shared by every group of inputs, so only one
+     * of a set of duplicates is kept whichever groups they're in, and as duplicates are equal in every field it doesn't
+     * matter which
+     */
+    static RecordSink dedupe(RecordSink sink, RecordFingerprintSet seen) {
+        return record -> {
+            boolean added;
+            synchronized (seen) {
+                added = seen.add(record);
+            }
+            if (added) {
+                sink.add(record);
+            }
+        };
+    }
+
+    /**
+     * Rethrows whatever failed an input as it was thrown on the input's thread.
+     */
+    private static void awaitInput(Future<Void> input) throws IOException, RecordParseException, InterruptedException {
+        try {
+            input.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RecordParseException) {
+                throw (RecordParseException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.bloyot.recordhomeworkcli;
+
+import org.springframework.boot.ApplicationArguments;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses arguments the same way as {@link org.springframework.boot.DefaultApplicationArguments}: "--name=value" is an option
+ * with a value, "--name" an option without one, the same option can be given more than once, and anything else is a non
+ * option argument. Written out by hand since the Spring version goes through its property sources, which set up logging
+ * and make up a large part of the lean launcher's startup.
+ */
+final class LeanApplicationArguments implements ApplicationArguments {
+
+    private final String[] args;
+    private final Map<String, List<String>> options = new LinkedHashMap<>();
+    private final List<String> nonOptionArgs = new ArrayList<>();
+
+    LeanApplicationArguments(String... args) {
+        this.args = args;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                nonOptionArgs.add(arg);
+                continue;
+            }
+            String option = arg.substring(2);
+            int equals = option.indexOf('=');
+            String name = equals < 0 ? option : option.substring(0, equals);
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Invalid argument syntax: " + arg);
+            }
+            List<String> values = options.computeIfAbsent(name, key -> new ArrayList<>());
+            if (equals >= 0) {
+                values.add(option.substring(equals + 1));
+            }
+        }
+    }
+
+    @Override
+    public String[] getSourceArgs() {
+        return args;
+    }
+
+    @Override
+    public Set<String> getOptionNames() {
+        return Collections.unmodifiableSet(options.keySet());
+    }
+
+    @Override
+    public boolean containsOption(String name) {
+        return options.containsKey(name);
+    }
+
+    @Override
+    public List<String> getOptionValues(String name) {
+        List<String> values = options.get(name);
+        return values == null ? null : Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public List<String> getNonOptionArgs() {
+        return Collections.unmodifiableList(nonOptionArgs);
+    }
+}
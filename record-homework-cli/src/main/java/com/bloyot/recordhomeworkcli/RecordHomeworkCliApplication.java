@@ -1,16 +1,50 @@
 package com.bloyot.recordhomeworkcli;
 
+import com.bloyot.recordhomeworkcommon.Checkpoint;
+import com.bloyot.recordhomeworkcommon.ExternalRecordSorter;
+import com.bloyot.recordhomeworkcommon.IncrementalRecordReader;
+import com.bloyot.recordhomeworkcommon.MergeIterator;
 import com.bloyot.recordhomeworkcommon.Record;
+import com.bloyot.recordhomeworkcommon.RecordAggregate;
+import com.bloyot.recordhomeworkcommon.RecordBatch;
+import com.bloyot.recordhomeworkcommon.RecordCollation;
+import com.bloyot.recordhomeworkcommon.RecordFingerprintSet;
+import com.bloyot.recordhomeworkcommon.RecordParseException;
 import com.bloyot.recordhomeworkcommon.RecordParser;
+import com.bloyot.recordhomeworkcommon.RecordSnapshot;
+import com.bloyot.recordhomeworkcommon.RecordSorts;
+import com.bloyot.recordhomeworkcommon.RecordWriter;
+import com.bloyot.recordhomeworkcommon.TopK;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @SpringBootApplication
 public class RecordHomeworkCliApplication implements ApplicationRunner {
@@ -18,6 +52,27 @@ public class RecordHomeworkCliApplication implements ApplicationRunner {
     public static final int EXIT_MISSING_ARGS = 1;
     public static final int EXIT_MISSING_INPUT_FILE = 2;
     public static final int EXIT_INVALID_SORT = 3;
+    public static final int EXIT_INVALID_ARGS = 4;
+
+    /**
+     * How often --follow checks the inputs for new records, unless --follow-interval is given.
+     */
+    public static final long DEFAULT_FOLLOW_INTERVAL_MILLIS = 1000;
+
+    /**
+     * The most records --limit and --offset keep per input in place of a full sort, past this every record is sorted.
+     */
+    public static final long MAX_TOP_K = 1 << 20;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java -jar <jar> (--sort-type=[gender|birth_date|last_name] | --aggregate[=csv|json]) <inputs> [options]",
+            "Inputs, at least one, each can be repeated and be a file, directory or glob:",
+            "  --input-csv=<path>  --input-ssv=<path>  --input-psv=<path>  --input=<path>  --input-snapshot=<path>",
+            "Modes:",
+            "  --columnar  --write-snapshot=<path>  --since-checkpoint=<path>  --follow [--follow-interval=<millis>]",
+            "Options:",
+            "  --limit=<records>  --offset=<records>  --output=<path>  --output-format=[csv|ssv|psv]  --dedupe  --summary",
+            "  --collation[=<language tag>]  --ignore-case  --max-memory=<bytes, e.g. 512m>  --temp-dir=<path>  --max-open-files=<count>");
 
     public static void main(String[] args) {
         SpringApplication.run(RecordHomeworkCliApplication.class, args);
@@ -25,80 +80,620 @@ public class RecordHomeworkCliApplication implements ApplicationRunner {
 
     @Override
     public void run(ApplicationArguments args) throws Exception {
-        // validate that we have all the required options
-        // assumption per spec is we have 3 input files, 1 of each delimiter type,
-        // as we as the method of sorting
-        if (!args.containsOption("input-csv") ||
-                !args.containsOption("input-ssv") ||
-                !args.containsOption("input-psv") ||
-                !args.containsOption("sort-type")) {
-
+        // validate that we have all the required options: the method of sorting (unless we --aggregate the records instead),
+        // and at least one input. Any of the input options (the csv, ssv and psv inputs, --input, or prebuilt snapshots) can be
+        // given on their own or together
+        boolean hasInputs = args.containsOption("input-csv") || args.containsOption("input-ssv") || args.containsOption("input-psv")
+                || args.containsOption("input") || args.containsOption("input-snapshot");
+        boolean aggregate = args.containsOption("aggregate");
+        if ((!aggregate && !args.containsOption("sort-type")) || !hasInputs) {
             exitWithError(EXIT_MISSING_ARGS);
         }
 
-        // parse our 4 required input values, the above check validates we have at least on for each option value, and if
-        // multiple are provided we default to the first
-        String csvInput = args.getOptionValues("input-csv").get(0);
-        String ssvInput = args.getOptionValues("input-ssv").get(0);
-        String psvInput = args.getOptionValues("input-psv").get(0);
+        SortType sortType = null;
+        if (args.containsOption("sort-type")) {
+            String sortTypeString = args.getOptionValues("sort-type").get(0);
+            sortType = SortType.toSortType(sortTypeString);
+            if (sortType == null) {
+                System.out.println("Sort type must be one of [gender|birth_date|last_name]");
+                exitWithError(EXIT_INVALID_SORT);
+            }
+        }
+        RecordCollation collation = getCollation(args);
+
+        // expand the input options into the files to read, terminating if any are invalid. Each of the input options can be
+        // given more than once, and each value can be a file, a directory or a glob
+        List<InputFile> inputs = collectInputs(args);
+
+        boolean incremental = args.containsOption("follow") || args.containsOption("since-checkpoint");
+        if (incremental) {
+            // only the text files can be appended to, so incremental reads only make sense with just those, and the
+            // checkpoint file holds the position of exactly one of each
+            boolean hasTextInputs = args.containsOption("input-csv") && args.containsOption("input-ssv") && args.containsOption("input-psv");
+            if (!hasTextInputs || args.containsOption("input") || args.containsOption("input-snapshot") || inputs.size() != 3) {
+                System.out.println("--follow and --since-checkpoint only support a single csv, ssv and psv input file");
+                exitWithError(EXIT_INVALID_ARGS);
+            }
+        }
+
+        long offset = getCountOption(args, "offset");
+        long limit = getCountOption(args, "limit");
+        if ((offset >= 0 || limit >= 0) && (incremental || args.containsOption("write-snapshot"))) {
+            System.out.println("--limit and --offset can't be used with --follow, --since-checkpoint or --write-snapshot");
+            exitWithError(EXIT_INVALID_ARGS);
+        }
+        offset = Math.max(0, offset);
 
-        String sortTypeString = args.getOptionValues("sort-type").get(0);
-        SortType sortType = SortType.toSortType(sortTypeString);
+        String output = firstOptionValue(args, "output");
+        String outputDelimiter = getOutputDelimiter(args);
+        String aggregateFormat = aggregate ? getAggregateFormat(args) : null;
+        if (aggregate && (offset > 0 || limit >= 0 || args.containsOption("output-format") || args.containsOption("columnar")
+                || args.containsOption("write-snapshot") || incremental)) {
+            System.out.println("--aggregate can only be combined with the input options, --output, --dedupe and --summary");
+            exitWithError(EXIT_INVALID_ARGS);
+        }
 
-        // validate the input options themselves, terminating if invalid
-        validateInputOptions(csvInput, ssvInput, psvInput, sortType);
+        long maxMemory = getMaxMemory(args);
+        Path tempDir = getTempDir(args);
+        // with --dedupe the records seen so far take half of the max memory, and the sorts the other half
+        RecordFingerprintSet dedupe = null;
+        if (args.containsOption("dedupe")) {
+            dedupe = new RecordFingerprintSet(maxMemory / 2, tempDir);
+            maxMemory -= maxMemory / 2;
+        }
 
-        // parse records and join into a single list
-        List<Record> records = new ArrayList<>();
-        records.addAll(RecordParser.parseFile(Paths.get(csvInput), ","));
-        records.addAll(RecordParser.parseFile(Paths.get(ssvInput), " "));
-        records.addAll(RecordParser.parseFile(Paths.get(psvInput), "|"));
+        try {
+            if (incremental) {
+                try (RecordWriter writer = openWriter(output, outputDelimiter)) {
+                    runIncremental(args, inputs.get(0).getPath(), inputs.get(1).getPath(), inputs.get(2).getPath(), sortType, collation,
+                            dedupe, writer);
+                }
+                return;
+            }
 
-        // sort by sort type and display the result
-        records.stream().sorted(getSortComparator(sortType)).forEach(System.out::println);
+            long started = System.nanoTime();
+            if (args.containsOption("write-snapshot")) {
+                // convert the joined inputs to a snapshot rather than displaying them
+                RecordSnapshot.write(parseBatch(inputs, dedupe), Paths.get(firstOptionValue(args, "write-snapshot")));
+            } else if (args.containsOption("columnar")) {
+                try (RecordWriter writer = openWriter(output, outputDelimiter)) {
+                    printColumnar(parseBatch(inputs, dedupe), sortType, collation, offset, limit, writer);
+                }
+            } else if (aggregate) {
+                runAggregate(InputGroups.split(inputs, getMaxOpenFiles(args)), dedupe, aggregateFormat, output);
+            } else {
+                runSorted(InputGroups.split(inputs, getMaxOpenFiles(args)), dedupe, getSortComparator(sortType, collation),
+                        getListSort(sortType, collation), offset, limit, maxMemory, tempDir, output, outputDelimiter);
+            }
+            printSummary(args.containsOption("summary"), inputs, dedupe, started);
+        } finally {
+            if (dedupe != null) {
+                dedupe.close();
+            }
+        }
     }
 
-    private Comparator<Record> getSortComparator(SortType sortType) {
-        if (sortType == SortType.GENDER) {
-            // by default (since we defined male first in the enum), male comes first in the sort, so just reverse it.
-            // then comparing provides sub sort after gender
-            return Comparator.comparing(Record::getGender).reversed().thenComparing(Record::getLastName);
+    /**
+     * Counts each group of inputs on its own thread, then adds up the counts of every group and prints them.
+     * @param dedupe - the records seen so far, if duplicates should be removed, otherwise null
+     */
+    private void runAggregate(List<List<InputFile>> groups, RecordFingerprintSet dedupe, String format, String output)
+            throws IOException, RecordParseException, InterruptedException {
+        List<RecordAggregate> aggregates = new ArrayList<>();
+        List<InputGroups.RecordSink> sinks = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++) {
+            RecordAggregate groupAggregate = new RecordAggregate();
+            aggregates.add(groupAggregate);
+            sinks.add(dedupe == null ? groupAggregate::add : InputGroups.dedupe(groupAggregate::add, dedupe));
         }
-        if (sortType == SortType.BIRTH_DATE) {
-            return Comparator.comparing(Record::getDateOfBirth);
+        InputGroups.read(groups, sinks);
+        RecordAggregate total = new RecordAggregate();
+        aggregates.forEach(total::merge);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(openOutput(output), StandardCharsets.UTF_8))) {
+            if (format.equals("json")) {
+                total.writeJson(writer);
+            } else {
+                total.writeCsv(writer);
+            }
         }
-        if (sortType == SortType.LAST_NAME) {
-            return Comparator.comparing(Record::getLastName).reversed();
+    }
+
+    /**
+     * Sorts each group of inputs on its own thread, then merges the sorted groups as they are printed, rather than sorting
+     * everything again. Each sort holds its share of the max memory of records, past that it writes sorted runs to temporary
+     * files and merges them, so the inputs don't have to fit in the heap. With a limit only the first offset + limit records of
+     * each group can be printed, so each group just keeps those instead of sorting everything.
+     * @param limit - the most records to print, or -1 to print them all
+     */
+    private void runSorted(List<List<InputFile>> groups, RecordFingerprintSet dedupe, Comparator<Record> comparator,
+                           Consumer<List<Record>> listSort, long offset, long limit, long maxMemory, Path tempDir, String output,
+                           String outputDelimiter) throws IOException, RecordParseException, InterruptedException {
+        boolean bounded = limit >= 0 && offset + limit <= MAX_TOP_K;
+        List<TopK<Record>> tops = new ArrayList<>();
+        List<ExternalRecordSorter> sorters = new ArrayList<>();
+        try {
+            List<InputGroups.RecordSink> sinks = new ArrayList<>();
+            for (int i = 0; i < groups.size(); i++) {
+                InputGroups.RecordSink sink;
+                if (bounded) {
+                    TopK<Record> top = new TopK<>((int) (offset + limit), comparator);
+                    tops.add(top);
+                    sink = top::add;
+                } else {
+                    ExternalRecordSorter sorter = new ExternalRecordSorter(comparator, listSort, Math.max(1, maxMemory / groups.size()),
+                            tempDir);
+                    sorters.add(sorter);
+                    sink = sorter::add;
+                }
+                sinks.add(dedupe == null ? sink : InputGroups.dedupe(sink, dedupe));
+            }
+            InputGroups.read(groups, sinks);
+
+            // the merge breaks ties by input order, so the output is the same as stably sorting all the inputs joined together
+            List<Iterator<Record>> sorted = new ArrayList<>();
+            for (TopK<Record> top : tops) {
+                sorted.add(top.toSortedList().iterator());
+            }
+            for (ExternalRecordSorter sorter : sorters) {
+                sorted.add(sorter.sortedIterator());
+            }
+            try (RecordWriter writer = openWriter(output, outputDelimiter)) {
+                printRange(new MergeIterator<>(sorted, comparator), offset, limit, writer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (ExternalRecordSorter sorter : sorters) {
+                sorter.close();
+            }
         }
+    }
 
-        // dead code, but required for compiling
+    /**
+     * Prints how long each input took to read to stderr, so it doesn't mix with the records on stdout.
+     */
+    private static void printSummary(boolean summary, List<InputFile> inputs, RecordFingerprintSet dedupe, long started) {
+        if (!summary) {
+            return;
+        }
+        long records = 0;
+        long bytes = 0;
+        for (InputFile input : inputs) {
+            System.err.println(String.format("%s: %d records, %d bytes, %d ms", input.getPath(), input.getRecords(), input.getSize(),
+                    TimeUnit.NANOSECONDS.toMillis(input.getNanos())));
+            records += input.getRecords();
+            bytes += input.getSize();
+        }
+        if (dedupe != null) {
+            System.err.println(String.format("Duplicates: %d records removed", dedupe.getDuplicateCount()));
+        }
+        System.err.println(String.format("Total: %d files, %d records, %d bytes, %d ms", inputs.size(), records, bytes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+    }
+
+    /**
+     * Prints the sorted records after skipping the first offset of them, stopping once limit have been printed.
+     * @param limit - the most records to print, or -1 to print them all
+     */
+    private static void printRange(Iterator<Record> sorted, long offset, long limit, RecordWriter writer) throws IOException {
+        for (long skipped = 0; skipped < offset && sorted.hasNext(); skipped++) {
+            sorted.next();
+        }
+        for (long printed = 0; (limit < 0 || printed < limit) && sorted.hasNext(); printed++) {
+            writer.write(sorted.next());
+        }
+    }
+
+    /**
+     * Opens a writer to the --output file, or to stdout if there isn't one. Closing a writer to stdout only flushes it, so
+     * stdout stays open for anything printed afterwards.
+     */
+    private RecordWriter openWriter(String output, String delimiter) throws IOException {
+        if (output != null) {
+            return RecordWriter.open(Paths.get(output), delimiter);
+        }
+        return new RecordWriter(openOutput(null), delimiter);
+    }
+
+    /**
+     * Opens the --output file, or stdout if there isn't one, the same way as {@link #openWriter(String, String)}.
+     */
+    private OutputStream openOutput(String output) throws IOException {
+        if (output != null) {
+            return Files.newOutputStream(Paths.get(output));
+        }
+        PrintStream stdout = System.out;
+        return new FilterOutputStream(stdout) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                stdout.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() {
+                stdout.flush();
+            }
+        };
+    }
+
+    /**
+     * Only reads the records appended to the inputs since the last run (with --since-checkpoint) or the last poll (with --follow).
+     * Each batch of new records is sorted on its own, since records that haven't been written yet can't be sorted ahead of time.
+     * The checkpoint file holds the read position of all three inputs, and is replaced after every batch is printed.
+     */
+    private void runIncremental(ApplicationArguments args, Path csvInput, Path ssvInput, Path psvInput, SortType sortType,
+                                RecordCollation collation, RecordFingerprintSet dedupe, RecordWriter writer) throws Exception {
+        String checkpointOption = firstOptionValue(args, "since-checkpoint");
+        Path checkpointPath = checkpointOption == null ? null : Paths.get(checkpointOption);
+        Properties checkpoints = loadCheckpoints(checkpointPath);
+
+        long interval = DEFAULT_FOLLOW_INTERVAL_MILLIS;
+        if (args.containsOption("follow-interval")) {
+            try {
+                interval = Long.parseLong(firstOptionValue(args, "follow-interval"));
+            } catch (NumberFormatException e) {
+                interval = -1;
+            }
+            if (interval < 0) {
+                System.out.println("Follow interval must be a number of milliseconds");
+                exitWithError(EXIT_INVALID_ARGS);
+            }
+        }
+
+        Map<String, IncrementalRecordReader> readers = new LinkedHashMap<>();
+        readers.put("csv", new IncrementalRecordReader(csvInput, ",", Checkpoint.load(checkpoints, "csv")));
+        readers.put("ssv", new IncrementalRecordReader(ssvInput, " ", Checkpoint.load(checkpoints, "ssv")));
+        readers.put("psv", new IncrementalRecordReader(psvInput, "|", Checkpoint.load(checkpoints, "psv")));
+
+        while (true) {
+            List<Record> records = new ArrayList<>();
+            for (IncrementalRecordReader reader : readers.values()) {
+                for (Record record : reader.poll()) {
+                    // duplicates are only removed within a run, the checkpoint doesn't remember records from earlier runs
+                    if (dedupe == null || dedupe.add(record)) {
+                        records.add(record);
+                    }
+                }
+            }
+            getListSort(sortType, collation).accept(records);
+            for (Record record : records) {
+                writer.write(record);
+            }
+            // flushed before the checkpoints are saved, so a checkpoint never moves past records that weren't written
+            writer.flush();
+
+            if (checkpointPath != null) {
+                readers.forEach((name, reader) -> reader.getCheckpoint().store(checkpoints, name));
+                saveCheckpoints(checkpoints, checkpointPath);
+            }
+
+            if (!args.containsOption("follow")) {
+                return;
+            }
+            awaitNextPoll(interval);
+        }
+    }
+
+    private Properties loadCheckpoints(Path checkpointPath) throws IOException {
+        Properties checkpoints = new Properties();
+        if (checkpointPath != null && Files.exists(checkpointPath)) {
+            try (Reader reader = Files.newBufferedReader(checkpointPath, StandardCharsets.ISO_8859_1)) {
+                checkpoints.load(reader);
+            }
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Writes the checkpoints to a temporary file first and moves it into place, so a run that is killed part way through never
+     * leaves a half written checkpoint file behind.
+     */
+    private void saveCheckpoints(Properties checkpoints, Path checkpointPath) throws IOException {
+        Path temp = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.ISO_8859_1)) {
+            checkpoints.store(writer, "record-homework-cli checkpoints");
+        }
+        Files.move(temp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the --max-memory option in bytes, or a quarter of the max heap if not given
+     */
+    private long getMaxMemory(ApplicationArguments args) {
+        String maxMemoryOption = firstOptionValue(args, "max-memory");
+        if (maxMemoryOption == null) {
+            return Runtime.getRuntime().maxMemory() / 4;
+        }
+        long maxMemory = parseSize(maxMemoryOption);
+        if (maxMemory <= 0) {
+            System.out.println("Max memory must be a number of bytes, optionally followed by k, m or g");
+            exitWithError(EXIT_INVALID_ARGS);
+        }
+        return maxMemory;
+    }
+
+    /**
+     * @return the collation to order last names by, from --collation and --ignore-case, or null to compare their chars
+     */
+    private RecordCollation getCollation(ApplicationArguments args) {
+        if (!args.containsOption("collation") && !args.containsOption("ignore-case")) {
+            return null;
+        }
+        Locale locale = null;
+        try {
+            locale = RecordCollation.parseLocale(firstOptionValue(args, "collation"));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Collation must be a language tag with an installed collation, e.g. en-US, de or root");
+            exitWithError(EXIT_INVALID_ARGS);
+        }
+        return new RecordCollation(locale, !args.containsOption("ignore-case"));
+    }
+
+    /**
+     * @return how many input files can be open at once, from --max-open-files or else the number of processors
+     */
+    private int getMaxOpenFiles(ApplicationArguments args) {
+        long maxOpenFiles = getCountOption(args, "max-open-files");
+        if (maxOpenFiles == 0) {
+            System.out.println("--max-open-files must be at least 1");
+            exitWithError(EXIT_INVALID_ARGS);
+        }
+        if (maxOpenFiles < 0) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return (int) Math.min(maxOpenFiles, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the delimiter for the --output-format option, csv if not given
+     */
+    private String getOutputDelimiter(ApplicationArguments args) {
+        String format = firstOptionValue(args, "output-format");
+        if (format == null || format.equalsIgnoreCase("csv")) {
+            return ",";
+        }
+        if (format.equalsIgnoreCase("ssv")) {
+            return " ";
+        }
+        if (format.equalsIgnoreCase("psv")) {
+            return "|";
+        }
+        System.out.println("Output format must be one of [csv|ssv|psv]");
+        exitWithError(EXIT_INVALID_ARGS);
+        return null;
+    }
+
+    /**
+     * @return the format for --aggregate, csv if not given
+     */
+    private String getAggregateFormat(ApplicationArguments args) {
+        String format = firstOptionValue(args, "aggregate");
+        if (format == null || format.isEmpty() || format.equalsIgnoreCase("csv")) {
+            return "csv";
+        }
+        if (format.equalsIgnoreCase("json")) {
+            return "json";
+        }
+        System.out.println("Aggregate format must be one of [csv|json]");
+        exitWithError(EXIT_INVALID_ARGS);
         return null;
     }
 
-    private void validateInputOptions(String csvInput, String ssvInput, String psvInput, SortType sortType) {
-        if (sortType == null) {
-            System.out.println("Sort type must be one of [gender|birth_date|last_name]");
-            exitWithError(EXIT_INVALID_SORT);
+    /**
+     * @return the value of a --limit or --offset style option, or -1 if not given
+     */
+    private long getCountOption(ApplicationArguments args, String option) {
+        String value = firstOptionValue(args, option);
+        if (value == null) {
+            return -1;
+        }
+        long count;
+        try {
+            count = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            count = -1;
+        }
+        if (count < 0) {
+            System.out.println("--" + option + " must be a whole number of records");
+            exitWithError(EXIT_INVALID_ARGS);
+        }
+        return count;
+    }
+
+    /**
+     * @return the --temp-dir option, or null to use the default temporary directory
+     */
+    private Path getTempDir(ApplicationArguments args) {
+        String tempDirOption = firstOptionValue(args, "temp-dir");
+        if (tempDirOption == null) {
+            return null;
+        }
+        Path tempDir = Paths.get(tempDirOption);
+        if (!Files.isDirectory(tempDir)) {
+            System.out.println("Temp dir does not exist!");
+            exitWithError(EXIT_INVALID_ARGS);
+        }
+        return tempDir;
+    }
+
+    /**
+     * Parses a size like 512m or 2g into bytes.
+     * @return the size, or -1 if not a valid size
+     */
+    static long parseSize(String size) {
+        String value = size.trim().toLowerCase();
+        long multiplier = 1;
+        if (value.endsWith("k")) {
+            multiplier = 1024;
+        } else if (value.endsWith("m")) {
+            multiplier = 1024 * 1024;
+        } else if (value.endsWith("g")) {
+            multiplier = 1024 * 1024 * 1024;
+        }
+        if (multiplier != 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            long bytes = Long.parseLong(value);
+            return bytes < 0 || bytes > Long.MAX_VALUE / multiplier ? -1 : bytes * multiplier;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Waits between polls of the inputs while following them.
+     */
+    protected void awaitNextPoll(long intervalMillis) throws InterruptedException {
+        Thread.sleep(intervalMillis);
+    }
+
+    /**
+     * Expands every input option into the files to read, in the order they are joined: the csv, ssv and psv inputs, then
+     * --input (with delimiters inferred from the file extensions), then snapshots. Terminates if any are invalid.
+     */
+    private List<InputFile> collectInputs(ApplicationArguments args) throws IOException {
+        List<InputFile> inputs = new ArrayList<>();
+        String[][] typedOptions = {{"input-csv", ",", "CSV"}, {"input-ssv", " ", "SSV"}, {"input-psv", "|", "PSV"}};
+        for (String[] typed : typedOptions) {
+            for (Path path : expandOption(args, typed[0], typed[2] + " input file")) {
+                inputs.add(InputFile.text(path, typed[1]));
+            }
+        }
+        for (Path path : expandOption(args, "input", "Input file")) {
+            String delimiter = InputFile.inferDelimiter(path);
+            if (delimiter == null) {
+                System.out.println("Unable to tell the delimiter of " + path + " from its extension, use --input-csv, --input-ssv or --input-psv instead");
+                exitWithError(EXIT_INVALID_ARGS);
+            }
+            inputs.add(InputFile.text(path, delimiter));
+        }
+        for (Path path : expandOption(args, "input-snapshot", "Snapshot input file")) {
+            inputs.add(InputFile.snapshot(path));
+        }
+        return inputs;
+    }
+
+    /**
+     * @return every file named by every value of an option, terminating if a value that isn't a glob doesn't exist
+     */
+    private List<Path> expandOption(ApplicationArguments args, String option, String description) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        List<String> values = args.containsOption(option) ? args.getOptionValues(option) : Collections.emptyList();
+        for (String value : values) {
+            List<Path> expanded = InputFile.expand(value);
+            if (expanded == null) {
+                // the original messages for the three required inputs
+                System.out.println(option.equals("input-snapshot") || option.equals("input")
+                        ? description + " " + value + " does not exist!" : description + " does not exist!");
+                exitWithError(EXIT_MISSING_INPUT_FILE);
+                return paths;
+            }
+            paths.addAll(expanded);
         }
+        return paths;
+    }
 
-        if (!Paths.get(csvInput).toFile().exists()) {
-            System.out.println("CSV input file does not exist!");
-            exitWithError(EXIT_MISSING_INPUT_FILE);
+    /**
+     * Parses all of the inputs into a single columnar batch.
+     * @param dedupe - the records seen so far, if duplicates should be removed, otherwise null
+     */
+    private RecordBatch parseBatch(List<InputFile> inputs, RecordFingerprintSet dedupe) throws IOException, RecordParseException {
+        RecordBatch batch = new RecordBatch();
+        for (InputFile input : inputs) {
+            long started = System.nanoTime();
+            int before = batch.size();
+            if (input.isSnapshot()) {
+                RecordSnapshot.read(input.getPath(), batch);
+            } else {
+                RecordParser.parseBatch(input.getPath(), input.getDelimiter(), batch);
+            }
+            input.setStats(batch.size() - before, System.nanoTime() - started);
+        }
+        if (dedupe == null) {
+            return batch;
         }
+        RecordBatch unique = new RecordBatch(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Record record = batch.getRecord(i);
+            if (dedupe.add(record)) {
+                unique.add(record);
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Sorts record indexes of a columnar batch rather than record objects, which takes far less memory for large inputs.
+     * Records are only created one at a time as they are printed.
+     */
+    private void printColumnar(RecordBatch batch, SortType sortType, RecordCollation collation, long offset, long limit,
+                               RecordWriter writer) throws IOException {
+        int[] sorted = batch.sort(batch.indexes(), getBatchComparator(batch, sortType, collation));
+        printRange(batch.asRecords(sorted).iterator(), offset, limit, writer);
+    }
 
-        if (!Paths.get(ssvInput).toFile().exists()) {
-            System.out.println("SSV input file does not exist!");
-            exitWithError(EXIT_MISSING_INPUT_FILE);
+    /**
+     * The same ordering as {@link #getSortComparator(SortType, RecordCollation)}, for the indexes of a {@link RecordBatch}.
+     */
+    private RecordBatch.IndexComparator getBatchComparator(RecordBatch batch, SortType sortType, RecordCollation collation) {
+        if (sortType == SortType.BIRTH_DATE) {
+            return batch.birthDateOrder();
+        }
+        RecordBatch.IndexComparator lastNameOrder = collation == null ? batch.lastNameOrder() : batch.lastNameOrder(collation);
+        if (sortType == SortType.GENDER) {
+            return batch.genderOrder().reversed().thenComparing(lastNameOrder);
         }
+        return lastNameOrder.reversed();
+    }
 
-        if (!Paths.get(psvInput).toFile().exists()) {
-            System.out.println("PSV input file does not exist!");
-            exitWithError(EXIT_MISSING_INPUT_FILE);
+    /**
+     * The same ordering as {@link #getSortComparator(SortType, RecordCollation)}, with a sort specialized to the keys of the sort type that
+     * buckets records rather than comparing them.
+     */
+    private Consumer<List<Record>> getListSort(SortType sortType, RecordCollation collation) {
+        if (sortType == SortType.GENDER) {
+            // female first, same as the reversed enum order of the comparator
+            return records -> RecordSorts.sortByGenderThenLastName(records, true, collation);
+        }
+        if (sortType == SortType.BIRTH_DATE) {
+            return RecordSorts::sortByBirthDate;
+        }
+        if (collation != null) {
+            return records -> RecordSorts.sortByLastName(records, true, collation);
         }
+        return records -> RecordSorts.sortByLastName(records, true);
+    }
+
+    private Comparator<Record> getSortComparator(SortType sortType, RecordCollation collation) {
+        // by default last names are compared by their chars, or by their collation keys with --collation or --ignore-case
+        Comparator<Record> lastNameOrder = collation == null ? Comparator.comparing(Record::getLastName) : collation.lastNameOrder();
+        if (sortType == SortType.GENDER) {
+            // by default (since we defined male first in the enum), male comes first in the sort, so just reverse it.
+            // then comparing provides sub sort after gender
+            return Comparator.comparing(Record::getGender).reversed().thenComparing(lastNameOrder);
+        }
+        if (sortType == SortType.BIRTH_DATE) {
+            return Comparator.comparingInt(Record::dateOfBirthEpochDay);
+        }
+        if (sortType == SortType.LAST_NAME) {
+            return lastNameOrder.reversed();
+        }
+
+        // dead code, but required for compiling
+        return null;
+    }
+
+    /**
+     * @return the first value of an option, or null if the option wasn't provided
+     */
+    private String firstOptionValue(ApplicationArguments args, String option) {
+        List<String> values = args.getOptionValues(option);
+        return values == null || values.isEmpty() ? null : values.get(0);
     }
 
     protected void exitWithError(int statusCode) {
-        System.out.println("Usage: java -jar <jar> --input-csv=<path to csv file> --input-psv=<path to psv file> --input-ssv=<path to ssv file> --sort-type=[gender|birth_date|last_name]");
+        System.out.println(USAGE);
         System.exit(statusCode);
     }
 }
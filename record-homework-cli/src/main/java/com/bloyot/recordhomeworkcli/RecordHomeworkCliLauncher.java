@@ -0,0 +1,26 @@
+package com.bloyot.recordhomeworkcli;
+
+/**
+ * A lightweight entry point for the cli, which runs exactly the same options and pipeline as
+ * {@link RecordHomeworkCliApplication} without starting Spring. The cli doesn't use any beans, so building an application
+ * context (component scanning, auto-configuration, logging setup) is pure startup cost, and for small inputs it's most of
+ * the run time. Options are parsed by {@link LeanApplicationArguments}, the same way Spring parses them.
+ *
+ * Built as the main class of the lean jar by the cds profile (see the README), which also records a class data sharing
+ * archive to cut startup further.
+ */
+public final class RecordHomeworkCliLauncher {
+
+    private RecordHomeworkCliLauncher() {
+    }
+
+    public static void main(String[] args) {
+        try {
+            new RecordHomeworkCliApplication().run(new LeanApplicationArguments(args));
+        } catch (Exception e) {
+            // the same exit status Spring gives a runner that fails
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.bloyot.recordhomeworkcli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class InputFileTests {
+
+    @Test
+    public void expand(@TempDir Path tempDir) throws Exception {
+        Path a = Files.createFile(tempDir.resolve("a.csv"));
+        Path b = Files.createFile(tempDir.resolve("b.psv"));
+        Path nested = Files.createDirectories(tempDir.resolve("nested"));
+        Path c = Files.createFile(nested.resolve("c.csv"));
+
+        assertEquals(Collections.singletonList(a), InputFile.expand(a.toString()));
+        // directories are only listed one level deep, and skip other directories
+        assertEquals(Arrays.asList(a, b), InputFile.expand(tempDir.toString()));
+        assertEquals(Collections.singletonList(a), InputFile.expand(tempDir.resolve("*.csv").toString()));
+        assertEquals(Arrays.asList(a, c), InputFile.expand(tempDir + "/**.csv"));
+        assertEquals(Collections.singletonList(c), InputFile.expand(tempDir + "/*/*.csv"));
+        assertEquals(Collections.emptyList(), InputFile.expand(tempDir.resolve("*.ssv").toString()));
+        assertEquals(Collections.emptyList(), InputFile.expand(tempDir.resolve("missing").resolve("*.csv").toString()));
+        assertNull(InputFile.expand(tempDir.resolve("missing.csv").toString()));
+    }
+
+    @Test
+    public void inferDelimiter() {
+        assertEquals(",", InputFile.inferDelimiter(Paths.get("dir", "records.csv")));
+        assertEquals(" ", InputFile.inferDelimiter(Paths.get("records.SSV")));
+        assertEquals("|", InputFile.inferDelimiter(Paths.get("records.psv.gz")));
+        assertEquals(",", InputFile.inferDelimiter(Paths.get("records.csv.zst")));
+        assertNull(InputFile.inferDelimiter(Paths.get("records.txt")));
+        assertNull(InputFile.inferDelimiter(Paths.get("records.gz")));
+    }
+}
@@ -0,0 +1,40 @@
+package com.bloyot.recordhomeworkcli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InputGroupsTests {
+
+    @Test
+    public void split(@TempDir Path tempDir) throws Exception {
+        List<InputFile> inputs = new ArrayList<>();
+        int[] sizes = {100, 10, 10, 10, 50, 50, 0};
+        for (int i = 0; i < sizes.length; i++) {
+            Path file = tempDir.resolve(i + ".csv");
+            Files.write(file, new byte[sizes[i]]);
+            inputs.add(InputFile.text(file, ","));
+        }
+        assertEquals(Arrays.asList(1, 4, 2), groupSizes(InputGroups.split(inputs, 3)));
+        assertEquals(Arrays.asList(7), groupSizes(InputGroups.split(inputs, 1)));
+        assertEquals(Arrays.asList(1, 1, 1, 1, 1, 1, 1), groupSizes(InputGroups.split(inputs, 10)));
+        assertTrue(InputGroups.split(Collections.emptyList(), 4).isEmpty());
+    }
+
+    private static List<Integer> groupSizes(List<List<InputFile>> groups) {
+        List<Integer> sizes = new ArrayList<>();
+        for (List<InputFile> group : groups) {
+            sizes.add(group.size());
+        }
+        return sizes;
+    }
+}
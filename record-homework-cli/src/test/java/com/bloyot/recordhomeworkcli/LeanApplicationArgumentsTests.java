@@ -0,0 +1,42 @@
+package com.bloyot.recordhomeworkcli;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LeanApplicationArgumentsTests {
+
+    @Test
+    public void matchesSpring() {
+        String[][] cases = {
+                {},
+                {"--sort-type=gender", "--input-csv=/tmp/a=b.csv", "--follow", "extra", "-x"},
+                {"--input-snapshot=one", "--input-snapshot=two", "--input-snapshot", "--limit="},
+                {"--", "--output=", "plain"},
+        };
+        for (String[] args : cases) {
+            // "--" and "--=x" are rejected by both, so only compare what both parse
+            if (Arrays.asList(args).contains("--")) {
+                assertThrows(IllegalArgumentException.class, () -> new DefaultApplicationArguments(args));
+                assertThrows(IllegalArgumentException.class, () -> new LeanApplicationArguments(args));
+                continue;
+            }
+            ApplicationArguments expected = new DefaultApplicationArguments(args);
+            ApplicationArguments actual = new LeanApplicationArguments(args);
+            assertArrayEquals(expected.getSourceArgs(), actual.getSourceArgs());
+            assertEquals(expected.getOptionNames(), actual.getOptionNames());
+            assertEquals(expected.getNonOptionArgs(), actual.getNonOptionArgs());
+            for (String name : new String[]{"sort-type", "input-csv", "follow", "input-snapshot", "limit", "missing"}) {
+                assertEquals(expected.containsOption(name), actual.containsOption(name), name);
+                assertEquals(expected.getOptionValues(name), actual.getOptionValues(name), name);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new LeanApplicationArguments("--=x"));
+    }
+}
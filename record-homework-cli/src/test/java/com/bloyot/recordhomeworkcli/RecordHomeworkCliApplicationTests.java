@@ -1,14 +1,31 @@
 package com.bloyot.recordhomeworkcli;
 
+import com.bloyot.recordhomeworkcommon.RecordParseException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.opentest4j.TestAbortedException;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.DefaultApplicationArguments;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import static com.bloyot.recordhomeworkcli.RecordHomeworkCliApplication.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 /**
@@ -72,14 +89,490 @@ class RecordHomeworkCliApplicationTests {
 
     @Test
     public void tooFewArguments() throws Exception {
+        ApplicationArguments args = new DefaultApplicationArguments("--sort-type=birth_date");
+        try {
+            cli.run(args);
+        } catch (TestAbortedException e) {};
+
+        verify(cli).exitWithError(EXIT_MISSING_ARGS);
+    }
+
+    @Test
+    public void singleTypedInput(@TempDir Path tempDir) throws Exception {
+        Path shards = Files.createDirectories(tempDir.resolve("shards"));
+        Files.copy(Paths.get("src", "test", "resources", "records.csv"), shards.resolve("records.csv"));
+        String output = runArgsWithOutput("--sort-type=birth_date", "--input-csv=" + shards);
+        assertEquals(10, output.split("\n").length);
+        assertEquals(output, runArgsWithOutput("--sort-type=birth_date", "--input-csv=" + shards.resolve("records.csv")));
+    }
+
+    @Test
+    public void followWithoutEveryTypedInput(@TempDir Path tempDir) throws Exception {
+        String[] inputs = copyInputs(tempDir);
+        ApplicationArguments args = new DefaultApplicationArguments("--sort-type=birth_date", inputs[0], inputs[2], "--follow");
+        try {
+            cli.run(args);
+        } catch (TestAbortedException e) {};
+
+        verify(cli).exitWithError(EXIT_INVALID_ARGS);
+    }
+
+    @Test
+    public void columnarMatchesDefault() throws Exception {
+        for (SortType sortType : SortType.values()) {
+            String expected = runWithOutput("--sort-type=" + sortType.getSortType());
+            assertEquals(30, expected.split("\n").length);
+            assertEquals(expected, runWithOutput("--sort-type=" + sortType.getSortType(), "--columnar"));
+        }
+    }
+
+    @Test
+    public void sortedOutput() throws Exception {
+        String output = runWithOutput("--sort-type=birth_date");
+        assertEquals("Taylan,Solis,female,purple,06/08/1899", output.split("\n")[0]);
+        assertEquals("Mitchell,Roksana,female,blue,10/02/2079", output.split("\n")[29]);
+    }
+
+    @Test
+    public void snapshotMatchesTextInputs(@TempDir Path tempDir) throws Exception {
+        Path snapshot = tempDir.resolve("records.snapshot");
+        assertEquals("", runWithOutput("--sort-type=gender", "--write-snapshot=" + snapshot));
+
+        for (SortType sortType : SortType.values()) {
+            String expected = runWithOutput("--sort-type=" + sortType.getSortType());
+            assertEquals(expected, runArgsWithOutput("--sort-type=" + sortType.getSortType(), "--input-snapshot=" + snapshot));
+            assertEquals(expected, runArgsWithOutput("--sort-type=" + sortType.getSortType(), "--input-snapshot=" + snapshot, "--columnar"));
+        }
+
+        // snapshots are joined with the text inputs, and each other
+        assertEquals(60, runWithOutput("--sort-type=last_name", "--input-snapshot=" + snapshot).split("\n").length);
+        assertEquals(60, runArgsWithOutput("--sort-type=last_name", "--input-snapshot=" + snapshot, "--input-snapshot=" + snapshot).split("\n").length);
+    }
+
+    @Test
+    public void invalidSnapshotInput() throws Exception {
         ApplicationArguments args = new DefaultApplicationArguments("--sort-type=birth_date",
+                "--input-snapshot=" + Paths.get("z", "foo", "bar", "records.snapshot").toAbsolutePath()); // doesn't exist
+        try {
+            cli.run(args);
+        } catch (TestAbortedException e) {};
+
+        verify(cli).exitWithError(EXIT_MISSING_INPUT_FILE);
+    }
+
+    @Test
+    public void compressedInputs(@TempDir Path tempDir) throws Exception {
+        String[] args = new String[4];
+        String[] types = {"csv", "ssv", "psv"};
+        for (int i = 0; i < types.length; i++) {
+            Path compressed = tempDir.resolve("records." + types[i] + ".gz");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+                Files.copy(Paths.get("src", "test", "resources", "records." + types[i]), out);
+            }
+            args[i] = "--input-" + types[i] + "=" + compressed;
+        }
+
+        for (SortType sortType : SortType.values()) {
+            args[3] = "--sort-type=" + sortType.getSortType();
+            assertEquals(runWithOutput(args[3]), runArgsWithOutput(args));
+        }
+    }
+
+    @Test
+    public void sinceCheckpoint(@TempDir Path tempDir) throws Exception {
+        String[] inputs = copyInputs(tempDir);
+        Path checkpoint = tempDir.resolve("checkpoint.properties");
+        String since = "--since-checkpoint=" + checkpoint;
+
+        // the first run reads everything, same as a normal run
+        assertEquals(runWithOutput("--sort-type=birth_date"), runArgsWithOutput(inputs[0], inputs[1], inputs[2], "--sort-type=birth_date", since));
+        assertEquals("", runArgsWithOutput(inputs[0], inputs[1], inputs[2], "--sort-type=birth_date", since));
+
+        Files.write(tempDir.resolve("records.psv"), "Ada|Weaver|female|red|12/15/2037\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.write(tempDir.resolve("records.csv"), "Kobe,Bass,male,green,10/11/1949\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertEquals("Kobe,Bass,male,green,10/11/1949\nAda,Weaver,female,red,12/15/2037\n",
+                runArgsWithOutput(inputs[0], inputs[1], inputs[2], "--sort-type=birth_date", since));
+    }
+
+    @Test
+    public void follow(@TempDir Path tempDir) throws Exception {
+        String[] inputs = copyInputs(tempDir);
+        int[] polls = {0};
+        RecordHomeworkCliApplication followCli = spy(new RecordHomeworkCliApplication() {
+            @Override
+            protected void exitWithError(int statusCode) {
+                throw new TestAbortedException();
+            }
+
+            @Override
+            protected void awaitNextPoll(long intervalMillis) throws InterruptedException {
+                assertEquals(5, intervalMillis);
+                try {
+                    if (polls[0]++ == 2) {
+                        throw new InterruptedException();
+                    }
+                    Files.write(tempDir.resolve("records.ssv"), ("Last" + polls[0] + " First female blue 01/02/1980\n").getBytes(StandardCharsets.UTF_8),
+                            StandardOpenOption.APPEND);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true, "UTF-8"));
+        try {
+            assertThrows(InterruptedException.class, () -> followCli.run(new DefaultApplicationArguments(inputs[0], inputs[1], inputs[2],
+                    "--sort-type=last_name", "--follow", "--follow-interval=5")));
+        } finally {
+            System.setOut(originalOut);
+        }
+
+        String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n").split("\n");
+        assertEquals(32, lines.length);
+        assertEquals("Last1,First,female,blue,01/02/1980", lines[30]);
+        assertEquals("Last2,First,female,blue,01/02/1980", lines[31]);
+    }
+
+    @Test
+    public void followWithSnapshot(@TempDir Path tempDir) throws Exception {
+        Path snapshot = tempDir.resolve("records.snapshot");
+        runWithOutput("--sort-type=gender", "--write-snapshot=" + snapshot);
+        ApplicationArguments args = new DefaultApplicationArguments("--sort-type=birth_date", "--input-snapshot=" + snapshot, "--follow");
+        try {
+            cli.run(args);
+        } catch (TestAbortedException e) {};
+
+        verify(cli).exitWithError(EXIT_INVALID_ARGS);
+    }
+
+    @Test
+    public void externalSortMatchesDefault(@TempDir Path tempDir) throws Exception {
+        for (SortType sortType : SortType.values()) {
+            String expected = runWithOutput("--sort-type=" + sortType.getSortType());
+            // small enough that the records are written out over several runs
+            assertEquals(expected, runWithOutput("--sort-type=" + sortType.getSortType(), "--max-memory=1k", "--temp-dir=" + tempDir));
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void invalidLineInOneInput(@TempDir Path tempDir) throws Exception {
+        String[] inputs = copyInputs(tempDir);
+        Files.write(tempDir.resolve("records.ssv"), "Kobe male green 10/11\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Path runs = Files.createDirectory(tempDir.resolve("runs"));
+
+        RecordParseException e = assertThrows(RecordParseException.class, () -> runArgsWithOutput(inputs[0], inputs[1], inputs[2],
+                "--sort-type=gender", "--max-memory=1k", "--temp-dir=" + runs));
+        assertEquals(11, e.getLineNumber());
+        try (Stream<Path> files = Files.list(runs)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void limitAndOffset() throws Exception {
+        for (SortType sortType : SortType.values()) {
+            String[] all = runWithOutput("--sort-type=" + sortType.getSortType()).split("\n");
+            assertEquals(String.join("\n", Arrays.copyOfRange(all, 0, 5)) + "\n", runWithOutput("--sort-type=" + sortType.getSortType(), "--limit=5"));
+            assertEquals(String.join("\n", Arrays.copyOfRange(all, 12, 20)) + "\n",
+                    runWithOutput("--sort-type=" + sortType.getSortType(), "--offset=12", "--limit=8"));
+            assertEquals(String.join("\n", Arrays.copyOfRange(all, 25, 30)) + "\n", runWithOutput("--sort-type=" + sortType.getSortType(), "--offset=25"));
+            assertEquals(String.join("\n", Arrays.copyOfRange(all, 12, 20)) + "\n",
+                    runWithOutput("--sort-type=" + sortType.getSortType(), "--offset=12", "--limit=8", "--columnar"));
+        }
+        assertEquals("", runWithOutput("--sort-type=gender", "--limit=0"));
+        assertEquals("", runWithOutput("--sort-type=gender", "--offset=30", "--limit=10"));
+    }
+
+    @Test
+    public void invalidLimit() throws Exception {
+        ApplicationArguments args = new DefaultApplicationArguments(
                 "--input-csv=" + Paths.get("src", "test", "resources", "records.csv").toAbsolutePath(),
-                "--input-psv=" + Paths.get("src", "test", "resources", "records.psv").toAbsolutePath());
+                "--input-ssv=" + Paths.get("src", "test", "resources", "records.ssv").toAbsolutePath(),
+                "--input-psv=" + Paths.get("src", "test", "resources", "records.psv").toAbsolutePath(),
+                "--sort-type=birth_date", "--limit=-3");
         try {
             cli.run(args);
         } catch (TestAbortedException e) {};
 
-        verify(cli).exitWithError(EXIT_MISSING_ARGS);
+        verify(cli).exitWithError(EXIT_INVALID_ARGS);
+    }
+
+    @Test
+    public void outputFile(@TempDir Path tempDir) throws Exception {
+        String expected = runWithOutput("--sort-type=birth_date");
+        Path output = tempDir.resolve("sorted.psv");
+        assertEquals("", runWithOutput("--sort-type=birth_date", "--output=" + output, "--output-format=psv"));
+        String written = new String(Files.readAllBytes(output), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+        assertEquals(expected.replace(',', '|'), written);
+    }
+
+    @Test
+    public void invalidOutputFormat() throws Exception {
+        ApplicationArguments args = new DefaultApplicationArguments(
+                "--input-csv=" + Paths.get("src", "test", "resources", "records.csv").toAbsolutePath(),
+                "--input-ssv=" + Paths.get("src", "test", "resources", "records.ssv").toAbsolutePath(),
+                "--input-psv=" + Paths.get("src", "test", "resources", "records.psv").toAbsolutePath(),
+                "--sort-type=birth_date", "--output-format=tsv");
+        try {
+            cli.run(args);
+        } catch (TestAbortedException e) {};
+
+        verify(cli).exitWithError(EXIT_INVALID_ARGS);
+    }
+
+    @Test
+    public void leanLauncherMatchesDefault() throws Exception {
+        String expected = runWithOutput("--sort-type=gender");
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true, "UTF-8"));
+        try {
+            RecordHomeworkCliLauncher.main(new String[]{"--sort-type=gender",
+                    "--input-csv=" + Paths.get("src", "test", "resources", "records.csv").toAbsolutePath(),
+                    "--input-ssv=" + Paths.get("src", "test", "resources", "records.ssv").toAbsolutePath(),
+                    "--input-psv=" + Paths.get("src", "test", "resources", "records.psv").toAbsolutePath()});
+        } finally {
+            System.setOut(originalOut);
+        }
+        assertEquals(expected, new String(output.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n"));
+    }
+
+    @Test
+    public void invalidMaxMemory() throws Exception {
+        ApplicationArguments args = new DefaultApplicationArguments(
+                "--input-csv=" + Paths.get("src", "test", "resources", "records.csv").toAbsolutePath(),
+                "--input-ssv=" + Paths.get("src", "test", "resources", "records.ssv").toAbsolutePath(),
+                "--input-psv=" + Paths.get("src", "test", "resources", "records.psv").toAbsolutePath(),
+                "--sort-type=birth_date", "--max-memory=lots");
+        try {
+            cli.run(args);
+        } catch (TestAbortedException e) {};
+
+        verify(cli).exitWithError(EXIT_INVALID_ARGS);
+    }
+
+    @Test
+    public void parseSize() {
+        assertEquals(512, RecordHomeworkCliApplication.parseSize("512"));
+        assertEquals(2048, RecordHomeworkCliApplication.parseSize("2k"));
+        assertEquals(64L * 1024 * 1024, RecordHomeworkCliApplication.parseSize("64M"));
+        assertEquals(3L * 1024 * 1024 * 1024, RecordHomeworkCliApplication.parseSize("3g"));
+        assertEquals(-1, RecordHomeworkCliApplication.parseSize("g"));
+        assertEquals(-1, RecordHomeworkCliApplication.parseSize("-5m"));
+    }
+
+    @Test
+    public void directoryAndGlobInputs(@TempDir Path tempDir) throws Exception {
+        Path dir = Files.createDirectories(tempDir.resolve("in"));
+        copyInputs(dir);
+        for (SortType sortType : SortType.values()) {
+            String sort = "--sort-type=" + sortType.getSortType();
+            String expected = runWithOutput(sort);
+            assertEquals(expected, runArgsWithOutput(sort, "--input=" + dir));
+            assertEquals(expected, runArgsWithOutput(sort, "--input=" + dir.resolve("*.?sv")));
+            assertEquals(expected, runArgsWithOutput(sort, "--input=" + tempDir.resolve("**.{csv,psv,ssv}")));
+            assertEquals(expected, runArgsWithOutput(sort, "--input=" + dir, "--max-open-files=1"));
+            assertEquals(expected, runArgsWithOutput(sort, "--input=" + dir, "--max-open-files=2", "--max-memory=1k"));
+            assertEquals(expected, runArgsWithOutput(sort, "--input=" + dir, "--columnar"));
+        }
+
+        // the typed options can be repeated, and a glob that matches nothing adds nothing
+        String[] copies = copyInputs(Files.createDirectories(tempDir.resolve("more")));
+        String doubled = runArgsWithOutput("--sort-type=gender", "--input=" + dir, copies[0], copies[1], copies[2],
+                "--input-csv=" + tempDir.resolve("*.none"), "--limit=100");
+        assertEquals(60, doubled.split("\n").length);
+    }
+
+    @Test
+    public void invalidInputExtension(@TempDir Path tempDir) throws Exception {
+        Path input = Files.copy(Paths.get("src", "test", "resources", "records.csv"), tempDir.resolve("records.txt"));
+        ApplicationArguments args = new DefaultApplicationArguments("--sort-type=birth_date", "--input=" + input);
+        try {
+            cli.run(args);
+        } catch (TestAbortedException e) {};
+
+        verify(cli).exitWithError(EXIT_INVALID_ARGS);
+    }
+
+    @Test
+    public void invalidMaxOpenFiles() throws Exception {
+        try {
+            runWithOutput("--sort-type=birth_date", "--max-open-files=0");
+        } catch (TestAbortedException e) {};
+
+        verify(cli).exitWithError(EXIT_INVALID_ARGS);
+    }
+
+    @Test
+    public void summary() throws Exception {
+        PrintStream originalErr = System.err;
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(errors, true, "UTF-8"));
+        String output;
+        try {
+            output = runWithOutput("--sort-type=last_name", "--summary");
+        } finally {
+            System.setErr(originalErr);
+        }
+        assertEquals(runWithOutput("--sort-type=last_name"), output);
+        String[] lines = new String(errors.toByteArray(), StandardCharsets.UTF_8).split(System.lineSeparator());
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith(Paths.get("src", "test", "resources", "records.csv").toAbsolutePath() + ": 10 records, "));
+        assertTrue(lines[3].startsWith("Total: 3 files, 30 records, "));
+    }
+
+    @Test
+    public void dedupe(@TempDir Path tempDir) throws Exception {
+        // every record appears twice, once in the sample files and once in the copies
+        Path dir = Files.createDirectories(tempDir.resolve("in"));
+        copyInputs(dir);
+        for (SortType sortType : SortType.values()) {
+            String sort = "--sort-type=" + sortType.getSortType();
+            String expected = runWithOutput(sort);
+            assertEquals(60, runWithOutput(sort, "--input=" + dir).split("\n").length);
+            assertEquals(expected, runWithOutput(sort, "--input=" + dir, "--dedupe"));
+            assertEquals(expected, runWithOutput(sort, "--input=" + dir, "--dedupe", "--max-memory=1k", "--temp-dir=" + tempDir));
+            assertEquals(expected, runWithOutput(sort, "--input=" + dir, "--dedupe", "--max-open-files=1", "--limit=50"));
+            assertEquals(expected, runWithOutput(sort, "--input=" + dir, "--dedupe", "--columnar"));
+        }
+
+        Path snapshot = tempDir.resolve("records.snapshot");
+        runWithOutput("--sort-type=gender", "--input=" + dir, "--dedupe", "--write-snapshot=" + snapshot);
+        assertEquals(runWithOutput("--sort-type=gender"), runArgsWithOutput("--sort-type=gender", "--input-snapshot=" + snapshot));
+        // the sorted runs and the spilled dedupe log are all deleted, leaving just the copies and the snapshot
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    public void aggregate(@TempDir Path tempDir) throws Exception {
+        String csv = runWithOutput("--aggregate");
+        String[] lines = csv.split("\n");
+        assertEquals("group,key,value", lines[0]);
+        assertEquals("records,total,30", lines[1]);
+        assertEquals("birth_date,min,06/08/1899", lines[2]);
+        assertEquals("birth_date,max,10/02/2079", lines[3]);
+        // the sort type isn't needed, but doesn't hurt, and any number of groups add up the same
+        assertEquals(csv, runWithOutput("--aggregate=csv", "--sort-type=gender", "--max-open-files=1"));
+
+        String json = runWithOutput("--aggregate=json");
+        assertTrue(json.startsWith("{\"records\":30,\"minDateOfBirth\":\"06/08/1899\",\"maxDateOfBirth\":\"10/02/2079\","));
+        long female = Arrays.stream(runWithOutput("--sort-type=gender").split("\n")).filter(line -> line.contains(",female,")).count();
+        assertTrue(json.contains("\"gender\":{\"male\":" + (30 - female) + ",\"female\":" + female + "}"));
+
+        // duplicates are removed before they're counted
+        Path dir = Files.createDirectories(tempDir.resolve("in"));
+        copyInputs(dir);
+        assertTrue(runWithOutput("--aggregate", "--input=" + dir).contains("records,total,60\n"));
+        assertEquals(csv, runWithOutput("--aggregate", "--input=" + dir, "--dedupe"));
+
+        Path output = tempDir.resolve("aggregate.json");
+        assertEquals("", runWithOutput("--aggregate=json", "--output=" + output));
+        assertEquals(json, new String(Files.readAllBytes(output), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n"));
+    }
+
+    @Test
+    public void invalidAggregate() throws Exception {
+        for (String[] extraArgs : new String[][]{{"--aggregate=xml"}, {"--aggregate", "--limit=5"}, {"--aggregate", "--columnar"}}) {
+            setup();
+            try {
+                runWithOutput(extraArgs);
+            } catch (TestAbortedException e) {};
+
+            verify(cli).exitWithError(EXIT_INVALID_ARGS);
+        }
+    }
+
+    @Test
+    public void collation(@TempDir Path tempDir) throws Exception {
+        Path input = tempDir.resolve("names.csv");
+        Files.write(input, ("Zed,A,male,red,01/01/2000\n\u00c9mile,B,female,red,01/01/2000\nadams,C,male,red,01/01/2000\n"
+                + "Adams,D,female,red,01/01/2000\n\u00e9mile,E,male,red,01/01/2000\n").getBytes(StandardCharsets.UTF_8));
+        // by chars, upper case before lower case before accents
+        assertEquals("\u00e9mile,E\n\u00c9mile,B\nadams,C\nZed,A\nAdams,D\n",
+                firstTwoFields(runArgsWithOutput("--sort-type=last_name", "--input=" + input)));
+        for (String mode : new String[]{"--summary", "--columnar", "--max-memory=1", "--limit=10"}) {
+            // lower case comes first, so last when descending
+            assertEquals("Zed,A\n\u00c9mile,B\n\u00e9mile,E\nAdams,D\nadams,C\n",
+                    firstTwoFields(runArgsWithOutput("--sort-type=last_name", "--input=" + input, "--collation=en-US", mode)), mode);
+            // names that only differ by case keep their input order
+            assertEquals("Zed,A\n\u00c9mile,B\n\u00e9mile,E\nadams,C\nAdams,D\n",
+                    firstTwoFields(runArgsWithOutput("--sort-type=last_name", "--input=" + input, "--ignore-case", mode)), mode);
+            assertEquals("Adams,D\n\u00c9mile,B\nadams,C\n\u00e9mile,E\nZed,A\n",
+                    firstTwoFields(runArgsWithOutput("--sort-type=gender", "--input=" + input, "--collation", mode)), mode);
+        }
+
+        assertEquals(runArgsWithOutput("--sort-type=last_name", "--input=" + input, "--collation"),
+                runArgsWithOutput("--sort-type=last_name", "--input=" + input, "--collation=root"));
+
+        // not a language tag, and a language without a collation
+        for (String tag : new String[]{"!!", "xx"}) {
+            setup();
+            try {
+                runArgsWithOutput("--sort-type=last_name", "--input=" + input, "--collation=" + tag);
+            } catch (TestAbortedException e) {};
+            verify(cli).exitWithError(EXIT_INVALID_ARGS);
+        }
+    }
+
+    private static String firstTwoFields(String output) {
+        StringBuilder fields = new StringBuilder();
+        for (String line : output.split("\n")) {
+            String[] values = line.split(",");
+            fields.append(values[0]).append(',').append(values[1]).append('\n');
+        }
+        return fields.toString();
+    }
+
+    /**
+     * Copies the sample files to a directory so they can be appended to. The sample files don't end with a line break, which
+     * would leave the last line incomplete until something else is appended, so the copies have one added.
+     * @return the input arguments for the copies
+     */
+    private String[] copyInputs(Path dir) throws IOException {
+        String[] args = new String[3];
+        String[] types = {"csv", "ssv", "psv"};
+        for (int i = 0; i < types.length; i++) {
+            Path copy = dir.resolve("records." + types[i]);
+            Files.copy(Paths.get("src", "test", "resources", "records." + types[i]), copy);
+            Files.write(copy, "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            args[i] = "--input-" + types[i] + "=" + copy;
+        }
+        return args;
+    }
+
+    /**
+     * Runs the cli against the sample files with some extra arguments, returning what it printed.
+     */
+    private String runWithOutput(String... extraArgs) throws Exception {
+        String[] args = new String[extraArgs.length + 3];
+        args[0] = "--input-csv=" + Paths.get("src", "test", "resources", "records.csv").toAbsolutePath();
+        args[1] = "--input-ssv=" + Paths.get("src", "test", "resources", "records.ssv").toAbsolutePath();
+        args[2] = "--input-psv=" + Paths.get("src", "test", "resources", "records.psv").toAbsolutePath();
+        System.arraycopy(extraArgs, 0, args, 3, extraArgs.length);
+        return runArgsWithOutput(args);
+    }
+
+    /**
+     * Runs the cli with exactly the given arguments, returning what it printed.
+     */
+    private String runArgsWithOutput(String... args) throws Exception {
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true, "UTF-8"));
+        try {
+            cli.run(new DefaultApplicationArguments(args));
+        } finally {
+            System.setOut(originalOut);
+        }
+        verify(cli, never()).exitWithError(anyInt());
+        return new String(output.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
     }
 
 }
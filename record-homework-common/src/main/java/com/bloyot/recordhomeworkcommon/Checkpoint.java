@@ -0,0 +1,158 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * How far an {@link IncrementalRecordReader} has read into a file: the byte offset just past the last complete line parsed,
+ * how many lines that was, and enough about the file to tell if it is still the same file next time. The identity check is the
+ * file key (the inode on unix like systems, if the file system has one) plus a checksum of the bytes just before the offset,
+ * so a file that was rotated, replaced, or truncated (even if it has since grown past the offset again) is detected.
+ *
+ * Checkpoints are immutable, and can be saved to and loaded from {@link Properties} so they survive between runs.
+ */
+public final class Checkpoint {
+
+    /**
+     * The number of bytes before the offset that are checksummed.
+     */
+    private static final int FINGERPRINT_SIZE = 64;
+
+    private static final Checkpoint START = new Checkpoint(0, 0, null, 0);
+
+    private final long byteOffset;
+    private final long lineNumber;
+    private final String fileKey;
+    private final long fingerprint;
+
+    Checkpoint(long byteOffset, long lineNumber, String fileKey, long fingerprint) {
+        this.byteOffset = byteOffset;
+        this.lineNumber = lineNumber;
+        this.fileKey = fileKey;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return a checkpoint at the start of any file
+     */
+    public static Checkpoint start() {
+        return START;
+    }
+
+    /**
+     * @return the offset in the file just past the last line parsed, where the next read starts
+     */
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    /**
+     * @return the number of lines parsed up to the offset
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Saves this checkpoint as a set of properties, all starting with the prefix, so several checkpoints can share one file.
+     */
+    public void store(Properties properties, String prefix) {
+        properties.setProperty(prefix + ".offset", Long.toString(byteOffset));
+        properties.setProperty(prefix + ".line", Long.toString(lineNumber));
+        properties.setProperty(prefix + ".fingerprint", Long.toString(fingerprint));
+        if (fileKey != null) {
+            properties.setProperty(prefix + ".fileKey", fileKey);
+        } else {
+            properties.remove(prefix + ".fileKey");
+        }
+    }
+
+    /**
+     * Loads a checkpoint saved with {@link #store(Properties, String)}.
+     * @return the checkpoint, or {@link #start()} if there is no checkpoint saved with the prefix
+     * @throws IllegalArgumentException if the saved checkpoint is malformed
+     */
+    public static Checkpoint load(Properties properties, String prefix) {
+        String offset = properties.getProperty(prefix + ".offset");
+        if (offset == null) {
+            return START;
+        }
+        try {
+            return new Checkpoint(Long.parseLong(offset), Long.parseLong(properties.getProperty(prefix + ".line", "0")),
+                    properties.getProperty(prefix + ".fileKey"), Long.parseLong(properties.getProperty(prefix + ".fingerprint", "0")));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid checkpoint " + prefix, e);
+        }
+    }
+
+    /**
+     * Creates a checkpoint at an offset of an open file.
+     */
+    static Checkpoint of(FileChannel channel, String fileKey, long byteOffset, long lineNumber) throws IOException {
+        return new Checkpoint(byteOffset, lineNumber, fileKey, fingerprint(channel, byteOffset));
+    }
+
+    /**
+     * @return true if the file is still the file this checkpoint was taken from, with the same bytes up to the offset
+     */
+    boolean matches(FileChannel channel, String currentFileKey) throws IOException {
+        if (byteOffset == 0) {
+            return true;
+        }
+        if (fileKey != null && currentFileKey != null && !fileKey.equals(currentFileKey)) {
+            return false;
+        }
+        return channel.size() >= byteOffset && fingerprint(channel, byteOffset) == fingerprint;
+    }
+
+    /**
+     * @return the file key of a file as a string, or null if the file system doesn't provide one
+     */
+    static String fileKey(Path filePath) throws IOException {
+        Object key = Files.readAttributes(filePath, BasicFileAttributes.class).fileKey();
+        return key == null ? null : key.toString();
+    }
+
+    private static long fingerprint(FileChannel channel, long byteOffset) throws IOException {
+        long start = Math.max(0, byteOffset - FINGERPRINT_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (byteOffset - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                // the file is shorter than the offset, can't match
+                return -1;
+            }
+        }
+        buffer.flip();
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Checkpoint that = (Checkpoint) o;
+        return byteOffset == that.byteOffset &&
+                lineNumber == that.lineNumber &&
+                fingerprint == that.fingerprint &&
+                Objects.equals(fileKey, that.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(byteOffset, lineNumber, fileKey, fingerprint);
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint{byteOffset=" + byteOffset + ", lineNumber=" + lineNumber + ", fileKey=" + fileKey + "}";
+    }
+}
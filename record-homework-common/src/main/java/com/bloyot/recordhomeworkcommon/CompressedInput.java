@@ -0,0 +1,402 @@
+package com.bloyot.recordhomeworkcommon;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens input files that may be gzip or zstd compressed, detected from the magic bytes at the start of the file rather than
+ * the file name. Compressed files are decompressed as they are read, so they never have to be written out to disk first.
+ *
+ * Decompression always runs on other threads than the one reading, a megabyte at a time, so it overlaps with parsing. Most
+ * compressed files have to be decompressed from start to finish in order, so that is done by a single read ahead thread. The
+ * exception is BGZF (the blocked gzip written by bgzip), a multi member gzip whose members each record their own size, so the
+ * members can be found without decompressing them and are decompressed in parallel.
+ */
+public final class CompressedInput {
+
+    /**
+     * The compression of an input file.
+     */
+    public enum Format {
+        NONE, GZIP, ZSTD
+    }
+
+    /**
+     * The size of the chunks files are read and decompressed in.
+     */
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final int READ_AHEAD_CHUNKS = 4;
+
+    private CompressedInput() {
+    }
+
+    /**
+     * @return the compression of a file, from its first few bytes
+     * @throws IOException if unable to read the file
+     */
+    public static Format detect(Path filePath) throws IOException {
+        byte[] magic = new byte[4];
+        int read = 0;
+        try (InputStream in = Files.newInputStream(filePath)) {
+            int n;
+            while (read < magic.length && (n = in.read(magic, read, magic.length - read)) > 0) {
+                read += n;
+            }
+        }
+        if (read >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return Format.GZIP;
+        }
+        if (read == 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5 && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd) {
+            return Format.ZSTD;
+        }
+        return Format.NONE;
+    }
+
+    /**
+     * Opens a file for reading, decompressing it if it is compressed, using all available processors for files that can be
+     * decompressed in parallel.
+     * @return a stream of the (decompressed) contents of the file
+     * @throws IOException if unable to read the file
+     */
+    public static InputStream open(Path filePath) throws IOException {
+        return open(filePath, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Opens a file for reading, decompressing it if it is compressed.
+     * @param filePath the file to read
+     * @param parallelism the number of threads to decompress files that allow it with
+     * @return a stream of the (decompressed) contents of the file
+     * @throws IOException if unable to read the file
+     */
+    public static InputStream open(Path filePath, int parallelism) throws IOException {
+        switch (detect(filePath)) {
+            case GZIP:
+                if (parallelism > 1) {
+                    List<long[]> groups = bgzfGroups(filePath);
+                    if (groups != null) {
+                        return new ChunkInputStream(new BlockSource(filePath, groups, parallelism));
+                    }
+                }
+                return new ChunkInputStream(new ReadAheadSource(new GZIPInputStream(bufferedInput(filePath), BUFFER_SIZE)));
+            case ZSTD:
+                return new ChunkInputStream(new ReadAheadSource(new ZstdInputStream(bufferedInput(filePath))));
+            default:
+                return Files.newInputStream(filePath);
+        }
+    }
+
+    private static InputStream bufferedInput(Path filePath) throws IOException {
+        return new BufferedInputStream(Files.newInputStream(filePath), BUFFER_SIZE);
+    }
+
+    /**
+     * Walks the member headers of a gzip file looking for the BGZF block size of each member, and groups consecutive members into
+     * units of roughly the buffer size to decompress as a single task.
+     * @return the start and end offsets of each group, or null if the file isn't BGZF
+     */
+    private static List<long[]> bgzfGroups(Path filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            List<long[]> groups = new ArrayList<>();
+            long groupStart = 0;
+            long offset = 0;
+            while (offset < size) {
+                if (!readFully(channel, header, offset) || (header.get(0) & 0xff) != 0x1f || (header.get(1) & 0xff) != 0x8b
+                        || (header.get(3) & 0x04) == 0) {
+                    return null;
+                }
+                ByteBuffer extra = ByteBuffer.allocate(header.getShort(10) & 0xffff).order(ByteOrder.LITTLE_ENDIAN);
+                if (!readFully(channel, extra, offset + 12)) {
+                    return null;
+                }
+                int blockSize = bgzfBlockSize(extra);
+                if (blockSize < 0 || offset + blockSize > size) {
+                    return null;
+                }
+                offset += blockSize;
+                if (offset - groupStart >= BUFFER_SIZE || offset == size) {
+                    groups.add(new long[]{groupStart, offset});
+                    groupStart = offset;
+                }
+            }
+            return groups;
+        }
+    }
+
+    /**
+     * @return the total size of the member from the "BC" subfield of a gzip extra field, or -1 if it doesn't have one
+     */
+    private static int bgzfBlockSize(ByteBuffer extra) {
+        int position = 0;
+        while (position + 4 <= extra.limit()) {
+            int length = extra.getShort(position + 2) & 0xffff;
+            if (extra.get(position) == 'B' && extra.get(position + 1) == 'C' && length == 2 && position + 6 <= extra.limit()) {
+                return (extra.getShort(position + 4) & 0xffff) + 1;
+            }
+            position += 4 + length;
+        }
+        return -1;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readFully(InputStream in, byte[] bytes) throws IOException {
+        int read = 0;
+        int n;
+        while (read < bytes.length && (n = in.read(bytes, read, bytes.length - read)) > 0) {
+            read += n;
+        }
+        return read;
+    }
+
+    /**
+     * Supplies decompressed data a chunk at a time, in order.
+     */
+    private interface ChunkSource {
+        /**
+         * @return the next chunk, or null at the end of the data
+         */
+        byte[] next() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    /**
+     * Decompresses a stream on a background thread, staying a few chunks ahead of the reader.
+     */
+    private static final class ReadAheadSource implements ChunkSource {
+        private static final byte[] END = new byte[0];
+
+        private final BlockingQueue<Object> chunks = new ArrayBlockingQueue<>(READ_AHEAD_CHUNKS);
+        private final InputStream in;
+        private final Thread thread;
+        private boolean done;
+
+        ReadAheadSource(InputStream in) {
+            this.in = in;
+            this.thread = new Thread(this::decompress, "record-decompress");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void decompress() {
+            try {
+                try {
+                    int read;
+                    do {
+                        byte[] chunk = new byte[BUFFER_SIZE];
+                        read = readFully(in, chunk);
+                        if (read > 0) {
+                            chunks.put(read == chunk.length ? chunk : Arrays.copyOf(chunk, read));
+                        }
+                    } while (read == BUFFER_SIZE);
+                    chunks.put(END);
+                } catch (IOException e) {
+                    chunks.put(e);
+                } catch (RuntimeException e) {
+                    // zstd reports corrupt input with unchecked exceptions
+                    chunks.put(new IOException("Unable to decompress input", e));
+                }
+            } catch (InterruptedException e) {
+                // closed by the reader, nothing more to do
+            }
+        }
+
+        @Override
+        public byte[] next() throws IOException {
+            if (done) {
+                return null;
+            }
+            Object chunk;
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while decompressing input", e);
+            }
+            if (chunk instanceof IOException) {
+                done = true;
+                throw (IOException) chunk;
+            }
+            if (chunk == END) {
+                done = true;
+                return null;
+            }
+            return (byte[]) chunk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            in.close();
+        }
+    }
+
+    /**
+     * Decompresses groups of BGZF members in parallel, keeping a couple of groups per thread in flight and handing them out in
+     * file order.
+     */
+    private static final class BlockSource implements ChunkSource {
+        private final FileChannel channel;
+        private final List<long[]> groups;
+        private final int maxPending;
+        private final ExecutorService executor;
+        private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        private int nextGroup;
+
+        BlockSource(Path filePath, List<long[]> groups, int parallelism) throws IOException {
+            this.channel = FileChannel.open(filePath, StandardOpenOption.READ);
+            this.groups = groups;
+            this.maxPending = parallelism * 2;
+            this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "record-decompress");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        @Override
+        public byte[] next() throws IOException {
+            while (pending.size() < maxPending && nextGroup < groups.size()) {
+                long[] group = groups.get(nextGroup++);
+                pending.add(executor.submit(() -> inflate(group[0], group[1])));
+            }
+            Future<byte[]> next = pending.poll();
+            if (next == null) {
+                return null;
+            }
+            try {
+                return next.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while decompressing input", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Unable to decompress input", e.getCause());
+            }
+        }
+
+        private byte[] inflate(long start, long end) throws IOException {
+            ByteBuffer compressed = ByteBuffer.allocate((int) (end - start));
+            if (!readFully(channel, compressed, start)) {
+                throw new IOException("Unexpected end of compressed input");
+            }
+            // GZIPInputStream carries on through concatenated members, so the whole group is a single stream
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.capacity() * 4);
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.array()), 64 * 1024)) {
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public void close() throws IOException {
+            executor.shutdownNow();
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the chunks of a source as a single stream.
+     */
+    private static final class ChunkInputStream extends InputStream {
+        private final ChunkSource source;
+        private byte[] chunk = new byte[0];
+        private int position;
+        private boolean eof;
+
+        ChunkInputStream(ChunkSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? chunk[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, bytes, offset, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+
+        private boolean fill() throws IOException {
+            while (position == chunk.length) {
+                if (eof) {
+                    return false;
+                }
+                byte[] next = source.next();
+                if (next == null) {
+                    eof = true;
+                    return false;
+                }
+                chunk = next;
+                position = 0;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Sorts any number of records in a bounded amount of memory (an external merge sort). Records are buffered in memory until
+ * they reach the memory limit, then the buffer is sorted and written out to a temporary file as a sorted run. Once every record
+ * has been added the runs (and whatever is left in the buffer) are merged with a {@link MergeIterator}, which only holds the
+ * current record of each run. If everything fits in memory nothing is ever written out, so small inputs are sorted exactly as
+ * they would be in a list.
+ *
+ * Runs are written in the compact binary encoding of {@link RecordCodec}. The sort is stable, same as
+ * {@link List#sort(Comparator)}, however many runs it takes. Temporary files are deleted when the sorter is closed.
+ */
+public final class ExternalRecordSorter implements Closeable {
+
+    /**
+     * The most runs merged at once, more than this are first merged in groups, so the number of open files and read buffers
+     * stays bounded.
+     */
+    public static final int MAX_MERGE_WIDTH = 64;
+
+    /**
+     * Rough heap cost of a record besides the characters of its strings: the record, its strings and their arrays (object
+     * headers and fields), plus the slot in the buffer pointing at it.
+     */
+    private static final int RECORD_OVERHEAD = 160;
+
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+    private final Comparator<? super Record> comparator;
+    private final Consumer<List<Record>> bufferSort;
+    private final long maxMemory;
+    private final Path tempDir;
+
+    private final List<Record> buffer = new ArrayList<>();
+    private long bufferedBytes;
+    private final List<Run> runs = new ArrayList<>();
+    private final List<RunReader> readers = new ArrayList<>();
+    private boolean sorted;
+
+    /**
+     * @param comparator the order to sort records in
+     * @param maxMemory roughly how many bytes of records to hold in memory before writing them out to a run
+     * @param tempDir the directory to write runs to, or null for the default temporary directory
+     */
+    public ExternalRecordSorter(Comparator<? super Record> comparator, long maxMemory, Path tempDir) {
+        this(comparator, records -> records.sort(comparator), maxMemory, tempDir);
+    }
+
+    /**
+     * @param comparator the order to sort records in
+     * @param bufferSort sorts the buffered records before they're written out or merged, such as one of the {@link RecordSorts},
+     *                   which must give the same order as a stable sort with the comparator
+     * @param maxMemory roughly how many bytes of records to hold in memory before writing them out to a run
+     * @param tempDir the directory to write runs to, or null for the default temporary directory
+     */
+    public ExternalRecordSorter(Comparator<? super Record> comparator, Consumer<List<Record>> bufferSort, long maxMemory, Path tempDir) {
+        if (maxMemory <= 0) {
+            throw new IllegalArgumentException("Invalid max memory " + maxMemory);
+        }
+        this.comparator = comparator;
+        this.bufferSort = bufferSort;
+        this.maxMemory = maxMemory;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * Adds a record to be sorted, writing out a run if the buffered records have reached the memory limit.
+     * @throws IOException if unable to write a run
+     */
+    public void add(Record record) throws IOException {
+        if (sorted) {
+            throw new IllegalStateException("Records can't be added once sorted");
+        }
+        buffer.add(record);
+        bufferedBytes += estimateSize(record);
+        if (bufferedBytes >= maxMemory) {
+            bufferSort.accept(buffer);
+            runs.add(writeRun(buffer.iterator()));
+            buffer.clear();
+            bufferedBytes = 0;
+        }
+    }
+
+    /**
+     * Passes every record added to the action, in sorted order. Can only be called once.
+     * @throws IOException if unable to read or write a run
+     */
+    public void forEachSorted(Consumer<? super Record> action) throws IOException {
+        try {
+            sortedIterator().forEachRemaining(action);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            closeReaders();
+        }
+    }
+
+    /**
+     * Returns every record added in sorted order, reading the runs back as the iterator is advanced, so the records can be
+     * merged with other sorted sources. The iterator throws an {@link UncheckedIOException} if unable to read a run, and can't
+     * be used once the sorter is closed. Can only be called once.
+     * @throws IOException if unable to read or write a run
+     */
+    public Iterator<Record> sortedIterator() throws IOException {
+        if (sorted) {
+            throw new IllegalStateException("Records have already been sorted");
+        }
+        sorted = true;
+        bufferSort.accept(buffer);
+        if (runs.isEmpty()) {
+            return buffer.iterator();
+        }
+
+        // leave room for the buffer, which is merged in as the last (most recently added) source
+        while (runs.size() + 1 > MAX_MERGE_WIDTH) {
+            mergeRuns();
+        }
+
+        List<Iterator<Record>> sources = new ArrayList<>();
+        for (Run run : runs) {
+            RunReader reader = new RunReader(run);
+            readers.add(reader);
+            sources.add(reader);
+        }
+        sources.add(buffer.iterator());
+        return new MergeIterator<>(sources, comparator);
+    }
+
+    /**
+     * @return the number of runs written out so far, 0 if everything has fit in memory
+     */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Deletes any runs written out.
+     */
+    @Override
+    public void close() throws IOException {
+        closeReaders();
+        IOException failure = null;
+        for (Run run : runs) {
+            try {
+                Files.deleteIfExists(run.path);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        runs.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void closeReaders() throws IOException {
+        IOException failure = null;
+        for (RunReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        readers.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Merges consecutive groups of runs into single runs, which keeps the merge stable.
+     */
+    private void mergeRuns() throws IOException {
+        List<Run> merged = new ArrayList<>();
+        try {
+            for (int from = 0; from < runs.size(); from += MAX_MERGE_WIDTH) {
+                List<Run> group = runs.subList(from, Math.min(runs.size(), from + MAX_MERGE_WIDTH));
+                merged.add(group.size() == 1 ? group.get(0) : mergeGroup(group));
+            }
+        } catch (IOException | RuntimeException e) {
+            // keep track of what was already merged, so it's deleted on close
+            runs.addAll(merged);
+            throw e;
+        }
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    private Run mergeGroup(List<Run> group) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        Run merged;
+        try {
+            for (Run run : group) {
+                readers.add(new RunReader(run));
+            }
+            merged = writeRun(new MergeIterator<>(readers, comparator));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+        for (Run run : group) {
+            Files.deleteIfExists(run.path);
+        }
+        return merged;
+    }
+
+    private Run writeRun(Iterator<Record> records) throws IOException {
+        Path path = tempDir == null ? Files.createTempFile("records-", ".run") : Files.createTempFile(tempDir, "records-", ".run");
+        long count = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), RUN_BUFFER_SIZE)) {
+            while (records.hasNext()) {
+                out.write(RecordCodec.encode(records.next()));
+                count++;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new Run(path, count);
+    }
+
+    private static long estimateSize(Record record) {
+        return RECORD_OVERHEAD + 2L * (record.getLastName().length() + record.getFirstName().length() + record.getFavoriteColor().length());
+    }
+
+    /**
+     * A sorted run written to a temporary file.
+     */
+    private static final class Run {
+        private final Path path;
+        private final long count;
+
+        Run(Path path, long count) {
+            this.path = path;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Reads the records of a run back in order.
+     */
+    private static final class RunReader implements Iterator<Record>, Closeable {
+        private final DataInputStream in;
+        private long remaining;
+
+        RunReader(Run run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path), RUN_BUFFER_SIZE));
+            this.remaining = run.count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Record next() {
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            try {
+                return RecordCodec.read(in);
+            } catch (EOFException e) {
+                throw new UncheckedIOException(new IOException("Sorted run ended early", e));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads records from a file that is being appended to, parsing only the bytes added since the last read. Each call to
+ * {@link #poll()} parses the complete lines between the current {@link Checkpoint} and the end of the file, then moves the
+ * checkpoint past them, so the cost of a poll depends on how much was appended rather than on the size of the whole file.
+ *
+ * A line is only parsed once its line break has been written, so a line that is still being written is picked up by a later
+ * poll. A "\r" at the very end of the file is treated the same way, since it may turn out to be the start of a "\r\n". If the
+ * file no longer matches the checkpoint (it was truncated, rotated or replaced) the next poll starts over from the beginning
+ * of the file, and {@link #isRestarted()} reports it.
+ *
+ * Readers aren't thread safe, and don't hold the file open between polls. Compressed files can't be read incrementally.
+ */
+public final class IncrementalRecordReader {
+
+    private final Path filePath;
+    private final String delimiter;
+    private Checkpoint checkpoint;
+    private boolean restarted;
+
+    /**
+     * Creates a reader that starts at the beginning of the file.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @throws RecordParseException - if the delimiter is invalid
+     */
+    public IncrementalRecordReader(Path filePath, String delimiter) throws RecordParseException {
+        this(filePath, delimiter, Checkpoint.start());
+    }
+
+    /**
+     * Creates a reader that resumes from a checkpoint, typically one saved from an earlier reader of the same file.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @param checkpoint - where to resume from
+     * @throws RecordParseException - if the delimiter is invalid
+     */
+    public IncrementalRecordReader(Path filePath, String delimiter, Checkpoint checkpoint) throws RecordParseException {
+        if (!RecordParser.VALID_DELIMITERS.contains(delimiter)) {
+            throw new RecordParseException("Invalid delimiter \"" + delimiter + "\" provided");
+        }
+        this.filePath = filePath;
+        this.delimiter = delimiter;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Parses every complete line appended since the checkpoint, and moves the checkpoint past them. If any line fails to parse
+     * the checkpoint is left where it was, so the same lines are read again by the next poll.
+     * @return the new records, in the same order as the file, empty if nothing complete has been appended
+     * @throws IOException if unable to read the file, or it is compressed
+     * @throws RecordParseException - if unable to parse any of the new lines, with the line number in the file as a whole
+     */
+    public List<Record> poll() throws IOException, RecordParseException {
+        if (CompressedInput.detect(filePath) != CompressedInput.Format.NONE) {
+            throw new IOException("Compressed input " + filePath + " can't be read incrementally");
+        }
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            String fileKey = Checkpoint.fileKey(filePath);
+            long start = checkpoint.getByteOffset();
+            long linesBefore = checkpoint.getLineNumber();
+            restarted = !checkpoint.matches(channel, fileKey);
+            if (restarted) {
+                start = 0;
+                linesBefore = 0;
+            }
+
+            long end = lastLineEnd(channel, start, channel.size());
+            List<Record> records = new ArrayList<>();
+            long lines = 0;
+            if (end > start) {
+                try (MappedRecordReader reader = new MappedRecordReader(channel, start, end, delimiter, null)) {
+                    Record record;
+                    while ((record = reader.next()) != null) {
+                        records.add(record);
+                    }
+                    lines = reader.getLineNumber();
+                } catch (RecordParseException e) {
+                    throw new RecordParseException(e.getMessage(), e.getCause(), linesBefore + e.getLineNumber());
+                }
+            }
+
+            checkpoint = Checkpoint.of(channel, fileKey, end, linesBefore + lines);
+            return records;
+        }
+    }
+
+    /**
+     * @return where the next poll will start from, which can be saved to resume from later
+     */
+    public Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @return true if the last poll found the file no longer matched the checkpoint, and started over from the beginning
+     */
+    public boolean isRestarted() {
+        return restarted;
+    }
+
+    /**
+     * Scans backwards from the end of the file for the end of the last complete line.
+     * @return the offset just past the last line break after the start, or the start if there isn't one
+     */
+    private static long lastLineEnd(FileChannel channel, long start, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long chunkEnd = size;
+        while (chunkEnd > start) {
+            long chunkStart = Math.max(start, chunkEnd - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (chunkEnd - chunkStart));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, chunkStart + buffer.position()) < 0) {
+                    // the file shrank while we were reading it, only trust what we know is there
+                    return start;
+                }
+            }
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                byte b = buffer.get(i);
+                long position = chunkStart + i;
+                // a "\r" at the very end might be followed by a "\n" that hasn't been written yet
+                if (b == '\n' || (b == '\r' && position + 1 < size)) {
+                    return position + 1;
+                }
+            }
+            chunkEnd = chunkStart;
+        }
+        return start;
+    }
+}
@@ -0,0 +1,508 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads records from a file by memory mapping it and scanning the raw bytes for delimiters and line breaks, instead of
+ * decoding every line into a String and splitting it with a regex. Strings are only created for the fields of a line
+ * once the line has been validated (field count, gender and date), so the common case is one pass over the bytes and four
+ * small copies.
+ *
+ * The results are intended to be identical to {@link RecordParser#parseFile(Path, String)}: lines are terminated by
+ * "\n", "\r" or "\r\n" (same as {@link java.io.BufferedReader#readLine()}), fields are counted the same way
+ * {@link String#split(String)} counts them (trailing empty fields are dropped), and the same {@link RecordParseException}
+ * messages are produced. Lines containing non ascii bytes are decoded as strict UTF-8 and handed to
+ * {@link RecordParser#parseLine(String, String)} so multi byte names behave exactly as they do in the reader based path.
+ *
+ * Files larger than a single mapping (which is limited to 2GB) are read through a sliding window that is always
+ * re-mapped at the start of a line. A reader can also be limited to a range of the file that starts and ends on line
+ * boundaries, which is how {@link ParallelRecordParser} splits up a single file.
+ *
+ * Compressed files (see {@link CompressedInput}) can't be mapped, so they are decompressed into a heap buffer instead, which
+ * slides along the decompressed data the same way the mapped window slides along the file. Everything else works the same.
+ *
+ * If a {@link StringPool} is given, the name and color fields are looked up in it straight from the mapped bytes, so repeated
+ * values don't even create a String.
+ *
+ * Lines are validated with {@link ParseError.Reason} codes rather than exceptions. Strict callers get an exception built from
+ * the code, while lenient callers pass a {@link ParseResult} that the invalid lines are reported to and then skipped, so an
+ * invalid line costs no more than a valid one.
+ */
+final class MappedRecordReader implements Closeable {
+
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The window for compressed files lives on the heap, so is kept smaller.
+     */
+    static final int STREAM_WINDOW_SIZE = 4 * 1024 * 1024;
+
+    private static final byte[] MALE = Gender.MALE.getGender().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FEMALE = Gender.FEMALE.getGender().getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final InputStream stream;
+    private final boolean ownsChannel;
+    private final long end;
+    private final String delimiter;
+    private final byte delimiterByte;
+    private final StringPool stringPool;
+    private int windowSize;
+
+    private ByteBuffer window;
+    private long windowStart;
+    private boolean streamExhausted;
+    private int position;
+    private long lineNumber;
+    private long lineOffset;
+
+    // scratch space reused for every line, holds the start of each field and the end of the fifth one
+    private final int[] fieldStarts = new int[5];
+    private final int[] fieldEnds = new int[5];
+    private byte[] scratch = new byte[256];
+
+    // the decoded line, set by advance()
+    private Gender gender;
+    private int dateOfBirth;
+    private Record decodedRecord;
+
+    // details of the last line only needed to describe why it was invalid
+    private int fieldCount;
+    private String[] decodedFields;
+    private CharacterCodingException encodingError;
+
+    /**
+     * Opens a reader for a whole file, which is mapped, or decompressed if it is compressed.
+     */
+    static MappedRecordReader open(Path filePath, String delimiter, StringPool stringPool) throws IOException {
+        return open(filePath, delimiter, stringPool, DEFAULT_WINDOW_SIZE);
+    }
+
+    static MappedRecordReader open(Path filePath, String delimiter, StringPool stringPool, int windowSize) throws IOException {
+        if (CompressedInput.detect(filePath) != CompressedInput.Format.NONE) {
+            return new MappedRecordReader(CompressedInput.open(filePath), delimiter, stringPool, Math.min(windowSize, STREAM_WINDOW_SIZE));
+        }
+        return new MappedRecordReader(FileChannel.open(filePath, StandardOpenOption.READ), true, 0, -1, delimiter, stringPool, windowSize);
+    }
+
+    /**
+     * Creates a reader for the range of an already open channel. The range must start at the beginning of a line and end
+     * after a line break (or at the end of the file), and the channel is left open when this reader is closed.
+     */
+    MappedRecordReader(FileChannel channel, long start, long end, String delimiter, StringPool stringPool) throws IOException {
+        this(channel, false, start, end, delimiter, stringPool, DEFAULT_WINDOW_SIZE);
+    }
+
+    private MappedRecordReader(FileChannel channel, boolean ownsChannel, long start, long end, String delimiter, StringPool stringPool,
+                               int windowSize) throws IOException {
+        this.channel = channel;
+        this.stream = null;
+        this.ownsChannel = ownsChannel;
+        this.delimiter = delimiter;
+        this.delimiterByte = (byte) delimiter.charAt(0);
+        this.stringPool = stringPool;
+        this.windowSize = windowSize;
+        try {
+            this.end = end < 0 ? channel.size() : end;
+            map(start);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a reader for a stream of (already decompressed) data, which is closed when this reader is closed.
+     */
+    private MappedRecordReader(InputStream stream, String delimiter, StringPool stringPool, int windowSize) throws IOException {
+        this.channel = null;
+        this.stream = stream;
+        this.ownsChannel = false;
+        this.end = Long.MAX_VALUE;
+        this.delimiter = delimiter;
+        this.delimiterByte = (byte) delimiter.charAt(0);
+        this.stringPool = stringPool;
+        this.windowSize = windowSize;
+        this.window = ByteBuffer.allocate(windowSize);
+        this.window.limit(0);
+        try {
+            fill();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of lines read so far, which is also the line number of the last line returned by {@link #next()}
+     */
+    long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return the offset in the file of the first byte of the last line read
+     */
+    long getLineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * Parses the next line of the file.
+     * @return the next record, or null once the end of the file has been reached
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException if the line is not a valid record, with the line number set relative to the start of the range
+     */
+    Record next() throws IOException, RecordParseException {
+        return next(null);
+    }
+
+    /**
+     * Parses the next valid line of the file, reporting and skipping any invalid lines before it.
+     * @param errors where to report invalid lines, or null to throw for an invalid line instead
+     * @return the next record, or null once the end of the file has been reached
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException if the line is not a valid record and errors is null, with the line number set relative to
+     * the start of the range
+     */
+    Record next(ParseResult errors) throws IOException, RecordParseException {
+        if (!advance(errors)) {
+            return null;
+        }
+        if (decodedRecord != null) {
+            return decodedRecord;
+        }
+        return new Record(pooledField(0), pooledField(1), gender, pooledField(3), dateOfBirth);
+    }
+
+    /**
+     * Parses the next line of the file straight into the columns of a batch, without creating a {@link Record}.
+     * @return true if a record was added, false once the end of the file has been reached
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException if the line is not a valid record, with the line number set relative to the start of the range
+     */
+    boolean nextInto(RecordBatch batch) throws IOException, RecordParseException {
+        if (!advance(null)) {
+            return false;
+        }
+        if (decodedRecord != null) {
+            batch.add(decodedRecord);
+        } else {
+            batch.add(batch.dictionaryId(window, fieldStarts[0], fieldEnds[0]), batch.dictionaryId(window, fieldStarts[1], fieldEnds[1]),
+                    gender, batch.dictionaryId(window, fieldStarts[3], fieldEnds[3]), dateOfBirth);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the next valid line, leaving the field positions, gender and date of birth ready to build a record from.
+     * @param errors where to report invalid lines, or null to throw for the first invalid line
+     * @return false once the end of the file has been reached
+     */
+    private boolean advance(ParseResult errors) throws IOException, RecordParseException {
+        while (true) {
+            int limit = window.limit();
+            boolean windowAtEof = stream != null ? streamExhausted : windowStart + limit >= end;
+            if (windowAtEof && position >= limit) {
+                return false;
+            }
+
+            int delimiters = 0;
+            int trailingDelimiters = 0;
+            int nonAscii = 0;
+            int lineEnd = -1;
+            int next = -1;
+            fieldStarts[0] = position;
+
+            for (int i = position; i < limit; i++) {
+                byte b = window.get(i);
+                if (b == '\n') {
+                    lineEnd = i;
+                    next = i + 1;
+                    break;
+                }
+                if (b == '\r') {
+                    if (i + 1 < limit) {
+                        lineEnd = i;
+                        next = window.get(i + 1) == '\n' ? i + 2 : i + 1;
+                    } else if (windowAtEof) {
+                        lineEnd = i;
+                        next = i + 1;
+                    }
+                    // otherwise a "\r" at the end of the window, need to see the next byte before we can decide
+                    break;
+                }
+                if (b == delimiterByte) {
+                    if (delimiters < 5) {
+                        fieldEnds[delimiters] = i;
+                        if (delimiters < 4) {
+                            fieldStarts[delimiters + 1] = i + 1;
+                        }
+                    }
+                    delimiters++;
+                    trailingDelimiters++;
+                } else {
+                    trailingDelimiters = 0;
+                    nonAscii |= b & 0x80;
+                }
+            }
+
+            if (lineEnd < 0) {
+                if (!windowAtEof) {
+                    // the line continues past the window, slide the window up to the start of the line and scan again
+                    remap();
+                    continue;
+                }
+                // last line of the file without a trailing line break
+                lineEnd = limit;
+                next = limit;
+            }
+
+            int lineStart = position;
+            position = next;
+            lineNumber++;
+            lineOffset = windowStart + lineStart;
+            ParseError.Reason reason = decode(lineStart, lineEnd, delimiters, trailingDelimiters, nonAscii != 0);
+            if (reason == null) {
+                return true;
+            }
+            if (errors == null) {
+                throw parseException(reason);
+            }
+            errors.addError(lineNumber, lineOffset, reason);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsChannel) {
+            channel.close();
+        }
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    /**
+     * Validates a single line of the current window, once the line boundaries and delimiter positions are known. Lines with non
+     * ascii characters are fully parsed into {@link #decodedRecord}, otherwise the gender and date of birth are decoded and the
+     * remaining fields are left to be read from the window.
+     * @return null if the line is valid, otherwise the reason it isn't
+     */
+    private ParseError.Reason decode(int lineStart, int lineEnd, int delimiters, int trailingDelimiters, boolean nonAscii) {
+        int length = lineEnd - lineStart;
+        decodedRecord = null;
+        decodedFields = null;
+        if (nonAscii) {
+            return decodeNonAscii(lineStart, length);
+        }
+        if (length == 0) {
+            return ParseError.Reason.EMPTY_LINE;
+        }
+
+        // same count String#split would produce, which drops any trailing empty fields
+        fieldCount = trailingDelimiters == length ? 0 : delimiters + 1 - trailingDelimiters;
+        if (fieldCount != 5) {
+            return ParseError.Reason.WRONG_FIELD_COUNT;
+        }
+        if (delimiters == 4) {
+            fieldEnds[4] = lineEnd;
+        }
+
+        if (fieldEquals(2, MALE)) {
+            gender = Gender.MALE;
+        } else if (fieldEquals(2, FEMALE)) {
+            gender = Gender.FEMALE;
+        } else {
+            return ParseError.Reason.INVALID_GENDER;
+        }
+
+        dateOfBirth = RecordDates.parseEpochDay(window, fieldStarts[4], fieldEnds[4]);
+        if (dateOfBirth == RecordDates.INVALID) {
+            return ParseError.Reason.INVALID_DATE;
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a line with non ascii characters to a String and validates it the same way {@link RecordParser#parseLine(String, String)}
+     * does, leaving the record in {@link #decodedRecord}.
+     */
+    private ParseError.Reason decodeNonAscii(int lineStart, int length) {
+        String line;
+        try {
+            line = decodeStrict(lineStart, length);
+        } catch (CharacterCodingException e) {
+            encodingError = e;
+            return ParseError.Reason.INVALID_ENCODING;
+        }
+
+        decodedFields = RecordParser.splitLine(line, delimiter);
+        fieldCount = decodedFields.length;
+        if (fieldCount != 5) {
+            return ParseError.Reason.WRONG_FIELD_COUNT;
+        }
+        gender = Gender.toGender(decodedFields[2]);
+        if (gender == null) {
+            return ParseError.Reason.INVALID_GENDER;
+        }
+        dateOfBirth = RecordDates.parseEpochDay(decodedFields[4]);
+        if (dateOfBirth == RecordDates.INVALID) {
+            return ParseError.Reason.INVALID_DATE;
+        }
+        decodedRecord = new Record(pooled(decodedFields[0]), pooled(decodedFields[1]), gender, pooled(decodedFields[3]), dateOfBirth);
+        return null;
+    }
+
+    /**
+     * Builds the exception for an invalid line, with the same message {@link RecordParser#parseLine(String, String)} would use.
+     * A line that isn't valid UTF-8 throws the decoding exception instead, same as reading the file with a reader.
+     */
+    private RecordParseException parseException(ParseError.Reason reason) throws IOException {
+        String message;
+        switch (reason) {
+            case EMPTY_LINE:
+                message = "Invalid record line \"\" provided for parsing";
+                break;
+            case WRONG_FIELD_COUNT:
+                message = "Expected 5 fields while parsing record, found " + fieldCount;
+                break;
+            case INVALID_GENDER:
+                message = "Invalid gender, expected one of [male|female], found " + fieldText(2);
+                break;
+            case INVALID_DATE:
+                message = "Invalid date format " + fieldText(4) + " while parsing record. Expected " + Record.DATE_FORMAT_STRING;
+                break;
+            default:
+                throw encodingError;
+        }
+        return new RecordParseException(message, null, lineNumber);
+    }
+
+    /**
+     * Case insensitive comparison of an ascii field against an expected lower case value, without creating a String.
+     */
+    private boolean fieldEquals(int field, byte[] expected) {
+        int start = fieldStarts[field];
+        if (fieldEnds[field] - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            byte b = window.get(start + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String fieldText(int field) {
+        return decodedFields != null ? decodedFields[field] : field(field);
+    }
+
+    private String pooled(String value) {
+        return stringPool == null ? value : stringPool.intern(value);
+    }
+
+    private String pooledField(int field) {
+        if (stringPool == null) {
+            return field(field);
+        }
+        return stringPool.intern(window, fieldStarts[field], fieldEnds[field]);
+    }
+
+    private String field(int field) {
+        int start = fieldStarts[field];
+        int length = fieldEnds[field] - start;
+        byte[] bytes = scratch(length);
+        for (int i = 0; i < length; i++) {
+            bytes[i] = window.get(start + i);
+        }
+        return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Decodes a line as UTF-8, reporting malformed input the same way {@link java.nio.file.Files#newBufferedReader(Path)} does.
+     */
+    private String decodeStrict(int start, int length) throws CharacterCodingException {
+        byte[] bytes = scratch(length);
+        for (int i = 0; i < length; i++) {
+            bytes[i] = window.get(start + i);
+        }
+        CharBuffer chars = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes, 0, length));
+        return chars.toString();
+    }
+
+    private byte[] scratch(int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    /**
+     * Moves the window so it starts at the current line. If the line already started at the beginning of the window then the
+     * line is longer than the window, so the window is grown as well. The offset in the file, or in the decompressed data for
+     * a compressed file, is {@code windowStart + index in the window}.
+     */
+    private void remap() throws IOException {
+        if (position == 0) {
+            if (windowSize == Integer.MAX_VALUE) {
+                throw new IOException("Record line longer than " + Integer.MAX_VALUE + " bytes");
+            }
+            windowSize = (int) Math.min(Integer.MAX_VALUE, windowSize * 2L);
+        }
+        if (stream != null) {
+            fill();
+        } else {
+            map(windowStart + position);
+        }
+    }
+
+    /**
+     * Moves the unread part of a stream window to the front (of a bigger buffer, if the window has grown) and reads from the
+     * stream until the window is full or the stream has ended.
+     */
+    private void fill() throws IOException {
+        window.position(position);
+        ByteBuffer buffer;
+        if (window.capacity() == windowSize) {
+            window.compact();
+            buffer = window;
+        } else {
+            buffer = ByteBuffer.allocate(windowSize);
+            buffer.put(window);
+        }
+        windowStart += position;
+        position = 0;
+
+        while (buffer.hasRemaining()) {
+            int read = stream.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (read < 0) {
+                streamExhausted = true;
+                break;
+            }
+            buffer.position(buffer.position() + read);
+        }
+        buffer.flip();
+        window = buffer;
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        position = 0;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, end - start));
+    }
+}
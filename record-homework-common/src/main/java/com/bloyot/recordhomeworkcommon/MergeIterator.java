@@ -0,0 +1,74 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merges several sorted iterators into a single sorted iterator (a k-way merge), holding only the current element of each
+ * source in a heap. The merge is stable: elements that compare equal come out in the order of their sources, so merging
+ * consecutive pieces of a stably sorted list gives exactly the same order as stably sorting the whole list.
+ * @param <T> the type of element
+ */
+public final class MergeIterator<T> implements Iterator<T> {
+
+    private final PriorityQueue<Cursor<T>> heap;
+
+    /**
+     * @param sources the iterators to merge, each already sorted by the comparator
+     * @param comparator the order of the sources
+     */
+    public MergeIterator(List<? extends Iterator<? extends T>> sources, Comparator<? super T> comparator) {
+        Comparator<Cursor<T>> byElement = (a, b) -> comparator.compare(a.current, b.current);
+        this.heap = new PriorityQueue<>(Math.max(1, sources.size()), byElement.thenComparingInt(cursor -> cursor.source));
+        for (int i = 0; i < sources.size(); i++) {
+            Iterator<? extends T> source = sources.get(i);
+            if (source.hasNext()) {
+                heap.add(new Cursor<>(source, i));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heap.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Cursor<T> cursor = heap.poll();
+        if (cursor == null) {
+            throw new NoSuchElementException();
+        }
+        T next = cursor.current;
+        if (cursor.advance()) {
+            heap.add(cursor);
+        }
+        return next;
+    }
+
+    /**
+     * The current element of one source.
+     */
+    private static final class Cursor<T> {
+        private final Iterator<? extends T> iterator;
+        private final int source;
+        private T current;
+
+        Cursor(Iterator<? extends T> iterator, int source) {
+            this.iterator = iterator;
+            this.source = source;
+            this.current = iterator.next();
+        }
+
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            current = iterator.next();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses a single file on several threads. The file is split into byte ranges that always end just after a "\n", each range is
+ * parsed by its own {@link MappedRecordReader} on a {@link ForkJoinPool}, and the results are stitched back together in file
+ * order. Each range keeps track of how many lines it contained, so a parse failure in any range can be reported with its line
+ * number in the file as a whole, and the failure reported is always the first one in the file, same as a sequential parse.
+ */
+final class ParallelRecordParser {
+
+    /**
+     * Ranges smaller than this aren't worth the overhead of a separate task.
+     */
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Aim for a few ranges per thread, so one slow range doesn't leave the other threads idle.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelRecordParser() {
+    }
+
+    static List<Record> parse(Path filePath, String delimiter, int parallelism, long sequentialThreshold, StringPool stringPool)
+            throws IOException, RecordParseException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (parallelism <= 1 || size < sequentialThreshold) {
+                return parseRange(channel, 0, size, delimiter, stringPool);
+            }
+
+            long[] boundaries = findBoundaries(channel, size, Math.max(MIN_CHUNK_SIZE, size / ((long) parallelism * CHUNKS_PER_THREAD)));
+            int chunks = boundaries.length - 1;
+            ChunkResults results = new ChunkResults(chunks);
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new ChunkTask(channel, delimiter, stringPool, boundaries, 0, chunks, results));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+
+            return results.join();
+        }
+    }
+
+    private static List<Record> parseRange(FileChannel channel, long start, long end, String delimiter, StringPool stringPool)
+            throws IOException, RecordParseException {
+        try (MappedRecordReader reader = new MappedRecordReader(channel, start, end, delimiter, stringPool)) {
+            List<Record> records = new ArrayList<>();
+            Record record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Splits the file into ranges of roughly the chunk size, moving each split point forward to just past the next "\n" so
+     * every range starts at the beginning of a line. A "\r\n" always stays together in the earlier range.
+     * @return the start of each range followed by the end of the file
+     */
+    private static long[] findBoundaries(FileChannel channel, long size, long chunkSize) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long target = chunkSize;
+        while (target < size) {
+            long boundary = nextLineStart(channel, size, target, buffer);
+            if (boundary >= size) {
+                break;
+            }
+            boundaries.add(boundary);
+            target = boundary + chunkSize;
+        }
+        boundaries.add(size);
+
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    private static long nextLineStart(FileChannel channel, long size, long from, ByteBuffer buffer) throws IOException {
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Parses a contiguous set of ranges, splitting in half until there is a single range left to parse.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final String delimiter;
+        private final StringPool stringPool;
+        private final long[] boundaries;
+        private final int from;
+        private final int to;
+        private final ChunkResults results;
+
+        ChunkTask(FileChannel channel, String delimiter, StringPool stringPool, long[] boundaries, int from, int to, ChunkResults results) {
+            this.channel = channel;
+            this.delimiter = delimiter;
+            this.stringPool = stringPool;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(channel, delimiter, stringPool, boundaries, from, mid, results),
+                        new ChunkTask(channel, delimiter, stringPool, boundaries, mid, to, results));
+                return;
+            }
+
+            // nothing after the first failed range is going to be used, so don't bother parsing it
+            if (from > results.firstFailure.get()) {
+                return;
+            }
+
+            try (MappedRecordReader reader = new MappedRecordReader(channel, boundaries[from], boundaries[from + 1], delimiter, stringPool)) {
+                List<Record> records = new ArrayList<>();
+                try {
+                    Record record;
+                    while ((record = reader.next()) != null) {
+                        records.add(record);
+                    }
+                } catch (RecordParseException e) {
+                    results.fail(from, e);
+                }
+                results.records[from] = records;
+                results.lineCounts[from] = reader.getLineNumber();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * The per range results, indexed by range.
+     */
+    private static final class ChunkResults {
+        private final List<?>[] records;
+        private final long[] lineCounts;
+        private final RecordParseException[] failures;
+        private final AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+
+        ChunkResults(int chunks) {
+            this.records = new List<?>[chunks];
+            this.lineCounts = new long[chunks];
+            this.failures = new RecordParseException[chunks];
+        }
+
+        void fail(int chunk, RecordParseException e) {
+            failures[chunk] = e;
+            firstFailure.accumulateAndGet(chunk, Math::min);
+        }
+
+        /**
+         * Concatenates the ranges in file order, or throws the first failure with its line number offset by the lines in all
+         * the ranges before it.
+         */
+        @SuppressWarnings("unchecked")
+        List<Record> join() throws RecordParseException {
+            long linesBefore = 0;
+            int total = 0;
+            for (int i = 0; i < records.length; i++) {
+                if (failures[i] != null) {
+                    RecordParseException e = failures[i];
+                    throw new RecordParseException(e.getMessage(), e.getCause(), linesBefore + e.getLineNumber());
+                }
+                linesBefore += lineCounts[i];
+                total += records[i].size();
+            }
+
+            List<Record> joined = new ArrayList<>(total);
+            for (List<?> chunk : records) {
+                joined.addAll((List<Record>) chunk);
+            }
+            return joined;
+        }
+    }
+}
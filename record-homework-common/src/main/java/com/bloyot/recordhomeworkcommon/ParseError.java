@@ -0,0 +1,73 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.util.Objects;
+
+/**
+ * Describes a single line that failed to parse in lenient mode (see {@link RecordParser#parseFileLenient(java.nio.file.Path, String)}).
+ * Only the position and a reason code are kept, not a message or an exception, so collecting errors costs next to nothing.
+ */
+public final class ParseError {
+
+    /**
+     * Why a line failed to parse.
+     */
+    public enum Reason {
+        /** the line was empty */
+        EMPTY_LINE,
+        /** the line didn't have exactly 5 fields */
+        WRONG_FIELD_COUNT,
+        /** the gender field wasn't one of [male|female] */
+        INVALID_GENDER,
+        /** the date of birth field wasn't a valid date in {@link Record#DATE_FORMAT_STRING} format */
+        INVALID_DATE,
+        /** the line wasn't valid UTF-8 */
+        INVALID_ENCODING
+    }
+
+    private final long lineNumber;
+    private final long byteOffset;
+    private final Reason reason;
+
+    public ParseError(long lineNumber, long byteOffset, Reason reason) {
+        this.lineNumber = lineNumber;
+        this.byteOffset = byteOffset;
+        this.reason = reason;
+    }
+
+    /**
+     * @return the 1 based line number of the line
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return the offset from the start of the file of the first byte of the line (from the start of the decompressed data, for
+     * a compressed file)
+     */
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ParseError that = (ParseError) o;
+        return lineNumber == that.lineNumber && byteOffset == that.byteOffset && reason == that.reason;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lineNumber, byteOffset, reason);
+    }
+
+    @Override
+    public String toString() {
+        return "line " + lineNumber + " (byte " + byteOffset + "): " + reason;
+    }
+}
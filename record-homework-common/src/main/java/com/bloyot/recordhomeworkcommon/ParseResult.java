@@ -0,0 +1,76 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of parsing a file in lenient mode: every record that parsed, plus a report of the lines that didn't. Only the first
+ * few errors are kept (up to the max given when parsing), but every error is counted, so a very dirty file can't use up memory
+ * with its error report.
+ */
+public final class ParseResult {
+
+    private final List<Record> records = new ArrayList<>();
+    private final List<ParseError> errors = new ArrayList<>();
+    private final int maxErrors;
+    private long errorCount;
+
+    ParseResult(int maxErrors) {
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("Invalid max errors " + maxErrors);
+        }
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * @return the records that parsed, in the same order as the file
+     */
+    public List<Record> getRecords() {
+        return Collections.unmodifiableList(records);
+    }
+
+    /**
+     * @return the first errors in the file, in the order they occurred, up to the max number of errors kept
+     */
+    public List<ParseError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return the total number of lines that failed to parse, including any beyond the max number of errors kept
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return true if every line parsed
+     */
+    public boolean isValid() {
+        return errorCount == 0;
+    }
+
+    /**
+     * @return true if there were more errors than were kept in {@link #getErrors()}
+     */
+    public boolean isErrorsTruncated() {
+        return errorCount > errors.size();
+    }
+
+    void addRecord(Record record) {
+        records.add(record);
+    }
+
+    void addError(long lineNumber, long byteOffset, ParseError.Reason reason) {
+        errorCount++;
+        if (errors.size() < maxErrors) {
+            errors.add(new ParseError(lineNumber, byteOffset, reason));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ParseResult{records=" + records.size() + ", errorCount=" + errorCount + ", errors=" + errors + "}";
+    }
+}
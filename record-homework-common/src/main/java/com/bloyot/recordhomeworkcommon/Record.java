@@ -37,24 +37,46 @@ public class Record {
     private String favoriteColor;
 
     /**
-     * The date of birth for the person in the record. Stored as a local date since we don't have time or timezone information.
+     * The date of birth for the person in the record, as days since the epoch (see {@link LocalDate#toEpochDay()}). Stored as
+     * a primitive rather than a local date since it's cheaper to parse to, smaller, and can be compared as an int when sorting.
+     */
+    private int dateOfBirthEpochDay;
+
+    /**
+     * The date of birth as a local date, only created when first asked for. Local date since we don't have time or timezone
+     * information.
      */
     private LocalDate dateOfBirth;
 
+    /**
+     * The collation key of the last name for the last {@link RecordCollation} to ask for it, only created when first asked for.
+     */
+    private RecordCollation.Key lastNameKey;
+
     public Record(String lastName, String firstName, Gender gender, String favoriteColor, LocalDate dateOfBirth) {
         this.lastName = lastName;
         this.firstName = firstName;
         this.gender = gender;
         this.favoriteColor = favoriteColor;
+        this.dateOfBirthEpochDay = Math.toIntExact(dateOfBirth.toEpochDay());
         this.dateOfBirth = dateOfBirth;
     }
 
+    public Record(String lastName, String firstName, Gender gender, String favoriteColor, int dateOfBirthEpochDay) {
+        this.lastName = lastName;
+        this.firstName = firstName;
+        this.gender = gender;
+        this.favoriteColor = favoriteColor;
+        this.dateOfBirthEpochDay = dateOfBirthEpochDay;
+    }
+
     public String getLastName() {
         return lastName;
     }
 
     public void setLastName(String lastName) {
         this.lastName = lastName;
+        this.lastNameKey = null;
     }
 
     public String getFirstName() {
@@ -82,13 +104,35 @@ public class Record {
     }
 
     public LocalDate getDateOfBirth() {
-        return dateOfBirth;
+        LocalDate date = dateOfBirth;
+        if (date == null) {
+            date = LocalDate.ofEpochDay(dateOfBirthEpochDay);
+            dateOfBirth = date;
+        }
+        return date;
     }
 
     public void setDateOfBirth(LocalDate dateOfBirth) {
+        this.dateOfBirthEpochDay = Math.toIntExact(dateOfBirth.toEpochDay());
         this.dateOfBirth = dateOfBirth;
     }
 
+    /**
+     * The date of birth as days since the epoch, for cheap comparisons. Intentionally not named like a getter, so it isn't
+     * picked up as an extra property when records are serialized to json.
+     */
+    public int dateOfBirthEpochDay() {
+        return dateOfBirthEpochDay;
+    }
+
+    RecordCollation.Key getLastNameKey() {
+        return lastNameKey;
+    }
+
+    void setLastNameKey(RecordCollation.Key lastNameKey) {
+        this.lastNameKey = lastNameKey;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -98,17 +142,17 @@ public class Record {
                 Objects.equals(firstName, record.firstName) &&
                 gender == record.gender &&
                 Objects.equals(favoriteColor, record.favoriteColor) &&
-                Objects.equals(dateOfBirth, record.dateOfBirth);
+                dateOfBirthEpochDay == record.dateOfBirthEpochDay;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(lastName, firstName, gender, favoriteColor, dateOfBirth);
+        return Objects.hash(lastName, firstName, gender, favoriteColor, dateOfBirthEpochDay);
     }
 
     @Override
     public String toString() {
         // display format was not specified as far as I can tell, so just always output in csv
-        return lastName + "," + firstName + "," + gender.toString().toLowerCase() + "," + favoriteColor + "," + DATE_TIME_FORMATTER.format(dateOfBirth);
+        return lastName + "," + firstName + "," + gender.toString().toLowerCase() + "," + favoriteColor + "," + DATE_TIME_FORMATTER.format(getDateOfBirth());
     }
 }
@@ -0,0 +1,231 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Summary statistics of a stream of records, computed as they go by without holding on to any of them: the number of
+ * records, counts by gender, by favorite color and by year of birth, and the earliest and latest dates of birth. Adding a
+ * record only bumps a few counters, so aggregating is as fast as parsing, and aggregates of separate parts of the input
+ * (e.g. one per thread) can be merged into the aggregate of the whole.
+ *
+ * The years of birth are counted in an array spanning the earliest to the latest year seen, which is only a few hundred
+ * entries for realistic inputs. Dates of birth can be up to five million years either side of 1970 though, so once the years
+ * span more than {@link #MAX_DENSE_YEARS} they're counted in a sorted map of just the years seen instead. Aggregates aren't
+ * thread safe.
+ */
+public final class RecordAggregate {
+
+    /**
+     * The most years counted in an array, past this every year is counted in a map.
+     */
+    static final int MAX_DENSE_YEARS = 1024;
+
+    private static final Gender[] GENDERS = Gender.values();
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private long count;
+    private final long[] genderCounts = new long[GENDERS.length];
+    private final Map<String, long[]> colorCounts = new HashMap<>();
+    private long[] yearCounts = new long[0];
+    private int firstYear;
+    // null until the years span too much for the array, after which the array isn't used
+    private SortedMap<Integer, long[]> sparseYearCounts;
+    private int minEpochDay = Integer.MAX_VALUE;
+    private int maxEpochDay = Integer.MIN_VALUE;
+
+    public void add(Record record) {
+        count++;
+        genderCounts[record.getGender().ordinal()]++;
+        colorCounts.computeIfAbsent(record.getFavoriteColor(), color -> new long[1])[0]++;
+        int epochDay = record.dateOfBirthEpochDay();
+        minEpochDay = Math.min(minEpochDay, epochDay);
+        maxEpochDay = Math.max(maxEpochDay, epochDay);
+        addYear(RecordDates.yearOfEpochDay(epochDay), 1);
+    }
+
+    /**
+     * Adds everything counted by another aggregate to this one, as if its records had been added here.
+     */
+    public void merge(RecordAggregate other) {
+        count += other.count;
+        for (int i = 0; i < genderCounts.length; i++) {
+            genderCounts[i] += other.genderCounts[i];
+        }
+        other.colorCounts.forEach((color, colorCount) -> colorCounts.computeIfAbsent(color, key -> new long[1])[0] += colorCount[0]);
+        other.getBirthYearCounts().forEach(this::addYear);
+        minEpochDay = Math.min(minEpochDay, other.minEpochDay);
+        maxEpochDay = Math.max(maxEpochDay, other.maxEpochDay);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getCount(Gender gender) {
+        return genderCounts[gender.ordinal()];
+    }
+
+    /**
+     * @return the number of records with each favorite color, in order of the colors
+     */
+    public SortedMap<String, Long> getFavoriteColorCounts() {
+        SortedMap<String, Long> counts = new TreeMap<>();
+        colorCounts.forEach((color, colorCount) -> counts.put(color, colorCount[0]));
+        return counts;
+    }
+
+    /**
+     * @return the number of records born in each year, in order of the years, leaving out years without any
+     */
+    public SortedMap<Integer, Long> getBirthYearCounts() {
+        SortedMap<Integer, Long> counts = new TreeMap<>();
+        if (sparseYearCounts != null) {
+            sparseYearCounts.forEach((year, yearCount) -> counts.put(year, yearCount[0]));
+            return counts;
+        }
+        for (int i = 0; i < yearCounts.length; i++) {
+            if (yearCounts[i] > 0) {
+                counts.put(firstYear + i, yearCounts[i]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the earliest date of birth, or null if there aren't any records
+     */
+    public LocalDate getMinDateOfBirth() {
+        return count == 0 ? null : LocalDate.ofEpochDay(minEpochDay);
+    }
+
+    /**
+     * @return the latest date of birth, or null if there aren't any records
+     */
+    public LocalDate getMaxDateOfBirth() {
+        return count == 0 ? null : LocalDate.ofEpochDay(maxEpochDay);
+    }
+
+    /**
+     * Writes the aggregate as csv, with a header and a row for each statistic: its group, the key within the group (the gender,
+     * color or year) and the value. Dates are in the {@link Record#DATE_FORMAT_STRING} format.
+     * @throws IOException if unable to write
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("group,key,value").append(LINE_SEPARATOR);
+        writeCsvRow(out, "records", "total", count);
+        if (count > 0) {
+            out.append("birth_date,min,").append(Record.DATE_TIME_FORMATTER.format(getMinDateOfBirth())).append(LINE_SEPARATOR);
+            out.append("birth_date,max,").append(Record.DATE_TIME_FORMATTER.format(getMaxDateOfBirth())).append(LINE_SEPARATOR);
+        }
+        for (Gender gender : GENDERS) {
+            writeCsvRow(out, "gender", gender.getGender(), getCount(gender));
+        }
+        for (Map.Entry<String, Long> entry : getFavoriteColorCounts().entrySet()) {
+            writeCsvRow(out, "favorite_color", csvValue(entry.getKey()), entry.getValue());
+        }
+        for (Map.Entry<Integer, Long> entry : getBirthYearCounts().entrySet()) {
+            writeCsvRow(out, "birth_year", entry.getKey().toString(), entry.getValue());
+        }
+    }
+
+    /**
+     * Writes the aggregate as a json object, with the counts by gender, color and year as objects keyed by the gender, color
+     * or year. The dates are left out when there aren't any records.
+     * @throws IOException if unable to write
+     */
+    public void writeJson(Appendable out) throws IOException {
+        out.append("{\"records\":").append(Long.toString(count));
+        if (count > 0) {
+            out.append(",\"minDateOfBirth\":\"").append(Record.DATE_TIME_FORMATTER.format(getMinDateOfBirth())).append('"');
+            out.append(",\"maxDateOfBirth\":\"").append(Record.DATE_TIME_FORMATTER.format(getMaxDateOfBirth())).append('"');
+        }
+        out.append(",\"gender\":{");
+        for (int i = 0; i < GENDERS.length; i++) {
+            out.append(i == 0 ? "\"" : ",\"").append(GENDERS[i].getGender()).append("\":").append(Long.toString(genderCounts[i]));
+        }
+        out.append("},\"favoriteColor\":{");
+        String separator = "";
+        for (Map.Entry<String, Long> entry : getFavoriteColorCounts().entrySet()) {
+            out.append(separator).append(jsonString(entry.getKey())).append(':').append(entry.getValue().toString());
+            separator = ",";
+        }
+        out.append("},\"birthYear\":{");
+        separator = "";
+        for (Map.Entry<Integer, Long> entry : getBirthYearCounts().entrySet()) {
+            out.append(separator).append('"').append(entry.getKey().toString()).append("\":").append(entry.getValue().toString());
+            separator = ",";
+        }
+        out.append("}}").append(LINE_SEPARATOR);
+    }
+
+    private static void writeCsvRow(Appendable out, String group, String key, long value) throws IOException {
+        out.append(group).append(',').append(key).append(',').append(Long.toString(value)).append(LINE_SEPARATOR);
+    }
+
+    private void addYear(int year, long yearCount) {
+        if (sparseYearCounts == null && yearCounts.length > 0
+                && Math.max(year, firstYear + yearCounts.length - 1) - Math.min(year, firstYear) >= MAX_DENSE_YEARS) {
+            sparseYearCounts = new TreeMap<>();
+            for (int i = 0; i < yearCounts.length; i++) {
+                if (yearCounts[i] > 0) {
+                    sparseYearCounts.put(firstYear + i, new long[]{yearCounts[i]});
+                }
+            }
+            yearCounts = new long[0];
+        }
+        if (sparseYearCounts != null) {
+            sparseYearCounts.computeIfAbsent(year, key -> new long[1])[0] += yearCount;
+            return;
+        }
+
+        if (yearCounts.length == 0) {
+            firstYear = year;
+            yearCounts = new long[1];
+        } else if (year < firstYear) {
+            // grow towards earlier years, with some room to spare so each earlier year doesn't copy the whole array again
+            int grow = Math.max(firstYear - year, Math.min(yearCounts.length, 64));
+            long[] grown = new long[yearCounts.length + grow];
+            System.arraycopy(yearCounts, 0, grown, grow, yearCounts.length);
+            yearCounts = grown;
+            firstYear -= grow;
+        } else if (year - firstYear >= yearCounts.length) {
+            int grow = Math.max(year - firstYear + 1 - yearCounts.length, Math.min(yearCounts.length, 64));
+            yearCounts = Arrays.copyOf(yearCounts, yearCounts.length + grow);
+        }
+        yearCounts[year - firstYear] += yearCount;
+    }
+
+    /**
+     * @return the value quoted if it has anything that would break up a csv row, with any quotes in it doubled
+     */
+    private static String csvValue(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+}
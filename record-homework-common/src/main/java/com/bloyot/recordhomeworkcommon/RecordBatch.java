@@ -0,0 +1,358 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntPredicate;
+
+/**
+ * A columnar (struct of arrays) collection of records. Instead of one object per record, each field is stored in its own
+ * primitive array: gender as a byte, date of birth as an epoch day, and names and colors as ids into a dictionary of the
+ * distinct values shared by the whole batch. This is far more compact than a list of {@link Record} objects, and sorting and
+ * filtering only touch the arrays for the fields involved.
+ *
+ * Sorting and filtering never move the data, they produce an array of record indexes (a permutation) instead. Use
+ * {@link #asRecords(int[])} to view the batch, in any order, as a plain list of records for code that works with {@link Record}.
+ *
+ * Batches are not thread safe, and records can only be added, never removed.
+ */
+public final class RecordBatch {
+
+    private static final Gender[] GENDERS = Gender.values();
+
+    private byte[] genders;
+    private int[] datesOfBirth;
+    private int[] lastNames;
+    private int[] firstNames;
+    private int[] favoriteColors;
+    private int size;
+
+    private final StringDictionary dictionary = new StringDictionary();
+
+    // rank of each dictionary id in sorted order, so names can be compared as ints, rebuilt when new values are added
+    private int[] dictionaryRanks = new int[0];
+
+    public RecordBatch() {
+        this(1024);
+    }
+
+    public RecordBatch(int capacity) {
+        capacity = Math.max(capacity, 16);
+        genders = new byte[capacity];
+        datesOfBirth = new int[capacity];
+        lastNames = new int[capacity];
+        firstNames = new int[capacity];
+        favoriteColors = new int[capacity];
+    }
+
+    /**
+     * Compares two records of a batch by their index.
+     */
+    @FunctionalInterface
+    public interface IndexComparator {
+        int compare(int a, int b);
+
+        default IndexComparator reversed() {
+            return (a, b) -> compare(b, a);
+        }
+
+        default IndexComparator thenComparing(IndexComparator other) {
+            return (a, b) -> {
+                int result = compare(a, b);
+                return result != 0 ? result : other.compare(a, b);
+            };
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void add(Record record) {
+        add(record.getLastName(), record.getFirstName(), record.getGender(), record.getFavoriteColor(), record.dateOfBirthEpochDay());
+    }
+
+    public void addAll(Iterable<Record> records) {
+        for (Record record : records) {
+            add(record);
+        }
+    }
+
+    public void add(String lastName, String firstName, Gender gender, String favoriteColor, int dateOfBirthEpochDay) {
+        add(dictionary.idOf(lastName), dictionary.idOf(firstName), gender, dictionary.idOf(favoriteColor), dateOfBirthEpochDay);
+    }
+
+    /**
+     * Looks up a string held in a range of ascii bytes in this batch's dictionary, for parsers filling the batch directly.
+     * @return the dictionary id to pass to {@link #add(int, int, Gender, int, int)}
+     */
+    int dictionaryId(ByteBuffer bytes, int start, int end) {
+        return dictionary.idOf(bytes, start, end);
+    }
+
+    /**
+     * @return the dictionary id of a string, adding it to this batch's dictionary if not already present
+     */
+    int dictionaryId(String value) {
+        return dictionary.idOf(value);
+    }
+
+    void add(int lastName, int firstName, Gender gender, int favoriteColor, int dateOfBirthEpochDay) {
+        if (size == genders.length) {
+            int capacity = size * 2;
+            genders = Arrays.copyOf(genders, capacity);
+            datesOfBirth = Arrays.copyOf(datesOfBirth, capacity);
+            lastNames = Arrays.copyOf(lastNames, capacity);
+            firstNames = Arrays.copyOf(firstNames, capacity);
+            favoriteColors = Arrays.copyOf(favoriteColors, capacity);
+        }
+        genders[size] = (byte) gender.ordinal();
+        datesOfBirth[size] = dateOfBirthEpochDay;
+        lastNames[size] = lastName;
+        firstNames[size] = firstName;
+        favoriteColors[size] = favoriteColor;
+        size++;
+    }
+
+    public String getLastName(int index) {
+        return dictionary.valueOf(lastNames[checkIndex(index)]);
+    }
+
+    public String getFirstName(int index) {
+        return dictionary.valueOf(firstNames[checkIndex(index)]);
+    }
+
+    public Gender getGender(int index) {
+        return GENDERS[genders[checkIndex(index)]];
+    }
+
+    public String getFavoriteColor(int index) {
+        return dictionary.valueOf(favoriteColors[checkIndex(index)]);
+    }
+
+    public int getDateOfBirthEpochDay(int index) {
+        return datesOfBirth[checkIndex(index)];
+    }
+
+    public int getLastNameId(int index) {
+        return lastNames[checkIndex(index)];
+    }
+
+    public int getFirstNameId(int index) {
+        return firstNames[checkIndex(index)];
+    }
+
+    public int getFavoriteColorId(int index) {
+        return favoriteColors[checkIndex(index)];
+    }
+
+    /**
+     * @return the number of distinct strings (names and colors) in the batch
+     */
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    /**
+     * @return the dictionary string for an id returned by one of the id getters
+     */
+    public String getDictionaryValue(int id) {
+        return dictionary.valueOf(id);
+    }
+
+    /**
+     * Creates a {@link Record} from the columns of a single record in the batch.
+     */
+    public Record getRecord(int index) {
+        checkIndex(index);
+        return new Record(dictionary.valueOf(lastNames[index]), dictionary.valueOf(firstNames[index]), GENDERS[genders[index]],
+                dictionary.valueOf(favoriteColors[index]), datesOfBirth[index]);
+    }
+
+    /**
+     * @return the indexes of every record in the batch, in the order they were added
+     */
+    public int[] indexes() {
+        int[] indexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            indexes[i] = i;
+        }
+        return indexes;
+    }
+
+    /**
+     * @return the indexes, in the same order, of the records that match the predicate
+     */
+    public int[] filter(int[] indexes, IntPredicate predicate) {
+        int[] matches = new int[indexes.length];
+        int count = 0;
+        for (int index : indexes) {
+            if (predicate.test(index)) {
+                matches[count++] = index;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Sorts record indexes with a stable merge sort, so records that compare equal keep their relative order (the same
+     * guarantee as {@link List#sort(java.util.Comparator)}). The indexes array is left untouched.
+     * @return a new array with the indexes sorted
+     */
+    public int[] sort(int[] indexes, IndexComparator comparator) {
+        int[] sorted = indexes.clone();
+        mergeSort(indexes.clone(), sorted, 0, sorted.length, comparator);
+        return sorted;
+    }
+
+    /**
+     * Orders records by gender, in the same order as {@link Gender} (male first).
+     */
+    public IndexComparator genderOrder() {
+        return (a, b) -> Integer.compare(genders[a], genders[b]);
+    }
+
+    public IndexComparator birthDateOrder() {
+        return (a, b) -> Integer.compare(datesOfBirth[a], datesOfBirth[b]);
+    }
+
+    /**
+     * Orders records by last name, the same as comparing the strings. The distinct names are ranked once, so each comparison
+     * is between two ints rather than two strings.
+     */
+    public IndexComparator lastNameOrder() {
+        int[] ranks = dictionaryRanks();
+        return (a, b) -> Integer.compare(ranks[lastNames[a]], ranks[lastNames[b]]);
+    }
+
+    /**
+     * Orders records by last name in the order of a collation. The distinct last names are ranked once by their collation keys,
+     * so like {@link #lastNameOrder()} each comparison is between two ints, and names the collation treats as equal get the
+     * same rank.
+     */
+    public IndexComparator lastNameOrder(RecordCollation collation) {
+        byte[][] keys = new byte[dictionary.size()][];
+        int[] ids = new int[dictionary.size()];
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            int id = lastNames[i];
+            if (keys[id] == null) {
+                keys[id] = collation.key(dictionary.valueOf(id));
+                ids[distinct++] = id;
+            }
+        }
+        Integer[] sorted = new Integer[distinct];
+        for (int i = 0; i < distinct; i++) {
+            sorted[i] = ids[i];
+        }
+        Arrays.sort(sorted, (a, b) -> RecordCollation.compareKeys(keys[a], keys[b]));
+
+        int[] ranks = new int[keys.length];
+        int rank = 0;
+        for (int i = 0; i < distinct; i++) {
+            if (i > 0 && RecordCollation.compareKeys(keys[sorted[i - 1]], keys[sorted[i]]) != 0) {
+                rank++;
+            }
+            ranks[sorted[i]] = rank;
+        }
+        return (a, b) -> Integer.compare(ranks[lastNames[a]], ranks[lastNames[b]]);
+    }
+
+    /**
+     * @return every record in the batch, in the order they were added, as a read only list of {@link Record}
+     */
+    public List<Record> asRecords() {
+        return asRecords(indexes());
+    }
+
+    /**
+     * Views the batch as a read only list of {@link Record}, in the order of the given indexes (e.g. from {@link #sort} or
+     * {@link #filter}). Records are created as they are read from the list rather than up front.
+     */
+    public List<Record> asRecords(int[] indexes) {
+        return new RecordView(indexes);
+    }
+
+    private int[] dictionaryRanks() {
+        int distinct = dictionary.size();
+        if (dictionaryRanks.length != distinct) {
+            Integer[] ids = new Integer[distinct];
+            for (int id = 0; id < distinct; id++) {
+                ids[id] = id;
+            }
+            Arrays.sort(ids, (a, b) -> dictionary.valueOf(a).compareTo(dictionary.valueOf(b)));
+
+            int[] ranks = new int[distinct];
+            for (int rank = 0; rank < distinct; rank++) {
+                ranks[ids[rank]] = rank;
+            }
+            dictionaryRanks = ranks;
+        }
+        return dictionaryRanks;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for batch of size " + size);
+        }
+        return index;
+    }
+
+    /**
+     * Top down merge sort of dest[from, to), using src as scratch space. Both arrays must start with the same contents.
+     */
+    private static void mergeSort(int[] src, int[] dest, int from, int to, IndexComparator comparator) {
+        int length = to - from;
+        if (length < 16) {
+            // insertion sort small ranges, which is stable as well
+            for (int i = from + 1; i < to; i++) {
+                int value = dest[i];
+                int j = i;
+                while (j > from && comparator.compare(dest[j - 1], value) > 0) {
+                    dest[j] = dest[j - 1];
+                    j--;
+                }
+                dest[j] = value;
+            }
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        mergeSort(dest, src, from, mid, comparator);
+        mergeSort(dest, src, mid, to, comparator);
+
+        // already in order, just copy
+        if (comparator.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, from, dest, from, length);
+            return;
+        }
+
+        for (int i = from, left = from, right = mid; i < to; i++) {
+            if (right >= to || (left < mid && comparator.compare(src[left], src[right]) <= 0)) {
+                dest[i] = src[left++];
+            } else {
+                dest[i] = src[right++];
+            }
+        }
+    }
+
+    private final class RecordView extends AbstractList<Record> implements RandomAccess {
+        private final int[] indexes;
+
+        RecordView(int[] indexes) {
+            this.indexes = indexes;
+        }
+
+        @Override
+        public Record get(int i) {
+            return getRecord(indexes[i]);
+        }
+
+        @Override
+        public int size() {
+            return indexes.length;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The compact binary encoding of a record shared by the sorted runs of {@link ExternalRecordSorter} and the log of a
+ * {@link RecordFingerprintSet}: the gender ordinal, the date of birth as an epoch day, and each string as a variable length byte
+ * count (7 bits at a time, since nearly every value is shorter than 128 bytes) followed by its UTF-8 bytes. No encoding is a
+ * prefix of another, so an encoded record can be compared with one in a stream without knowing where that one ends.
+ */
+final class RecordCodec {
+
+    private static final Gender[] GENDERS = Gender.values();
+
+    private RecordCodec() {
+    }
+
+    /**
+     * @return the encoded record
+     */
+    static byte[] encode(Record record) {
+        byte[] lastName = record.getLastName().getBytes(StandardCharsets.UTF_8);
+        byte[] firstName = record.getFirstName().getBytes(StandardCharsets.UTF_8);
+        byte[] favoriteColor = record.getFavoriteColor().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer encoded = ByteBuffer.allocate(5 + 3 * 5 + lastName.length + firstName.length + favoriteColor.length);
+        encoded.put((byte) record.getGender().ordinal());
+        encoded.putInt(record.dateOfBirthEpochDay());
+        putString(encoded, lastName);
+        putString(encoded, firstName);
+        putString(encoded, favoriteColor);
+        return Arrays.copyOf(encoded.array(), encoded.position());
+    }
+
+    /**
+     * Reads the next encoded record.
+     * @throws java.io.EOFException if the input ends part way through the record
+     */
+    static Record read(DataInput in) throws IOException {
+        Gender gender = GENDERS[in.readUnsignedByte()];
+        int dateOfBirth = in.readInt();
+        String lastName = readString(in);
+        String firstName = readString(in);
+        String favoriteColor = readString(in);
+        return new Record(lastName, firstName, gender, favoriteColor, dateOfBirth);
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        int length = bytes.length;
+        while (length >= 0x80) {
+            out.put((byte) (length & 0x7f | 0x80));
+            length >>>= 7;
+        }
+        out.put((byte) length);
+        out.put(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            length |= (b & 0x7f) << shift;
+            if (b < 0x80) {
+                break;
+            }
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,130 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.text.Collator;
+import java.util.Comparator;
+import java.util.IllformedLocaleException;
+import java.util.Locale;
+
+/**
+ * Orders last names the way people of a locale expect, e.g. with accented letters next to their plain letters and, unless
+ * case sensitive, upper and lower case letters as the same, rather than by UTF-16 code units the way
+ * {@link String#compareTo(String)} does. Names are normalized (canonically decomposed) first, so the same name typed
+ * with precomposed or combining accents sorts the same.
+ *
+ * Comparing with a {@link Collator} works out the collation of both names on every comparison, which is far too slow for
+ * sorting. Instead each record's last name is converted to a collation key once, a byte array that orders the same as the
+ * collator when compared as unsigned bytes, and the key is cached on the record so sorting only compares bytes. The key is
+ * kept until the record is given a new last name or its key is asked for by a different collation.
+ *
+ * Collations are thread safe, each thread gets its own copy of the collator.
+ */
+public final class RecordCollation {
+
+    private final Locale locale;
+    private final boolean caseSensitive;
+    private final ThreadLocal<Collator> collators;
+    private final Comparator<Record> lastNameOrder = (a, b) -> compareKeys(lastNameKey(a), lastNameKey(b));
+
+    /**
+     * @param locale the locale to order names for, {@link Locale#ROOT} for an order that suits most languages
+     * @param caseSensitive false to treat names that only differ by case as equal, so they keep their original order
+     */
+    public RecordCollation(Locale locale, boolean caseSensitive) {
+        this.locale = locale;
+        this.caseSensitive = caseSensitive;
+        this.collators = ThreadLocal.withInitial(() -> {
+            Collator collator = Collator.getInstance(locale);
+            collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+            // secondary strength still tells accents apart, tertiary also tells case apart
+            collator.setStrength(caseSensitive ? Collator.TERTIARY : Collator.SECONDARY);
+            return collator;
+        });
+    }
+
+    /**
+     * Parses the language tag of a locale to order names for, e.g. en-US or de, with "root" (or no tag) meaning
+     * {@link Locale#ROOT}. A collator for a language that isn't installed silently falls back to the default locale, so tags
+     * for those are rejected rather than giving an order nobody asked for.
+     * @return the locale
+     * @throws IllegalArgumentException if the tag isn't well formed, or there's no collator for its language
+     */
+    public static Locale parseLocale(String tag) {
+        if (tag == null || tag.isEmpty() || tag.equalsIgnoreCase("root")) {
+            return Locale.ROOT;
+        }
+        Locale locale;
+        try {
+            locale = new Locale.Builder().setLanguageTag(tag).build();
+        } catch (IllformedLocaleException e) {
+            throw new IllegalArgumentException("Invalid language tag " + tag, e);
+        }
+        for (Locale available : Collator.getAvailableLocales()) {
+            if (!locale.getLanguage().isEmpty() && available.getLanguage().equals(locale.getLanguage())) {
+                return locale;
+            }
+        }
+        throw new IllegalArgumentException("No collation for language tag " + tag);
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public boolean isCaseSensitive() {
+        return caseSensitive;
+    }
+
+    /**
+     * @return the collation key of a string, which orders the same as the strings when compared with {@link #compareKeys}
+     */
+    public byte[] key(String value) {
+        return collators.get().getCollationKey(value).toByteArray();
+    }
+
+    /**
+     * @return the collation key of the record's last name, created the first time it's asked for and then cached on the record
+     */
+    public byte[] lastNameKey(Record record) {
+        Key key = record.getLastNameKey();
+        if (key == null || key.collation != this) {
+            key = new Key(this, key(record.getLastName()));
+            record.setLastNameKey(key);
+        }
+        return key.bytes;
+    }
+
+    /**
+     * Orders records by last name, ascending. Equal names (or names that only differ by case, if case insensitive) compare
+     * as equal, so stable sorts keep them in their original order.
+     */
+    public Comparator<Record> lastNameOrder() {
+        return lastNameOrder;
+    }
+
+    /**
+     * Compares two keys as unsigned bytes, a shorter key that the other starts with coming first.
+     */
+    public static int compareKeys(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) {
+                return (a[i] & 0xff) - (b[i] & 0xff);
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * A collation key cached on a record, along with the collation it was created by. Immutable, so it can be cached on a record
+     * that other threads are reading.
+     */
+    static final class Key {
+        private final RecordCollation collation;
+        private final byte[] bytes;
+
+        Key(RecordCollation collation, byte[] bytes) {
+            this.collation = collation;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * Hand written decoding of dates in the {@link Record#DATE_FORMAT_STRING} format straight to an epoch day, without going
+ * through a {@link java.time.format.DateTimeFormatter} or creating any objects. Parsing with the formatter was the most expensive
+ * part of parsing a record, and threw (and filled in the stack trace of) an exception for every invalid date.
+ *
+ * Accepts exactly what {@link java.time.LocalDate#parse(CharSequence, java.time.format.DateTimeFormatter)} accepts with
+ * {@link Record#DATE_TIME_FORMATTER}: a two digit month and day, and a four digit year (or a "+" followed by more than four
+ * digits), separated by "/". Like the formatter's default smart resolver, a day past the end of the month (e.g. 02/30) is moved
+ * back to the last day of the month rather than rejected. The only difference is years so large their epoch day doesn't fit
+ * in an int (past the year 5,000,000), which are rejected.
+ */
+public final class RecordDates {
+
+    /**
+     * Returned by the parse methods when the text isn't a valid date, never a valid epoch day itself.
+     */
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    /**
+     * The most bytes {@link #formatEpochDay(int, byte[], int)} writes for any epoch day.
+     */
+    public static final int MAX_FORMATTED_LENGTH = 20;
+
+    // the largest year whose every day has an epoch day that fits in an int
+    private static final int MAX_YEAR = 5_000_000;
+    private static final int DAYS_0000_TO_1970 = 719_528;
+    private static final int DAYS_PER_CYCLE = 146_097;
+
+    private RecordDates() {
+    }
+
+    /**
+     * Parses a date string to an epoch day.
+     * @param text the date in MM/dd/yyyy format
+     * @return the epoch day, or {@link #INVALID} if not a valid date
+     */
+    public static int parseEpochDay(CharSequence text) {
+        int length = text.length();
+        if (length < 10 || text.charAt(2) != '/' || text.charAt(5) != '/') {
+            return INVALID;
+        }
+        int month = twoDigits(text.charAt(0), text.charAt(1));
+        int day = twoDigits(text.charAt(3), text.charAt(4));
+
+        int year = 0;
+        int start = 6;
+        if (length > 10) {
+            // more than four digits must be written with a sign, and only a positive year is valid
+            if (length < 12 || length > 14 || text.charAt(6) != '+') {
+                return INVALID;
+            }
+            start = 7;
+        }
+        for (int i = start; i < length; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            year = year * 10 + digit;
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * Parses a date from a range of ascii bytes to an epoch day, without copying the bytes.
+     * @param bytes the buffer holding the date, read with absolute gets so the buffer position is untouched
+     * @param start the index of the first byte of the date
+     * @param end the index after the last byte of the date
+     * @return the epoch day, or {@link #INVALID} if not a valid date
+     */
+    public static int parseEpochDay(ByteBuffer bytes, int start, int end) {
+        int length = end - start;
+        if (length < 10 || bytes.get(start + 2) != '/' || bytes.get(start + 5) != '/') {
+            return INVALID;
+        }
+        int month = twoDigits(bytes.get(start), bytes.get(start + 1));
+        int day = twoDigits(bytes.get(start + 3), bytes.get(start + 4));
+
+        int year = 0;
+        int yearStart = start + 6;
+        if (length > 10) {
+            if (length < 12 || length > 14 || bytes.get(start + 6) != '+') {
+                return INVALID;
+            }
+            yearStart++;
+        }
+        for (int i = yearStart; i < end; i++) {
+            int digit = bytes.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            year = year * 10 + digit;
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * @param epochDay the date as days since the epoch
+     * @return the year of the date, without creating a {@link LocalDate}
+     */
+    public static int yearOfEpochDay(int epochDay) {
+        return (int) (toDate(epochDay) >> 9);
+    }
+
+    /**
+     * Formats an epoch day as ascii bytes in the {@link Record#DATE_FORMAT_STRING} format, exactly as
+     * {@link Record#DATE_TIME_FORMATTER} would, without creating any objects for years 1 to 9999.
+     * @param epochDay the date as days since the epoch
+     * @param bytes the buffer to write to, with room for at least {@link #MAX_FORMATTED_LENGTH} bytes after the offset
+     * @param offset the index to write the first byte to
+     * @return the index after the last byte written
+     */
+    public static int formatEpochDay(int epochDay, byte[] bytes, int offset) {
+        long date = toDate(epochDay);
+        long year = date >> 9;
+        int month = (int) (date >> 5) & 0xf;
+        int day = (int) date & 0x1f;
+
+        if (year < 1 || year > 9999) {
+            // signs and eras are rare enough to leave to the formatter
+            String formatted = Record.DATE_TIME_FORMATTER.format(LocalDate.ofEpochDay(epochDay));
+            for (int i = 0; i < formatted.length(); i++) {
+                bytes[offset++] = (byte) formatted.charAt(i);
+            }
+            return offset;
+        }
+        bytes[offset] = (byte) ('0' + month / 10);
+        bytes[offset + 1] = (byte) ('0' + month % 10);
+        bytes[offset + 2] = '/';
+        bytes[offset + 3] = (byte) ('0' + day / 10);
+        bytes[offset + 4] = (byte) ('0' + day % 10);
+        bytes[offset + 5] = '/';
+        int y = (int) year;
+        bytes[offset + 6] = (byte) ('0' + y / 1000);
+        bytes[offset + 7] = (byte) ('0' + y / 100 % 10);
+        bytes[offset + 8] = (byte) ('0' + y / 10 % 10);
+        bytes[offset + 9] = (byte) ('0' + y % 10);
+        return offset + 10;
+    }
+
+    /**
+     * Converts an epoch day to a year, month and day, the same calculation as java.time.LocalDate#ofEpochDay, counting from
+     * March 1st so leap days are at the end of the year.
+     * @return the year, month and day packed as year << 9 | month << 5 | day
+     */
+    private static long toDate(int epochDay) {
+        long zeroDay = (long) epochDay + DAYS_0000_TO_1970 - 60;
+        long adjust = 0;
+        if (zeroDay < 0) {
+            long adjustCycles = (zeroDay + 1) / DAYS_PER_CYCLE - 1;
+            adjust = adjustCycles * 400;
+            zeroDay -= adjustCycles * DAYS_PER_CYCLE;
+        }
+        long year = (400 * zeroDay + 591) / DAYS_PER_CYCLE;
+        long dayOfYear = zeroDay - (365 * year + year / 4 - year / 100 + year / 400);
+        if (dayOfYear < 0) {
+            year--;
+            dayOfYear = zeroDay - (365 * year + year / 4 - year / 100 + year / 400);
+        }
+        int marchMonth = ((int) dayOfYear * 5 + 2) / 153;
+        int month = (marchMonth + 2) % 12 + 1;
+        int day = (int) dayOfYear - (marchMonth * 306 + 5) / 10 + 1;
+        year += adjust + marchMonth / 10;
+        return year << 9 | month << 5 | day;
+    }
+
+    /**
+     * @return the value of two ascii digits, or -1 if either isn't a digit
+     */
+    private static int twoDigits(int tens, int ones) {
+        tens -= '0';
+        ones -= '0';
+        if (tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+            return -1;
+        }
+        return tens * 10 + ones;
+    }
+
+    /**
+     * Validates the fields and converts them to an epoch day, the same calculation as {@link java.time.LocalDate#toEpochDay()}.
+     */
+    private static int toEpochDay(int year, int month, int day) {
+        if (year < 1 || year > MAX_YEAR || month < 1 || month > 12 || day < 1 || day > 31) {
+            return INVALID;
+        }
+        day = Math.min(day, lengthOfMonth(year, month));
+
+        long y = year;
+        long total = 365 * y + (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return (int) (total - DAYS_0000_TO_1970);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+}
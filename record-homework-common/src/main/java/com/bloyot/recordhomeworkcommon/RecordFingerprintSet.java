@@ -0,0 +1,293 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+/**
+ * A set of records for removing duplicates in a single streaming pass, which uses far less memory than a
+ * {@code HashSet<Record>}. Records are equal when all five fields are, same as {@link Record#equals(Object)}.
+ *
+ * Each distinct record is kept as a 64 bit fingerprint in an open addressing table (linear probing, at most half full), next
+ * to the offset of the record in an append only log. The log holds the records in the compact binary encoding of
+ * {@link RecordCodec}, the same as the sorted runs of {@link ExternalRecordSorter}, so a record takes tens of bytes rather than
+ * hundreds. A record whose fingerprint is already in the table is compared byte for byte with the logged record, so two
+ * different records that happen to share a fingerprint are never mistaken for duplicates. The log is held in memory until it reaches the memory limit, past that it is
+ * written out to a temporary file and only read back to check records with a matching fingerprint, which leaves between 32
+ * and 64 bytes of memory per distinct record (two longs per slot) however long the records are.
+ *
+ * Sets aren't thread safe. The temporary file is deleted when the set is closed.
+ */
+public final class RecordFingerprintSet implements Closeable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int LOG_BUFFER_SIZE = 64 * 1024;
+
+    // the longest an array can be on most VMs, so the most of the log that can be held in memory whatever the max memory
+    private static final int MAX_LOG_LENGTH = Integer.MAX_VALUE - 8;
+
+    // the fingerprint of an empty slot, a record that hashes to it is given EMPTY + 1 instead
+    private static final long EMPTY = 0;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ToLongFunction<Record> fingerprint;
+    // the max memory, or the longest the log buffer can be if that's less
+    private final long maxMemory;
+    private final Path tempDir;
+
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private int size;
+    private long duplicates;
+    private long collisions;
+
+    // the end of the log, in memory until it's spilled, and after that just what hasn't been written out yet
+    private byte[] log;
+    private int logLength;
+    // the offset of the first byte in the log buffer, which is how much has been written out to the file
+    private long logStart;
+    private Path spillPath;
+    private FileChannel spill;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(256);
+
+    /**
+     * @param maxMemory roughly how many bytes of logged records to hold in memory before writing them out to a file
+     * @param tempDir the directory to write the log file to, or null for the default temporary directory
+     */
+    public RecordFingerprintSet(long maxMemory, Path tempDir) {
+        this(RecordFingerprintSet::fingerprint, maxMemory, tempDir);
+    }
+
+    /**
+     * @param fingerprint how to fingerprint records, only replaced by tests to force collisions
+     */
+    RecordFingerprintSet(ToLongFunction<Record> fingerprint, long maxMemory, Path tempDir) {
+        this(fingerprint, maxMemory, MAX_LOG_LENGTH, tempDir);
+    }
+
+    /**
+     * @param maxLogLength the longest the log buffer can be, only lowered by tests to spill without filling the heap
+     */
+    RecordFingerprintSet(ToLongFunction<Record> fingerprint, long maxMemory, int maxLogLength, Path tempDir) {
+        if (maxMemory < 0) {
+            throw new IllegalArgumentException("Invalid max memory " + maxMemory);
+        }
+        this.fingerprint = fingerprint;
+        this.maxMemory = Math.min(maxMemory, maxLogLength);
+        this.tempDir = tempDir;
+        this.log = new byte[(int) Math.min(LOG_BUFFER_SIZE, this.maxMemory)];
+    }
+
+    /**
+     * Adds a record if there isn't an equal one already.
+     * @return true if the record was added, false if it's a duplicate
+     * @throws IOException if unable to read or write the log file
+     */
+    public boolean add(Record record) throws IOException {
+        long hash = fingerprint.applyAsLong(record);
+        if (hash == EMPTY) {
+            hash = EMPTY + 1;
+        }
+        byte[] encoded = null;
+        int mask = fingerprints.length - 1;
+        int slot = (int) hash & mask;
+        for (long existing; (existing = fingerprints[slot]) != EMPTY; slot = (slot + 1) & mask) {
+            if (existing == hash) {
+                if (encoded == null) {
+                    encoded = RecordCodec.encode(record);
+                }
+                if (logged(offsets[slot], encoded)) {
+                    duplicates++;
+                    return false;
+                }
+                collisions++;
+            }
+        }
+
+        if (encoded == null) {
+            encoded = RecordCodec.encode(record);
+        }
+        offsets[slot] = append(encoded);
+        fingerprints[slot] = hash;
+        size++;
+        if (size > fingerprints.length / 2) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * @return how many distinct records have been added
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return how many duplicate records have been turned away
+     */
+    public long getDuplicateCount() {
+        return duplicates;
+    }
+
+    /**
+     * @return how many times a record had the same fingerprint as a different record
+     */
+    public long getCollisionCount() {
+        return collisions;
+    }
+
+    /**
+     * @return true if the log has been written out to a temporary file
+     */
+    public boolean isSpilled() {
+        return spill != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spill != null) {
+            try {
+                spill.close();
+            } finally {
+                Files.deleteIfExists(spillPath);
+                spill = null;
+            }
+        }
+    }
+
+    /**
+     * The default fingerprint, FNV-1a over the chars of every field (each ended by its length, so fields can't run into each
+     * other), finished with the murmur3 mix so every bit of the result depends on every input bit.
+     */
+    static long fingerprint(Record record) {
+        long hash = FNV_OFFSET;
+        hash = (hash ^ record.getGender().ordinal()) * FNV_PRIME;
+        hash = (hash ^ record.dateOfBirthEpochDay()) * FNV_PRIME;
+        hash = hash(hash, record.getLastName());
+        hash = hash(hash, record.getFirstName());
+        hash = hash(hash, record.getFavoriteColor());
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ value.length()) * FNV_PRIME;
+    }
+
+    private void grow() {
+        long[] oldFingerprints = fingerprints;
+        long[] oldOffsets = offsets;
+        fingerprints = new long[oldFingerprints.length * 2];
+        offsets = new long[oldOffsets.length * 2];
+        int mask = fingerprints.length - 1;
+        for (int i = 0; i < oldFingerprints.length; i++) {
+            long hash = oldFingerprints[i];
+            if (hash != EMPTY) {
+                int slot = (int) hash & mask;
+                while (fingerprints[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                fingerprints[slot] = hash;
+                offsets[slot] = oldOffsets[i];
+            }
+        }
+    }
+
+    /**
+     * @return the offset of the record in the log
+     */
+    private long append(byte[] encoded) throws IOException {
+        if (logLength + encoded.length > log.length) {
+            if (spill == null && logLength + encoded.length > maxMemory) {
+                spill();
+            }
+            if (spill != null) {
+                writeLog();
+            }
+            if (logLength + encoded.length > log.length) {
+                // doubling, but no further than the memory limit, which the log is spilled before it passes
+                long grown = spill == null ? Math.min(2L * log.length, maxMemory) : 0;
+                log = Arrays.copyOf(log, (int) Math.max(grown, (long) logLength + encoded.length));
+            }
+        }
+        long offset = logStart + logLength;
+        System.arraycopy(encoded, 0, log, logLength, encoded.length);
+        logLength += encoded.length;
+        return offset;
+    }
+
+    /**
+     * Moves the log out to a temporary file, after which only a buffer's worth of it stays in memory.
+     */
+    private void spill() throws IOException {
+        spillPath = tempDir == null ? Files.createTempFile("records-", ".dedupe") : Files.createTempFile(tempDir, "records-", ".dedupe");
+        spill = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeLog();
+        log = new byte[LOG_BUFFER_SIZE];
+    }
+
+    private void writeLog() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(log, 0, logLength);
+        while (buffer.hasRemaining()) {
+            spill.write(buffer, logStart + buffer.position());
+        }
+        logStart += logLength;
+        logLength = 0;
+    }
+
+    /**
+     * @return true if the record logged at an offset is the encoded record
+     */
+    private boolean logged(long offset, byte[] encoded) throws IOException {
+        if (offset >= logStart) {
+            int start = (int) (offset - logStart);
+            if (start + encoded.length > logLength) {
+                return false;
+            }
+            for (int i = 0; i < encoded.length; i++) {
+                if (log[start + i] != encoded[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // a logged record is always written out whole, so anything that doesn't fit before the buffer isn't the same record
+        if (offset + encoded.length > logStart) {
+            return false;
+        }
+        if (readBuffer.capacity() < encoded.length) {
+            readBuffer = ByteBuffer.allocate(encoded.length);
+        }
+        readBuffer.clear();
+        readBuffer.limit(encoded.length);
+        while (readBuffer.hasRemaining()) {
+            if (spill.read(readBuffer, offset + readBuffer.position()) < 0) {
+                return false;
+            }
+        }
+        byte[] read = readBuffer.array();
+        for (int i = 0; i < encoded.length; i++) {
+            if (read[i] != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -5,11 +5,25 @@ package com.bloyot.recordhomeworkcommon;
  */
 public class RecordParseException extends Exception {
 
+    /**
+     * The 1 based line number of the line that failed to parse, or -1 if not known (e.g. when parsing a single line).
+     */
+    private final long lineNumber;
+
     public RecordParseException(String message) {
-        super(message);
+        this(message, null, -1);
     }
 
     public RecordParseException(String message, Throwable throwable) {
+        this(message, throwable, -1);
+    }
+
+    public RecordParseException(String message, Throwable throwable, long lineNumber) {
         super(message, throwable);
+        this.lineNumber = lineNumber;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
     }
 }
@@ -2,11 +2,15 @@ package com.bloyot.recordhomeworkcommon;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.time.LocalDate;
-import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Parses records from csv, ssv, or psv input files. Because for our use case we know there will be no need to escape commas, pipes, or spaces
@@ -17,9 +21,21 @@ public class RecordParser {
 
     public static final Set<String> VALID_DELIMITERS = new HashSet<>(Arrays.asList(",", " ", "|"));
 
+    /**
+     * Files smaller than this many bytes are parsed on a single thread by {@link #parseFileParallel(Path, String)}, since
+     * splitting them up costs more than it saves.
+     */
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 32L * 1024 * 1024;
+
+    /**
+     * The number of errors kept in the report of {@link #parseFileLenient(Path, String)}, any more are only counted.
+     */
+    public static final int DEFAULT_MAX_ERRORS = 100;
+
     /**
      * Parses a set of records from an input file, using the provided delimiter. Returns a list of {@link Record} objects,
-     * or throws an exception if it is unable to read or parse the file.
+     * or throws an exception if it is unable to read or parse the file. Gzip and zstd compressed files are detected and
+     * decompressed while parsing (see {@link CompressedInput}), as they are by all of the other file parsing methods.
      * @param filePath - the input file path
      * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
      * @return The list of records
@@ -27,24 +43,251 @@ public class RecordParser {
      * @throws RecordParseException - if unable to parse any line of the files
      */
     public static List<Record> parseFile(Path filePath, String delimiter) throws IOException, RecordParseException {
-        // input validations
-        if (filePath == null || !filePath.toFile().exists()) {
-            throw new RecordParseException("Invalid file path");
-        }
-        if (!VALID_DELIMITERS.contains(delimiter)) {
-            throw new RecordParseException("Invalid delimiter \"" + delimiter + "\" provided");
-        }
+        validateFileInput(filePath, delimiter);
 
         // read each line, parse it, and add it to the record list
-        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
+        // a strict decoder, same as Files#newBufferedReader, so invalid UTF-8 is reported rather than replaced
+        Reader decoder = new InputStreamReader(CompressedInput.open(filePath), StandardCharsets.UTF_8.newDecoder());
+        try (BufferedReader reader = new BufferedReader(decoder, CompressedInput.BUFFER_SIZE)) {
             List<Record> records = new ArrayList<>();
-            while (reader.ready()) {
-                records.add(parseLine(reader.readLine(), delimiter));
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                try {
+                    records.add(parseLine(line, delimiter));
+                } catch (RecordParseException e) {
+                    throw new RecordParseException(e.getMessage(), e.getCause(), lineNumber);
+                }
             }
             return records;
         }
     }
 
+    /**
+     * Parses a set of records from an input file the same way {@link #parseFile(Path, String)} does, but memory maps the file
+     * and scans the raw bytes for delimiters and line breaks rather than reading it line by line and splitting each line.
+     * This is considerably cheaper for large files, and produces the same records and the same exception messages.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @return The list of records
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException - if unable to parse any line of the files
+     */
+    public static List<Record> parseFileMapped(Path filePath, String delimiter) throws IOException, RecordParseException {
+        return parseFileMapped(filePath, delimiter, null);
+    }
+
+    /**
+     * Same as {@link #parseFileMapped(Path, String)}, but looks up the name and color fields of each record in a
+     * {@link StringPool}, so that records with the same values share the same String instances.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @param stringPool - the pool to de-duplicate field values with, or null to not pool them
+     * @return The list of records
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException - if unable to parse any line of the files
+     */
+    public static List<Record> parseFileMapped(Path filePath, String delimiter, StringPool stringPool) throws IOException, RecordParseException {
+        validateFileInput(filePath, delimiter);
+
+        try (MappedRecordReader reader = MappedRecordReader.open(filePath, delimiter, stringPool)) {
+            List<Record> records = new ArrayList<>();
+            Record record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Parses a set of records from an input file in lenient mode, keeping up to {@link #DEFAULT_MAX_ERRORS} errors.
+     * See {@link #parseFileLenient(Path, String, int, StringPool)}.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @return The valid records and a report of the invalid lines
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException - if the file path or delimiter is invalid
+     */
+    public static ParseResult parseFileLenient(Path filePath, String delimiter) throws IOException, RecordParseException {
+        return parseFileLenient(filePath, delimiter, DEFAULT_MAX_ERRORS, null);
+    }
+
+    /**
+     * Parses a set of records from an input file in lenient mode: instead of failing on the first invalid line, invalid lines are
+     * skipped and reported with their line number, byte offset and a {@link ParseError.Reason} code. No exception (or message) is
+     * created for an invalid line, so a file with lots of bad lines parses about as fast as a clean one. Otherwise this is the same
+     * as {@link #parseFileMapped(Path, String, StringPool)}, the records returned are exactly the valid lines of the file.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @param maxErrors - the number of errors to keep in the report, any more are only counted
+     * @param stringPool - the pool to de-duplicate field values with, or null to not pool them
+     * @return The valid records and a report of the invalid lines
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException - if the file path or delimiter is invalid
+     */
+    public static ParseResult parseFileLenient(Path filePath, String delimiter, int maxErrors, StringPool stringPool) throws IOException, RecordParseException {
+        validateFileInput(filePath, delimiter);
+
+        ParseResult result = new ParseResult(maxErrors);
+        try (MappedRecordReader reader = MappedRecordReader.open(filePath, delimiter, stringPool)) {
+            Record record;
+            while ((record = reader.next(result)) != null) {
+                result.addRecord(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses a set of records from an input file using all available processors. See {@link #parseFileParallel(Path, String, int, long)}.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @return The list of records, in the same order as the file
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException - if unable to parse any line of the files
+     */
+    public static List<Record> parseFileParallel(Path filePath, String delimiter) throws IOException, RecordParseException {
+        return parseFileParallel(filePath, delimiter, Runtime.getRuntime().availableProcessors(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Parses a set of records from an input file on several threads. The file is split into ranges on line boundaries, which are
+     * parsed concurrently on a dedicated {@link java.util.concurrent.ForkJoinPool} and joined back together, so the records are
+     * returned in the same order as {@link #parseFile(Path, String)} would return them. If any line fails to parse, the exception
+     * thrown is for the first invalid line in the file, with {@link RecordParseException#getLineNumber()} set to its line number.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @param parallelism - the number of threads to parse with, 1 or less parses on the calling thread
+     * @param sequentialThreshold - files smaller than this many bytes are parsed on the calling thread
+     * @return The list of records, in the same order as the file
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException - if unable to parse any line of the files
+     */
+    public static List<Record> parseFileParallel(Path filePath, String delimiter, int parallelism, long sequentialThreshold) throws IOException, RecordParseException {
+        return parseFileParallel(filePath, delimiter, parallelism, sequentialThreshold, null);
+    }
+
+    /**
+     * Same as {@link #parseFileParallel(Path, String, int, long)}, but looks up the name and color fields of each record in a
+     * {@link StringPool}, which is safe to share between the parsing threads.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @param parallelism - the number of threads to parse with, 1 or less parses on the calling thread
+     * @param sequentialThreshold - files smaller than this many bytes are parsed on the calling thread
+     * @param stringPool - the pool to de-duplicate field values with, or null to not pool them
+     * @return The list of records, in the same order as the file
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException - if unable to parse any line of the files
+     */
+    public static List<Record> parseFileParallel(Path filePath, String delimiter, int parallelism, long sequentialThreshold, StringPool stringPool)
+            throws IOException, RecordParseException {
+        validateFileInput(filePath, delimiter);
+        if (CompressedInput.detect(filePath) != CompressedInput.Format.NONE) {
+            // there's no way to start parsing part way through compressed data, the decompression itself is still parallel
+            // where the format allows it
+            return parseFileMapped(filePath, delimiter, stringPool);
+        }
+        return ParallelRecordParser.parse(filePath, delimiter, parallelism, sequentialThreshold, stringPool);
+    }
+
+    /**
+     * Parses a set of records from an input file straight into a columnar {@link RecordBatch}, never creating a {@link Record}
+     * object for them. Accepts exactly the same input as {@link #parseFile(Path, String)}.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @return A new batch holding the records, in the same order as the file
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException - if unable to parse any line of the files
+     */
+    public static RecordBatch parseBatch(Path filePath, String delimiter) throws IOException, RecordParseException {
+        RecordBatch batch = new RecordBatch();
+        parseBatch(filePath, delimiter, batch);
+        return batch;
+    }
+
+    /**
+     * Same as {@link #parseBatch(Path, String)}, but appends the records to an existing batch, so several files can share one
+     * batch (and one dictionary of names and colors).
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @param batch - the batch to add the records to
+     * @throws IOException if unable to read the file
+     * @throws RecordParseException - if unable to parse any line of the files, in which case any records before it have already
+     * been added to the batch
+     */
+    public static void parseBatch(Path filePath, String delimiter, RecordBatch batch) throws IOException, RecordParseException {
+        validateFileInput(filePath, delimiter);
+
+        try (MappedRecordReader reader = MappedRecordReader.open(filePath, delimiter, null)) {
+            boolean added;
+            do {
+                added = reader.nextInto(batch);
+            } while (added);
+        }
+    }
+
+    /**
+     * Lazily parses records from an input file, using the provided delimiter. Records are parsed (using the same memory mapped
+     * reader as {@link #parseFileMapped(Path, String)}) only as the stream is consumed, so the whole file never has to be held
+     * in memory and the first record is available right away.
+     *
+     * The returned stream holds the file open, so it should be closed, ideally with a try-with-resources block. Because streams
+     * can't throw checked exceptions, a line that fails to parse while consuming the stream throws an
+     * {@link UncheckedRecordParseException}, and a failure reading the file throws an {@link UncheckedIOException}.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @return A sequential, ordered stream of records
+     * @throws IOException if unable to open the file
+     * @throws RecordParseException - if the file path or delimiter is invalid
+     */
+    public static Stream<Record> stream(Path filePath, String delimiter) throws IOException, RecordParseException {
+        return stream(filePath, delimiter, null);
+    }
+
+    /**
+     * Same as {@link #stream(Path, String)}, but looks up the name and color fields of each record in a {@link StringPool}.
+     * @param filePath - the input file path
+     * @param delimiter - the delimiter to parse with (typically "," "|" or " ")
+     * @param stringPool - the pool to de-duplicate field values with, or null to not pool them
+     * @return A sequential, ordered stream of records
+     * @throws IOException if unable to open the file
+     * @throws RecordParseException - if the file path or delimiter is invalid
+     */
+    public static Stream<Record> stream(Path filePath, String delimiter, StringPool stringPool) throws IOException, RecordParseException {
+        validateFileInput(filePath, delimiter);
+
+        MappedRecordReader reader = MappedRecordReader.open(filePath, delimiter, stringPool);
+        Spliterator<Record> spliterator = new Spliterators.AbstractSpliterator<Record>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Record> action) {
+                Record record;
+                try {
+                    record = reader.next();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (RecordParseException e) {
+                    throw new UncheckedRecordParseException(e);
+                }
+                if (record == null) {
+                    return false;
+                }
+                action.accept(record);
+                return true;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     /**
      * Parse an individual line of the input file using the delimiter. Throws a record parse exception if unable to parse.
      * @param line the specific line to parse
@@ -53,6 +296,19 @@ public class RecordParser {
      * @throws RecordParseException - if unable to parse for some reason
      */
     public static Record parseLine(String line, String delimiter) throws RecordParseException {
+        return parseLine(line, delimiter, null);
+    }
+
+    /**
+     * Same as {@link #parseLine(String, String)}, but replaces the name and color fields with their canonical instance from a
+     * {@link StringPool}, so that a record kept around doesn't hold its own copy of values shared with other records.
+     * @param line the specific line to parse
+     * @param delimiter  the delimiter to use
+     * @param stringPool the pool to de-duplicate field values with, or null to not pool them
+     * @return an {@link Record} parsed from the string
+     * @throws RecordParseException - if unable to parse for some reason
+     */
+    public static Record parseLine(String line, String delimiter, StringPool stringPool) throws RecordParseException {
         // input validations
         if (line == null || line.isEmpty()) {
             throw new RecordParseException("Invalid record line \"" + line + "\" provided for parsing");
@@ -62,12 +318,7 @@ public class RecordParser {
             throw new RecordParseException("Invalid delimiter \"" + delimiter + "\" provided");
         }
 
-        // handle the annoying edge case because split treats pipe as a regex character
-        String splitDelimiter = delimiter;
-        if ("|".equals(splitDelimiter)) {
-            splitDelimiter = "\\|";
-        }
-        String[] split = line.split(splitDelimiter);
+        String[] split = splitLine(line, delimiter);
 
         // too many or too few fields, something is wrong
         if (split.length != 5) {
@@ -83,14 +334,42 @@ public class RecordParser {
         }
         
         String favoriteColor = split[3];
-        LocalDate dateOfBirth;
-        try {
-            dateOfBirth = LocalDate.parse(split[4], Record.DATE_TIME_FORMATTER);
-        } catch (DateTimeParseException e) {
-            throw new RecordParseException("Invalid date format " + split[4] + " while parsing record. Expected " + Record.DATE_FORMAT_STRING, e);
+        int dateOfBirth = RecordDates.parseEpochDay(split[4]);
+        if (dateOfBirth == RecordDates.INVALID) {
+            throw new RecordParseException("Invalid date format " + split[4] + " while parsing record. Expected " + Record.DATE_FORMAT_STRING);
+        }
+
+        if (stringPool != null) {
+            lastName = stringPool.intern(lastName);
+            firstName = stringPool.intern(firstName);
+            favoriteColor = stringPool.intern(favoriteColor);
         }
 
         return new Record(lastName, firstName, gender, favoriteColor, dateOfBirth);
     }
 
+    /**
+     * Splits a line into its fields. Trailing empty fields are dropped, same as {@link String#split(String)}.
+     */
+    static String[] splitLine(String line, String delimiter) {
+        // handle the annoying edge case because split treats pipe as a regex character
+        String splitDelimiter = delimiter;
+        if ("|".equals(splitDelimiter)) {
+            splitDelimiter = "\\|";
+        }
+        return line.split(splitDelimiter);
+    }
+
+    /**
+     * Validates the file path and delimiter shared by the file parsing methods, throwing if either is invalid.
+     */
+    private static void validateFileInput(Path filePath, String delimiter) throws RecordParseException {
+        if (filePath == null || !filePath.toFile().exists()) {
+            throw new RecordParseException("Invalid file path");
+        }
+        if (!VALID_DELIMITERS.contains(delimiter)) {
+            throw new RecordParseException("Invalid delimiter \"" + delimiter + "\" provided");
+        }
+    }
+
 }
@@ -0,0 +1,240 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes snapshots, a compact binary encoding of a {@link RecordBatch}. Loading a snapshot skips all of the text
+ * parsing and validation, so a dataset that is loaded repeatedly can be converted once (see {@link #convert(Path, String, Path)})
+ * and then loaded far faster than parsing the original file.
+ *
+ * The format (all numbers big endian) is:
+ * <pre>
+ *     magic            4 bytes, "RHSN"
+ *     version          2 bytes, currently 1
+ *     flags            2 bytes, currently always 0
+ *     record count     4 bytes
+ *     dictionary size  4 bytes
+ *     dictionary       for each distinct name or color, a 4 byte length followed by that many bytes of UTF-8
+ *     records          for each record, 17 bytes: gender ordinal (1 byte), date of birth epoch day, then the dictionary
+ *                      ids of the last name, first name and favorite color (4 bytes each)
+ *     checksum         4 bytes, the CRC32 of everything before it
+ * </pre>
+ */
+public final class RecordSnapshot {
+
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'R', 'H', 'S', 'N'};
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 17;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final Gender[] GENDERS = Gender.values();
+
+    private RecordSnapshot() {
+    }
+
+    /**
+     * Writes a batch of records to a snapshot file, replacing the file if it already exists.
+     * @param batch the records to write
+     * @param snapshotPath the file to write to
+     * @throws IOException if unable to write the file
+     */
+    public static void write(RecordBatch batch, Path snapshotPath) throws IOException {
+        CRC32 crc = new CRC32();
+        OutputStream file = new BufferedOutputStream(Files.newOutputStream(snapshotPath), 1024 * 1024);
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(file, crc))) {
+            out.write(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(batch.size());
+            out.writeInt(batch.getDictionarySize());
+
+            for (int id = 0; id < batch.getDictionarySize(); id++) {
+                byte[] value = batch.getDictionaryValue(id).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(value.length);
+                out.write(value);
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                out.writeByte(batch.getGender(i).ordinal());
+                out.writeInt(batch.getDateOfBirthEpochDay(i));
+                out.writeInt(batch.getLastNameId(i));
+                out.writeInt(batch.getFirstNameId(i));
+                out.writeInt(batch.getFavoriteColorId(i));
+            }
+
+            // the checksum itself isn't part of what it covers, so capture it before writing it
+            int checksum = (int) crc.getValue();
+            out.writeInt(checksum);
+        }
+    }
+
+    /**
+     * Reads a snapshot file into a new batch.
+     * @param snapshotPath the file to read
+     * @return the records in the snapshot, in the order they were written
+     * @throws IOException if unable to read the file, or it isn't a valid snapshot (including a checksum mismatch)
+     */
+    public static RecordBatch read(Path snapshotPath) throws IOException {
+        RecordBatch batch = new RecordBatch();
+        read(snapshotPath, batch);
+        return batch;
+    }
+
+    /**
+     * Reads a snapshot file, appending its records to an existing batch. The file is memory mapped and verified against its
+     * checksum before any records are added.
+     * @param snapshotPath the file to read
+     * @param batch the batch to add the records to
+     * @throws IOException if unable to read the file, or it isn't a valid snapshot (including a checksum mismatch)
+     */
+    public static void read(Path snapshotPath, RecordBatch batch) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + CHECKSUM_SIZE) {
+                throw new IOException("Invalid snapshot " + snapshotPath + ", file is too small");
+            }
+            verifyChecksum(channel, size, snapshotPath);
+
+            MappedInput in = new MappedInput(channel, size - CHECKSUM_SIZE);
+            for (byte b : MAGIC) {
+                if (in.get() != b) {
+                    throw new IOException("Invalid snapshot " + snapshotPath + ", not a record snapshot");
+                }
+            }
+            int version = in.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + snapshotPath);
+            }
+            in.getShort();
+            int recordCount = in.getInt();
+            int dictionarySize = in.getInt();
+
+            // map the snapshot's dictionary ids to ids in the batch, which differ if the batch already has records
+            int[] ids = new int[dictionarySize];
+            for (int id = 0; id < dictionarySize; id++) {
+                ids[id] = batch.dictionaryId(in.getString());
+            }
+
+            if (in.remaining() != (long) recordCount * RECORD_SIZE) {
+                throw new IOException("Invalid snapshot " + snapshotPath + ", expected " + recordCount + " records");
+            }
+            for (int i = 0; i < recordCount; i++) {
+                int gender = in.get();
+                int dateOfBirth = in.getInt();
+                int lastName = in.getInt();
+                int firstName = in.getInt();
+                int favoriteColor = in.getInt();
+                if (gender < 0 || gender >= GENDERS.length || !validId(lastName, ids) || !validId(firstName, ids) || !validId(favoriteColor, ids)) {
+                    throw new IOException("Invalid snapshot " + snapshotPath + ", record " + i + " is corrupt");
+                }
+                batch.add(ids[lastName], ids[firstName], GENDERS[gender], ids[favoriteColor], dateOfBirth);
+            }
+        }
+    }
+
+    /**
+     * Parses a text input file and writes it as a snapshot.
+     * @param inputPath the file to parse
+     * @param delimiter the delimiter to parse with (typically "," "|" or " ")
+     * @param snapshotPath the snapshot file to write
+     * @throws IOException if unable to read or write either file
+     * @throws RecordParseException if unable to parse any line of the input file
+     */
+    public static void convert(Path inputPath, String delimiter, Path snapshotPath) throws IOException, RecordParseException {
+        write(RecordParser.parseBatch(inputPath, delimiter), snapshotPath);
+    }
+
+    private static boolean validId(int id, int[] ids) {
+        return id >= 0 && id < ids.length;
+    }
+
+    private static void verifyChecksum(FileChannel channel, long size, Path snapshotPath) throws IOException {
+        CRC32 crc = new CRC32();
+        long contentSize = size - CHECKSUM_SIZE;
+        for (long position = 0; position < contentSize; position += WINDOW_SIZE) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, contentSize - position)));
+        }
+        int expected = channel.map(FileChannel.MapMode.READ_ONLY, contentSize, CHECKSUM_SIZE).getInt();
+        if ((int) crc.getValue() != expected) {
+            throw new IOException("Invalid snapshot " + snapshotPath + ", checksum mismatch");
+        }
+    }
+
+    /**
+     * Sequential reads over a memory mapped file, re-mapping a window at a time so files over 2GB can be read.
+     */
+    private static final class MappedInput {
+        private final FileChannel channel;
+        private final long end;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        MappedInput(FileChannel channel, long end) throws IOException {
+            this.channel = channel;
+            this.end = end;
+            map(0);
+        }
+
+        long remaining() {
+            return end - windowStart - window.position();
+        }
+
+        byte get() throws IOException {
+            ensure(1);
+            return window.get();
+        }
+
+        short getShort() throws IOException {
+            ensure(2);
+            return window.getShort();
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return window.getInt();
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            if (length < 0 || length > remaining()) {
+                throw new IOException("Invalid snapshot, dictionary entry of length " + length);
+            }
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                ensure(1);
+                int chunk = Math.min(length - read, window.remaining());
+                window.get(bytes, read, chunk);
+                read += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (window.remaining() < bytes) {
+                if (remaining() < bytes) {
+                    throw new IOException("Invalid snapshot, unexpected end of file");
+                }
+                map(windowStart + window.position());
+            }
+        }
+
+        private void map(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, end - start));
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Sorts specialized to the keys records are sorted by, which distribute records into buckets by their keys rather than
+ * comparing them with a {@link Comparator} chain: a partition on gender, a radix sort on the date of birth epoch day, and an
+ * MSD radix sort on last names. Every sort is stable, and gives exactly the same order as {@link List#sort(Comparator)} with
+ * the equivalent comparator.
+ *
+ * Last names can also be sorted by a {@link RecordCollation}, with the same MSD radix sort over the bytes of their collation
+ * keys instead of their chars.
+ */
+public final class RecordSorts {
+
+    // ranges smaller than this are sorted with a comparator, where bucketing costs more than it saves
+    private static final int STRING_SORT_CUTOFF = 32;
+
+    // a bucket for names that have ended, one for each latin-1 char, and one for every other char
+    private static final int END_BUCKET = 0;
+    private static final int OVERFLOW_BUCKET = 256;
+    private static final int STRING_BUCKETS = 257;
+
+    private static final int GENDERS = Gender.values().length;
+
+    private static final int RADIX_BITS = 16;
+    private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+
+    private static final Comparator<Record> LAST_NAME = Comparator.comparing(Record::getLastName);
+    private static final Comparator<Record> LAST_NAME_DESCENDING = LAST_NAME.reversed();
+
+    private RecordSorts() {
+    }
+
+    /**
+     * Sorts by date of birth, oldest first, with an LSD radix sort on the epoch day. Dates within about 180 years of each other
+     * take a single counting pass, anything wider takes two.
+     * @param records - the records to sort in place
+     */
+    public static void sortByBirthDate(List<Record> records) {
+        Record[] sorted = records.toArray(new Record[0]);
+        sortByBirthDate(sorted, 0, sorted.length);
+        setAll(records, sorted);
+    }
+
+    /**
+     * Sorts by last name with an MSD radix sort, ascending or descending. Records with the same last name keep their order
+     * either way.
+     * @param records - the records to sort in place
+     * @param descending - true to sort from Z to A
+     */
+    public static void sortByLastName(List<Record> records, boolean descending) {
+        Record[] sorted = records.toArray(new Record[0]);
+        sortByLastName(sorted, 0, sorted.length, descending, new Record[sorted.length]);
+        setAll(records, sorted);
+    }
+
+    /**
+     * Sorts by last name in the order of a collation, with an MSD radix sort on the collation keys, ascending or descending.
+     * Records with names the collation treats as equal keep their order either way.
+     * @param records - the records to sort in place
+     * @param descending - true to sort from Z to A
+     * @param collation - the order of the names
+     */
+    public static void sortByLastName(List<Record> records, boolean descending, RecordCollation collation) {
+        Record[] sorted = records.toArray(new Record[0]);
+        Comparator<Record> order = descending ? collation.lastNameOrder().reversed() : collation.lastNameOrder();
+        sortByLastNameKey(sorted, 0, sorted.length, 0, descending, collation, order, new Record[sorted.length]);
+        setAll(records, sorted);
+    }
+
+    /**
+     * Sorts by gender with a partition into a bucket per gender, then sorts each bucket by last name ascending.
+     * @param records - the records to sort in place
+     * @param genderDescending - true to put the genders in the reverse of their declared order, so female first
+     */
+    public static void sortByGenderThenLastName(List<Record> records, boolean genderDescending) {
+        sortByGenderThenLastName(records, genderDescending, null);
+    }
+
+    /**
+     * Sorts by gender with a partition into a bucket per gender, then sorts each bucket by last name ascending in the order of
+     * a collation.
+     * @param records - the records to sort in place
+     * @param genderDescending - true to put the genders in the reverse of their declared order, so female first
+     * @param collation - the order of the names, or null to compare their chars
+     */
+    public static void sortByGenderThenLastName(List<Record> records, boolean genderDescending, RecordCollation collation) {
+        Record[] unsorted = records.toArray(new Record[0]);
+        Record[] sorted = new Record[unsorted.length];
+        int[] starts = new int[GENDERS + 1];
+        for (Record record : unsorted) {
+            starts[bucket(record.getGender(), genderDescending) + 1]++;
+        }
+        for (int i = 0; i < GENDERS; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] next = Arrays.copyOf(starts, GENDERS);
+        for (Record record : unsorted) {
+            sorted[next[bucket(record.getGender(), genderDescending)]++] = record;
+        }
+
+        // the unsorted array is free to use as scratch space now
+        for (int i = 0; i < GENDERS; i++) {
+            if (collation == null) {
+                sortByLastName(sorted, starts[i], starts[i + 1], false, unsorted);
+            } else {
+                sortByLastNameKey(sorted, starts[i], starts[i + 1], 0, false, collation, collation.lastNameOrder(), unsorted);
+            }
+        }
+        setAll(records, sorted);
+    }
+
+    private static int bucket(Gender gender, boolean descending) {
+        return descending ? GENDERS - 1 - gender.ordinal() : gender.ordinal();
+    }
+
+    private static void sortByBirthDate(Record[] records, int from, int to) {
+        int length = to - from;
+        if (length < 2) {
+            return;
+        }
+        int[] keys = new int[length];
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < length; i++) {
+            int key = records[from + i].dateOfBirthEpochDay();
+            keys[i] = key;
+            min = Math.min(min, key);
+            max = Math.max(max, key);
+        }
+        // offsetting by the smallest key makes every key non-negative, and for most inputs small enough for a single pass
+        for (int i = 0; i < length; i++) {
+            keys[i] -= min;
+        }
+        long range = (long) max - min;
+        int passes = range <= RADIX_MASK ? 1 : 2;
+
+        Record[] sourceRecords = Arrays.copyOfRange(records, from, to);
+        Record[] targetRecords = new Record[length];
+        int[] sourceKeys = keys;
+        int[] targetKeys = new int[length];
+        int[] counts = new int[(1 << RADIX_BITS) + 1];
+        for (int pass = 0; pass < passes; pass++) {
+            int shift = pass * RADIX_BITS;
+            Arrays.fill(counts, 0);
+            for (int key : sourceKeys) {
+                counts[((key >>> shift) & RADIX_MASK) + 1]++;
+            }
+            for (int i = 0; i < RADIX_MASK + 1; i++) {
+                counts[i + 1] += counts[i];
+            }
+            for (int i = 0; i < length; i++) {
+                int index = counts[(sourceKeys[i] >>> shift) & RADIX_MASK]++;
+                targetRecords[index] = sourceRecords[i];
+                targetKeys[index] = sourceKeys[i];
+            }
+            Record[] swapRecords = sourceRecords;
+            sourceRecords = targetRecords;
+            targetRecords = swapRecords;
+            int[] swapKeys = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = swapKeys;
+        }
+        System.arraycopy(sourceRecords, 0, records, from, length);
+    }
+
+    private static void sortByLastName(Record[] records, int from, int to, boolean descending, Record[] scratch) {
+        sortByLastName(records, from, to, 0, descending, scratch);
+    }
+
+    /**
+     * Sorts a range of records that all share the first depth chars of their last names, by the char at depth.
+     */
+    private static void sortByLastName(Record[] records, int from, int to, int depth, boolean descending, Record[] scratch) {
+        if (to - from < STRING_SORT_CUTOFF) {
+            // Arrays.sort is stable for objects, and comparing whole names is the same as comparing from depth on
+            Arrays.sort(records, from, to, descending ? LAST_NAME_DESCENDING : LAST_NAME);
+            return;
+        }
+
+        int[] starts = new int[STRING_BUCKETS + 1];
+        for (int i = from; i < to; i++) {
+            starts[bucket(records[i].getLastName(), depth, descending) + 1]++;
+        }
+        for (int i = 0; i < STRING_BUCKETS; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] next = Arrays.copyOf(starts, STRING_BUCKETS);
+        for (int i = from; i < to; i++) {
+            scratch[next[bucket(records[i].getLastName(), depth, descending)]++] = records[i];
+        }
+        System.arraycopy(scratch, 0, records, from, to - from);
+
+        for (int bucket = 0; bucket < STRING_BUCKETS; bucket++) {
+            int bucketFrom = from + starts[bucket];
+            int bucketTo = from + starts[bucket + 1];
+            int kind = descending ? STRING_BUCKETS - 1 - bucket : bucket;
+            if (bucketTo - bucketFrom < 2 || kind == END_BUCKET) {
+                // names that have ended are all equal, so they stay in their original order
+                continue;
+            }
+            if (kind == OVERFLOW_BUCKET) {
+                // a mix of chars past latin-1, rare enough to leave to the comparator
+                Arrays.sort(records, bucketFrom, bucketTo, descending ? LAST_NAME_DESCENDING : LAST_NAME);
+            } else {
+                sortByLastName(records, bucketFrom, bucketTo, depth + 1, descending, scratch);
+            }
+        }
+    }
+
+    /**
+     * Sorts a range of records that all share the first depth bytes of their last name keys, by the byte at depth. Keys are
+     * only created once per record, when first bucketed, and are cached on the record after that.
+     */
+    private static void sortByLastNameKey(Record[] records, int from, int to, int depth, boolean descending, RecordCollation collation,
+                                          Comparator<Record> order, Record[] scratch) {
+        if (to - from < STRING_SORT_CUTOFF) {
+            Arrays.sort(records, from, to, order);
+            return;
+        }
+
+        int[] starts = new int[STRING_BUCKETS + 1];
+        for (int i = from; i < to; i++) {
+            starts[bucket(collation.lastNameKey(records[i]), depth, descending) + 1]++;
+        }
+        for (int i = 0; i < STRING_BUCKETS; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] next = Arrays.copyOf(starts, STRING_BUCKETS);
+        for (int i = from; i < to; i++) {
+            scratch[next[bucket(collation.lastNameKey(records[i]), depth, descending)]++] = records[i];
+        }
+        System.arraycopy(scratch, 0, records, from, to - from);
+
+        for (int bucket = 0; bucket < STRING_BUCKETS; bucket++) {
+            int bucketFrom = from + starts[bucket];
+            int bucketTo = from + starts[bucket + 1];
+            int kind = descending ? STRING_BUCKETS - 1 - bucket : bucket;
+            // keys that have ended are all equal, so they stay in their original order
+            if (bucketTo - bucketFrom >= 2 && kind != END_BUCKET) {
+                sortByLastNameKey(records, bucketFrom, bucketTo, depth + 1, descending, collation, order, scratch);
+            }
+        }
+    }
+
+    /**
+     * @return the bucket of a key, one for a key that has ended, then one for each byte value
+     */
+    private static int bucket(byte[] key, int depth, boolean descending) {
+        int bucket = depth >= key.length ? END_BUCKET : (key[depth] & 0xff) + 1;
+        return descending ? STRING_BUCKETS - 1 - bucket : bucket;
+    }
+
+    private static int bucket(String name, int depth, boolean descending) {
+        int bucket;
+        if (depth >= name.length()) {
+            bucket = END_BUCKET;
+        } else {
+            char c = name.charAt(depth);
+            bucket = c < OVERFLOW_BUCKET - 1 ? c + 1 : OVERFLOW_BUCKET;
+        }
+        return descending ? STRING_BUCKETS - 1 - bucket : bucket;
+    }
+
+    private static void setAll(List<Record> records, Record[] sorted) {
+        ListIterator<Record> iterator = records.listIterator();
+        for (Record record : sorted) {
+            iterator.next();
+            iterator.set(record);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes records as delimited lines, in the same field order and format as {@link Record#toString()} (and so in a format
+ * {@link RecordParser} can read back). Records are encoded straight into a large reusable byte buffer, which is only written
+ * out once full, rather than building a string for each record and writing it on its own: gender names are cached as bytes,
+ * dates are formatted by hand with {@link RecordDates#formatEpochDay(int, byte[], int)}, and ascii strings are copied a char
+ * at a time without going through an encoder.
+ *
+ * Writers aren't thread safe. Nothing reaches the underlying stream until the buffer fills or the writer is flushed.
+ */
+public final class RecordWriter implements Closeable, Flushable {
+
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final byte[][] GENDER_NAMES = new byte[Gender.values().length][];
+    static {
+        for (Gender gender : Gender.values()) {
+            GENDER_NAMES[gender.ordinal()] = gender.getGender().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final OutputStream out;
+    private final byte delimiter;
+    private final byte[] lineSeparator;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    /**
+     * @param out - the stream to write to, which is written to a whole buffer at a time
+     * @param delimiter - the delimiter to write between fields, one of {@link RecordParser#VALID_DELIMITERS}
+     */
+    public RecordWriter(OutputStream out, String delimiter) {
+        if (!RecordParser.VALID_DELIMITERS.contains(delimiter)) {
+            throw new IllegalArgumentException("Invalid delimiter \"" + delimiter + "\" provided");
+        }
+        this.out = out;
+        this.delimiter = (byte) delimiter.charAt(0);
+        this.lineSeparator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Opens a writer to a file, replacing anything already in it.
+     * @param filePath - the output file path
+     * @param delimiter - the delimiter to write between fields, one of {@link RecordParser#VALID_DELIMITERS}
+     * @throws IOException if unable to open the file
+     */
+    public static RecordWriter open(Path filePath, String delimiter) throws IOException {
+        FileChannel channel = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        return new RecordWriter(Channels.newOutputStream(channel), delimiter);
+    }
+
+    /**
+     * Adds a record to the buffer, writing the buffer out first if there isn't room for it.
+     * @throws IOException if unable to write the buffer
+     */
+    public void write(Record record) throws IOException {
+        String lastName = record.getLastName();
+        String firstName = record.getFirstName();
+        String favoriteColor = record.getFavoriteColor();
+        byte[] gender = GENDER_NAMES[record.getGender().ordinal()];
+        // worst case of three bytes for every char, so nothing below has to check for room
+        long maxLength = 3L * (lastName.length() + firstName.length() + favoriteColor.length()) + gender.length + 4
+                + RecordDates.MAX_FORMATTED_LENGTH + lineSeparator.length;
+        reserve(maxLength);
+
+        byte[] buffer = this.buffer;
+        int position = writeString(lastName, buffer, this.position);
+        buffer[position++] = delimiter;
+        position = writeString(firstName, buffer, position);
+        buffer[position++] = delimiter;
+        System.arraycopy(gender, 0, buffer, position, gender.length);
+        position += gender.length;
+        buffer[position++] = delimiter;
+        position = writeString(favoriteColor, buffer, position);
+        buffer[position++] = delimiter;
+        position = RecordDates.formatEpochDay(record.dateOfBirthEpochDay(), buffer, position);
+        System.arraycopy(lineSeparator, 0, buffer, position, lineSeparator.length);
+        this.position = position + lineSeparator.length;
+    }
+
+    /**
+     * Writes out anything buffered, and flushes the underlying stream.
+     * @throws IOException if unable to write the buffer
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBuffer();
+        out.flush();
+    }
+
+    /**
+     * Writes out anything buffered, and closes the underlying stream.
+     * @throws IOException if unable to write the buffer
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBuffer();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Makes sure there is room in the buffer for a number of bytes, writing it out or growing it if not.
+     */
+    private void reserve(long length) throws IOException {
+        if (position + length <= buffer.length) {
+            return;
+        }
+        writeBuffer();
+        if (length > buffer.length) {
+            // a single record larger than the buffer, which is only possible with enormous names
+            buffer = Arrays.copyOf(buffer, Math.toIntExact(length));
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Copies a string into the buffer as UTF-8, a char at a time while it's ascii, and through the encoder from the first
+     * char that isn't.
+     * @return the index after the last byte written
+     */
+    private static int writeString(String value, byte[] buffer, int position) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                byte[] rest = value.substring(i).getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(rest, 0, buffer, position, rest.length);
+                return position + rest.length;
+            }
+            buffer[position++] = (byte) c;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,112 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Assigns dense int ids to distinct strings, in the order they are first seen. Backs the name and color columns of a
+ * {@link RecordBatch}. Like {@link StringPool}, values can be looked up from a range of ascii bytes without creating a String
+ * for values already in the dictionary, but unlike the pool the dictionary grows to hold every value and isn't thread safe.
+ */
+final class StringDictionary {
+
+    private String[] values = new String[16];
+    private int[] hashes = new int[16];
+    private int size;
+
+    // open addressing table of id + 1, 0 meaning an empty slot
+    private int[] table = new int[32];
+
+    int size() {
+        return size;
+    }
+
+    String valueOf(int id) {
+        return values[id];
+    }
+
+    /**
+     * @return the id of the value, adding it to the dictionary if not already present
+     */
+    int idOf(String value) {
+        int hash = value.hashCode();
+        int index = slot(hash);
+        while (table[index] != 0) {
+            int id = table[index] - 1;
+            if (hashes[id] == hash && values[id].equals(value)) {
+                return id;
+            }
+            index = (index + 1) & (table.length - 1);
+        }
+        return add(value, hash, index);
+    }
+
+    /**
+     * @return the id of the value held in a range of ascii bytes, adding it to the dictionary if not already present
+     */
+    int idOf(ByteBuffer bytes, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + (bytes.get(i) & 0xff);
+        }
+        int index = slot(hash);
+        while (table[index] != 0) {
+            int id = table[index] - 1;
+            if (hashes[id] == hash && matches(values[id], bytes, start, end)) {
+                return id;
+            }
+            index = (index + 1) & (table.length - 1);
+        }
+
+        byte[] copy = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            copy[i - start] = bytes.get(i);
+        }
+        return add(new String(copy, StandardCharsets.ISO_8859_1), hash, index);
+    }
+
+    private int add(String value, int hash, int index) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        values[id] = value;
+        hashes[id] = hash;
+        table[index] = id + 1;
+
+        // keep the table at most half full
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        for (int id = 0; id < size; id++) {
+            int index = slot(hashes[id]);
+            while (table[index] != 0) {
+                index = (index + 1) & (table.length - 1);
+            }
+            table[index] = id + 1;
+        }
+    }
+
+    private int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & (table.length - 1);
+    }
+
+    private static boolean matches(String value, ByteBuffer bytes, int start, int end) {
+        if (value.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i - start) != (bytes.get(i) & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
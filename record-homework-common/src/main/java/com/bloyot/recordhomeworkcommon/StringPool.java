@@ -0,0 +1,192 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread safe pool of canonical strings, used to de-duplicate the record fields that repeat a lot (names and
+ * colors) so that every record holding the same value shares one String instead of each holding its own copy.
+ *
+ * Values can be looked up straight from a range of ascii bytes, in which case a String is only created the first time a value
+ * is seen. The pool is an open addressing hash table that never grows or evicts: once it holds its capacity (or a value can't
+ * find a free slot within a few probes) new values are simply returned without being pooled, so the memory it holds stays
+ * bounded no matter how many distinct values are parsed. Values longer than the max length are never pooled, since long values
+ * are unlikely to repeat.
+ */
+public final class StringPool {
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    private static final int MAX_PROBES = 8;
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+    private final int capacity;
+    private final int maxLength;
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StringPool() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param capacity the maximum number of distinct values to pool
+     * @param maxLength values longer than this are never pooled
+     */
+    public StringPool(int capacity, int maxLength) {
+        if (capacity < 1 || capacity > (1 << 29)) {
+            throw new IllegalArgumentException("Invalid string pool capacity " + capacity);
+        }
+        // keep the table at most half full so probe sequences stay short
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.table = new AtomicReferenceArray<>(tableSize);
+        this.mask = tableSize - 1;
+        this.capacity = capacity;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns the canonical instance of a value.
+     * @param value the value to look up
+     * @return the pooled instance equal to the value, or the value itself if it isn't (and can't be) pooled
+     */
+    public String intern(String value) {
+        if (value == null || value.length() > maxLength) {
+            return value;
+        }
+
+        int hash = value.hashCode();
+        for (int probe = 0, index = spread(hash) & mask; probe < MAX_PROBES; probe++, index = (index + 1) & mask) {
+            String existing = table.get(index);
+            if (existing == null) {
+                if (size.get() >= capacity) {
+                    break;
+                }
+                if (table.compareAndSet(index, null, value)) {
+                    size.incrementAndGet();
+                    misses.increment();
+                    return value;
+                }
+                // lost a race for this slot, check what the other thread put in it
+                existing = table.get(index);
+            }
+            if (existing.hashCode() == hash && existing.equals(value)) {
+                hits.increment();
+                return existing;
+            }
+        }
+        misses.increment();
+        return value;
+    }
+
+    /**
+     * Returns the canonical instance of a value held in a range of ascii (or latin 1) bytes, only creating a String if the
+     * value isn't already pooled.
+     * @param bytes the buffer holding the value, read with absolute gets so the buffer position is untouched
+     * @param start the index of the first byte of the value
+     * @param end the index after the last byte of the value
+     * @return the pooled instance equal to the value, or a new String if it isn't (and can't be) pooled
+     */
+    public String intern(ByteBuffer bytes, int start, int end) {
+        int length = end - start;
+        if (length > maxLength) {
+            return decode(bytes, start, length);
+        }
+
+        // same hash as String#hashCode would produce for the decoded value, so both lookups find the same slots
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + (bytes.get(i) & 0xff);
+        }
+
+        String value = null;
+        for (int probe = 0, index = spread(hash) & mask; probe < MAX_PROBES; probe++, index = (index + 1) & mask) {
+            String existing = table.get(index);
+            if (existing == null) {
+                if (size.get() >= capacity) {
+                    break;
+                }
+                if (value == null) {
+                    value = decode(bytes, start, length);
+                }
+                if (table.compareAndSet(index, null, value)) {
+                    size.incrementAndGet();
+                    misses.increment();
+                    return value;
+                }
+                existing = table.get(index);
+            }
+            if (existing.hashCode() == hash && matches(existing, bytes, start, length)) {
+                hits.increment();
+                return existing;
+            }
+        }
+        misses.increment();
+        return value != null ? value : decode(bytes, start, length);
+    }
+
+    /**
+     * @return the number of lookups that found an already pooled value
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that had to create (or return) a value that wasn't pooled yet
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the fraction of lookups that found an already pooled value, or 0 if there have been no lookups
+     */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return the number of distinct values pooled
+     */
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public String toString() {
+        return "StringPool{size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + ", hitRate=" + getHitRate() + "}";
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String value, ByteBuffer bytes, int start, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != (bytes.get(start + i) & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(ByteBuffer bytes, int start, int length) {
+        byte[] copy = new byte[length];
+        for (int i = 0; i < length; i++) {
+            copy[i] = bytes.get(start + i);
+        }
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,84 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the first k elements in sorted order of everything added, without holding on to the rest. The elements are kept in a
+ * heap with the last of them on top, so each element added is either dropped straight away or swaps out the current last
+ * one, which takes O(n log k) time and O(k) memory for n elements.
+ *
+ * The result is stable, same as {@link List#sort(Comparator)}: elements that compare equal keep the order they were added
+ * in, and when one of them doesn't fit it's always the one added last that is dropped.
+ * @param <T> the type of element
+ */
+public final class TopK<T> {
+
+    // never preallocate more than this, a large k doesn't mean that many elements will be added
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private final int k;
+    private final PriorityQueue<Entry<T>> heap;
+    private long added;
+
+    /**
+     * @param k how many elements to keep
+     * @param comparator the order to keep the first elements of
+     */
+    public TopK(int k, Comparator<? super T> comparator) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Invalid k " + k);
+        }
+        this.k = k;
+        Comparator<Entry<T>> byElement = (a, b) -> comparator.compare(a.element, b.element);
+        // reversed, so the last element kept is at the top of the heap
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(k, MAX_INITIAL_CAPACITY)),
+                byElement.thenComparingLong(entry -> entry.sequence).reversed());
+    }
+
+    /**
+     * Adds an element, keeping it only if it is one of the first k so far.
+     */
+    public void add(T element) {
+        Entry<T> entry = new Entry<>(element, added++);
+        if (heap.size() < k) {
+            heap.add(entry);
+        } else if (k > 0 && heap.comparator().compare(entry, heap.peek()) > 0) {
+            // comes before the current last element, which makes way for it
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    /**
+     * @return the elements kept, at most k of them, in sorted order
+     */
+    public List<T> toSortedList() {
+        List<Entry<T>> entries = new ArrayList<>(heap);
+        entries.sort(heap.comparator().reversed());
+        List<T> sorted = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries) {
+            sorted.add(entry.element);
+        }
+        return sorted;
+    }
+
+    /**
+     * @return how many elements are kept, at most k
+     */
+    public int size() {
+        return heap.size();
+    }
+
+    private static final class Entry<T> {
+        private final T element;
+        private final long sequence;
+
+        Entry(T element, long sequence) {
+            this.element = element;
+            this.sequence = sequence;
+        }
+    }
+}
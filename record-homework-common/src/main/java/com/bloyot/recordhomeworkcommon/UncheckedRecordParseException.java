@@ -0,0 +1,20 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.util.Objects;
+
+/**
+ * Wraps a {@link RecordParseException} with an unchecked exception, for places where a checked exception can't be thrown,
+ * such as while consuming the {@link java.util.stream.Stream} returned by {@link RecordParser#stream(java.nio.file.Path, String)}.
+ * Works the same way as {@link java.io.UncheckedIOException}.
+ */
+public class UncheckedRecordParseException extends RuntimeException {
+
+    public UncheckedRecordParseException(RecordParseException cause) {
+        super(Objects.requireNonNull(cause).getMessage(), cause);
+    }
+
+    @Override
+    public synchronized RecordParseException getCause() {
+        return (RecordParseException) super.getCause();
+    }
+}
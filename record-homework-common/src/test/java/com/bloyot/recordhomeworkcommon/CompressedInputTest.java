@@ -0,0 +1,195 @@
+package com.bloyot.recordhomeworkcommon;
+
+import io.airlift.compress.zstd.ZstdOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompressedInputTest {
+
+    @Test
+    public void detect(@TempDir Path tempDir) throws IOException {
+        byte[] content = records(10);
+        assertEquals(CompressedInput.Format.NONE, CompressedInput.detect(write(tempDir.resolve("plain.psv"), content)));
+        assertEquals(CompressedInput.Format.NONE, CompressedInput.detect(write(tempDir.resolve("empty.psv"), new byte[0])));
+        assertEquals(CompressedInput.Format.GZIP, CompressedInput.detect(write(tempDir.resolve("records.psv"), gzip(content))));
+        assertEquals(CompressedInput.Format.ZSTD, CompressedInput.detect(write(tempDir.resolve("records.zst"), zstd(content))));
+    }
+
+    @Test
+    public void readGzip(@TempDir Path tempDir) throws IOException {
+        byte[] content = records(50_000);
+        assertArrayEquals(content, readAll(write(tempDir.resolve("records.psv.gz"), gzip(content)), 4));
+    }
+
+    @Test
+    public void readMultiMemberGzip(@TempDir Path tempDir) throws IOException {
+        byte[] content = records(50_000);
+        ByteArrayOutputStream members = new ByteArrayOutputStream();
+        members.write(gzip(Arrays.copyOfRange(content, 0, 1000)));
+        members.write(gzip(Arrays.copyOfRange(content, 1000, content.length)));
+        assertArrayEquals(content, readAll(write(tempDir.resolve("records.psv.gz"), members.toByteArray()), 4));
+    }
+
+    @Test
+    public void readBgzf(@TempDir Path tempDir) throws IOException {
+        byte[] content = records(100_000);
+        Path path = write(tempDir.resolve("records.psv.gz"), bgzf(content));
+        assertArrayEquals(content, readAll(path, 4));
+        assertArrayEquals(content, readAll(path, 1));
+    }
+
+    @Test
+    public void readZstd(@TempDir Path tempDir) throws IOException {
+        byte[] content = records(50_000);
+        assertArrayEquals(content, readAll(write(tempDir.resolve("records.psv.zst"), zstd(content)), 4));
+    }
+
+    @Test
+    public void readCorruptGzip(@TempDir Path tempDir) throws IOException {
+        byte[] compressed = gzip(records(1000));
+        compressed[compressed.length / 2] ^= 0x55;
+        Path path = write(tempDir.resolve("records.psv.gz"), compressed);
+        assertThrows(IOException.class, () -> readAll(path, 4));
+    }
+
+    @Test
+    public void parseCompressedMatchesPlain(@TempDir Path tempDir) throws IOException, RecordParseException {
+        byte[] content = records(20_000);
+        Path plain = write(tempDir.resolve("records.psv"), content);
+        List<Record> expected = RecordParser.parseFile(plain, "|");
+
+        for (Path path : new Path[]{write(tempDir.resolve("records.gz"), gzip(content)), write(tempDir.resolve("records.bgz"), bgzf(content)),
+                write(tempDir.resolve("records.zst"), zstd(content))}) {
+            assertEquals(expected, RecordParser.parseFile(path, "|"));
+            assertEquals(expected, RecordParser.parseFileMapped(path, "|", new StringPool()));
+            assertEquals(expected, RecordParser.parseFileParallel(path, "|", 4, 0));
+            assertEquals(expected, RecordParser.parseFileLenient(path, "|").getRecords());
+            assertEquals(expected, RecordParser.parseBatch(path, "|").asRecords());
+            try (Stream<Record> stream = RecordParser.stream(path, "|")) {
+                assertEquals(expected, stream.collect(Collectors.toList()));
+            }
+
+            // small windows, which have to slide and grow over the decompressed data
+            for (int windowSize : new int[]{7, 100, 4096}) {
+                try (MappedRecordReader reader = MappedRecordReader.open(path, "|", null, windowSize)) {
+                    for (Record record : expected) {
+                        assertEquals(record, reader.next());
+                    }
+                    assertEquals(null, reader.next());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parseCompressedInvalidLine(@TempDir Path tempDir) throws IOException {
+        String content = "Ada|Weaver|female|red|12/15/2037\nKobe|male|green|10/11\n";
+        Path path = write(tempDir.resolve("records.psv.gz"), gzip(content.getBytes(StandardCharsets.UTF_8)));
+
+        RecordParseException e = assertThrows(RecordParseException.class, () -> RecordParser.parseFileMapped(path, "|"));
+        assertEquals(2, e.getLineNumber());
+        e = assertThrows(RecordParseException.class, () -> RecordParser.parseFile(path, "|"));
+        assertEquals(2, e.getLineNumber());
+    }
+
+    @Test
+    public void incrementalRejectsCompressed(@TempDir Path tempDir) throws IOException, RecordParseException {
+        IncrementalRecordReader reader = new IncrementalRecordReader(write(tempDir.resolve("records.psv.gz"), gzip(records(10))), "|");
+        assertThrows(IOException.class, reader::poll);
+    }
+
+    private static byte[] records(int count) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            content.append("Last").append(i % 1000).append("|First").append(i).append(i % 2 == 0 ? "|female|" : "|male|")
+                    .append("blue|01/0").append(i % 9 + 1).append("/19").append(i % 90 + 10).append("\n");
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(Path path, int parallelism) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = CompressedInput.open(path, parallelism)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static Path write(Path path, byte[] content) throws IOException {
+        Files.write(path, content);
+        return path;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] zstd(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream zstd = new ZstdOutputStream(out)) {
+            zstd.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Compresses the same way bgzip does: gzip members of at most 64KB of input, each with a "BC" extra field holding the size of
+     * the member, followed by an empty member marking the end of the file.
+     */
+    private static byte[] bgzf(byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int blockSize = 60_000;
+        for (int start = 0; start < content.length; start += blockSize) {
+            bgzfMember(out, Arrays.copyOfRange(content, start, Math.min(content.length, start + blockSize)));
+        }
+        bgzfMember(out, new byte[0]);
+        return out.toByteArray();
+    }
+
+    private static void bgzfMember(ByteArrayOutputStream out, byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] compressed = new byte[data.length + 1024];
+        int compressedLength = deflater.deflate(compressed);
+        deflater.end();
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer member = ByteBuffer.allocate(18 + compressedLength + 8).order(ByteOrder.LITTLE_ENDIAN);
+        member.put((byte) 0x1f).put((byte) 0x8b).put((byte) 8).put((byte) 4).putInt(0).put((byte) 0).put((byte) 0xff);
+        member.putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2).putShort((short) (member.capacity() - 1));
+        member.put(compressed, 0, compressedLength);
+        member.putInt((int) crc.getValue()).putInt(data.length);
+        out.write(member.array(), 0, member.capacity());
+    }
+}
@@ -0,0 +1,132 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExternalRecordSorterTest {
+
+    // only compares part of each record, so there are lots of ties to check stability with
+    private static final Comparator<Record> BY_GENDER_AND_LAST_NAME = Comparator.comparing(Record::getGender)
+            .thenComparing(Record::getLastName);
+
+    @Test
+    public void sortInMemory(@TempDir Path tempDir) throws IOException {
+        List<Record> records = records(1000);
+        List<Record> sorted = new ArrayList<>();
+        try (ExternalRecordSorter sorter = new ExternalRecordSorter(BY_GENDER_AND_LAST_NAME, Long.MAX_VALUE, tempDir)) {
+            for (Record record : records) {
+                sorter.add(record);
+            }
+            sorter.forEachSorted(sorted::add);
+            assertEquals(0, sorter.getRunCount());
+        }
+        assertEquals(stableSort(records), sorted);
+        assertEmpty(tempDir);
+    }
+
+    @Test
+    public void sortWithRuns(@TempDir Path tempDir) throws IOException {
+        List<Record> records = records(5000);
+        List<Record> sorted = new ArrayList<>();
+        try (ExternalRecordSorter sorter = new ExternalRecordSorter(BY_GENDER_AND_LAST_NAME, 20_000, tempDir)) {
+            for (Record record : records) {
+                sorter.add(record);
+            }
+            assertTrue(sorter.getRunCount() > 1 && sorter.getRunCount() < ExternalRecordSorter.MAX_MERGE_WIDTH);
+            sorter.forEachSorted(sorted::add);
+        }
+        assertEquals(stableSort(records), sorted);
+        assertEmpty(tempDir);
+    }
+
+    @Test
+    public void sortWithIntermediateMerges(@TempDir Path tempDir) throws IOException {
+        List<Record> records = records(5000);
+        List<Record> sorted = new ArrayList<>();
+        try (ExternalRecordSorter sorter = new ExternalRecordSorter(BY_GENDER_AND_LAST_NAME, 1000, tempDir)) {
+            for (Record record : records) {
+                sorter.add(record);
+            }
+            assertTrue(sorter.getRunCount() > ExternalRecordSorter.MAX_MERGE_WIDTH * 2);
+            sorter.forEachSorted(sorted::add);
+            assertTrue(sorter.getRunCount() < ExternalRecordSorter.MAX_MERGE_WIDTH);
+        }
+        assertEquals(stableSort(records), sorted);
+        assertEmpty(tempDir);
+    }
+
+    @Test
+    public void sortOnlyOnce() throws IOException {
+        try (ExternalRecordSorter sorter = new ExternalRecordSorter(BY_GENDER_AND_LAST_NAME, 1000, null)) {
+            sorter.add(records(1).get(0));
+            sorter.forEachSorted(record -> { });
+            assertThrows(IllegalStateException.class, () -> sorter.forEachSorted(record -> { }));
+            assertThrows(IllegalStateException.class, () -> sorter.add(records(1).get(0)));
+        }
+    }
+
+    @Test
+    public void mergeSortedSorters(@TempDir Path tempDir) throws IOException {
+        // sorting pieces of a list on their own then merging them gives the same order as sorting the whole list
+        List<Record> records = records(3000);
+        List<Record> merged = new ArrayList<>();
+        try (ExternalRecordSorter first = new ExternalRecordSorter(BY_GENDER_AND_LAST_NAME, 10_000, tempDir);
+             ExternalRecordSorter second = new ExternalRecordSorter(BY_GENDER_AND_LAST_NAME, Long.MAX_VALUE, tempDir)) {
+            for (int i = 0; i < records.size(); i++) {
+                (i < 1000 ? first : second).add(records.get(i));
+            }
+            new MergeIterator<>(Arrays.asList(first.sortedIterator(), second.sortedIterator()), BY_GENDER_AND_LAST_NAME)
+                    .forEachRemaining(merged::add);
+        }
+        assertEquals(stableSort(records), merged);
+        assertEmpty(tempDir);
+    }
+
+    @Test
+    public void mergeIterator() {
+        List<Iterator<Integer>> sources = Arrays.asList(Arrays.asList(1, 4, 7).iterator(), Collections.<Integer>emptyIterator(),
+                Arrays.asList(2, 4, 9).iterator(), Arrays.asList(3).iterator());
+        List<Integer> merged = new ArrayList<>();
+        MergeIterator<Integer> iterator = new MergeIterator<>(sources, Comparator.naturalOrder());
+        iterator.forEachRemaining(merged::add);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 4, 7, 9), merged);
+        assertFalse(iterator.hasNext());
+    }
+
+    private static List<Record> records(int count) {
+        return new RandomRecords(42)
+                // non-ASCII names to check the run encoding round trips them
+                .lastName((random, i) -> random.nextInt(10) == 0 ? "M\u00fcller" + random.nextInt(5) : "Last" + random.nextInt(50))
+                .gender(RandomRecords.oneOf(Gender.values()))
+                .epochDays(-10_000, 40_000)
+                .generate(count);
+    }
+
+    private static List<Record> stableSort(List<Record> records) {
+        List<Record> sorted = new ArrayList<>(records);
+        sorted.sort(BY_GENDER_AND_LAST_NAME);
+        return sorted;
+    }
+
+    private static void assertEmpty(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IncrementalRecordReaderTest {
+
+    private static final String ADA = "Ada|Weaver|female|red|12/15/2037\n";
+    private static final String KOBE = "Kobe|Bass|male|green|10/11/1949\n";
+    private static final String RIYA = "Riya|Murray|female|green|09/26/1945\n";
+
+    @Test
+    public void pollOnlyNewLines(@TempDir Path tempDir) throws IOException, RecordParseException {
+        Path path = tempDir.resolve("records.psv");
+        write(path, ADA + KOBE);
+
+        IncrementalRecordReader reader = new IncrementalRecordReader(path, "|");
+        assertEquals(RecordParser.parseFile(path, "|"), reader.poll());
+        assertEquals(0, reader.poll().size());
+        assertEquals(ADA.length() + KOBE.length(), reader.getCheckpoint().getByteOffset());
+        assertEquals(2, reader.getCheckpoint().getLineNumber());
+
+        append(path, RIYA);
+        List<Record> records = reader.poll();
+        assertEquals(1, records.size());
+        assertEquals("Riya", records.get(0).getLastName());
+        assertEquals(3, reader.getCheckpoint().getLineNumber());
+        assertFalse(reader.isRestarted());
+    }
+
+    @Test
+    public void pollPartialLine(@TempDir Path tempDir) throws IOException, RecordParseException {
+        Path path = tempDir.resolve("records.psv");
+        write(path, ADA + "Kobe|Bass|ma");
+
+        IncrementalRecordReader reader = new IncrementalRecordReader(path, "|");
+        assertEquals(1, reader.poll().size());
+        assertEquals(ADA.length(), reader.getCheckpoint().getByteOffset());
+
+        // the rest of the line, ending in a "\r" that could still become "\r\n"
+        append(path, "le|green|10/11/1949\r");
+        assertEquals(0, reader.poll().size());
+        append(path, "\n");
+        List<Record> records = reader.poll();
+        assertEquals(1, records.size());
+        assertEquals("Kobe", records.get(0).getLastName());
+
+        // a lone "\r" is a line break once anything follows it
+        append(path, "Riya|Murray|female|green|09/26/1945\rAda|Weaver");
+        assertEquals(1, reader.poll().size());
+        assertEquals(3, reader.getCheckpoint().getLineNumber());
+    }
+
+    @Test
+    public void pollAfterTruncation(@TempDir Path tempDir) throws IOException, RecordParseException {
+        Path path = tempDir.resolve("records.psv");
+        write(path, ADA + KOBE);
+        IncrementalRecordReader reader = new IncrementalRecordReader(path, "|");
+        reader.poll();
+
+        write(path, RIYA);
+        List<Record> records = reader.poll();
+        assertTrue(reader.isRestarted());
+        assertEquals(1, records.size());
+        assertEquals("Riya", records.get(0).getLastName());
+        assertEquals(1, reader.getCheckpoint().getLineNumber());
+    }
+
+    @Test
+    public void pollAfterReplacedWithLongerFile(@TempDir Path tempDir) throws IOException, RecordParseException {
+        Path path = tempDir.resolve("records.psv");
+        write(path, ADA);
+        IncrementalRecordReader reader = new IncrementalRecordReader(path, "|");
+        reader.poll();
+
+        // rotated, and the new file has already grown past the old offset
+        Files.move(path, tempDir.resolve("records.psv.1"));
+        write(path, KOBE + RIYA);
+        assertEquals(2, reader.poll().size());
+        assertTrue(reader.isRestarted());
+    }
+
+    @Test
+    public void resumeFromSavedCheckpoint(@TempDir Path tempDir) throws IOException, RecordParseException {
+        Path path = tempDir.resolve("records.psv");
+        write(path, ADA + KOBE);
+        IncrementalRecordReader reader = new IncrementalRecordReader(path, "|");
+        reader.poll();
+
+        Properties properties = new Properties();
+        reader.getCheckpoint().store(properties, "psv");
+        Checkpoint loaded = Checkpoint.load(properties, "psv");
+        assertEquals(reader.getCheckpoint(), loaded);
+        assertEquals(Checkpoint.start(), Checkpoint.load(properties, "csv"));
+
+        append(path, RIYA);
+        IncrementalRecordReader resumed = new IncrementalRecordReader(path, "|", loaded);
+        assertEquals(1, resumed.poll().size());
+        assertFalse(resumed.isRestarted());
+    }
+
+    @Test
+    public void pollInvalidLine(@TempDir Path tempDir) throws IOException, RecordParseException {
+        Path path = tempDir.resolve("records.psv");
+        write(path, ADA + KOBE);
+        IncrementalRecordReader reader = new IncrementalRecordReader(path, "|");
+        reader.poll();
+
+        append(path, RIYA + "Kobe|male|green|10/11\n");
+        RecordParseException e = assertThrows(RecordParseException.class, reader::poll);
+        assertEquals(4, e.getLineNumber());
+        // nothing was consumed, so the same lines are retried
+        assertEquals(2, reader.getCheckpoint().getLineNumber());
+    }
+
+    @Test
+    public void invalidDelimiter(@TempDir Path tempDir) {
+        assertThrows(RecordParseException.class, () -> new IncrementalRecordReader(tempDir.resolve("records.psv"), ";"));
+    }
+
+    private static void write(Path path, String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void append(Path path, String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
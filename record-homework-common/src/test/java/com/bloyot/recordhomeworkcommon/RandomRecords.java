@@ -0,0 +1,80 @@
+package com.bloyot.recordhomeworkcommon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random records for tests, from a seed so every run gets the same records. Each field has a default that tests
+ * override to get the mix of values (and ties or duplicates) they need.
+ */
+final class RandomRecords {
+
+    /**
+     * A field value of the record at an index.
+     */
+    interface Value<T> {
+        T next(Random random, int index);
+    }
+
+    private final long seed;
+    private Value<String> lastName = (random, index) -> "Last" + index;
+    private Value<String> firstName = (random, index) -> "First" + index;
+    private Value<Gender> gender = (random, index) -> random.nextBoolean() ? Gender.MALE : Gender.FEMALE;
+    private Value<String> favoriteColor = (random, index) -> "blue";
+    private int firstEpochDay;
+    private int days = 1;
+
+    RandomRecords(long seed) {
+        this.seed = seed;
+    }
+
+    RandomRecords lastName(Value<String> lastName) {
+        this.lastName = lastName;
+        return this;
+    }
+
+    RandomRecords firstName(Value<String> firstName) {
+        this.firstName = firstName;
+        return this;
+    }
+
+    RandomRecords gender(Value<Gender> gender) {
+        this.gender = gender;
+        return this;
+    }
+
+    RandomRecords favoriteColor(Value<String> favoriteColor) {
+        this.favoriteColor = favoriteColor;
+        return this;
+    }
+
+    /**
+     * Picks dates of birth from a range of days since the epoch.
+     * @param firstEpochDay the earliest date
+     * @param days how many days the range spans
+     */
+    RandomRecords epochDays(int firstEpochDay, int days) {
+        this.firstEpochDay = firstEpochDay;
+        this.days = days;
+        return this;
+    }
+
+    /**
+     * Picks each value from one of a fixed set of values.
+     */
+    @SafeVarargs
+    static <T> Value<T> oneOf(T... values) {
+        return (random, index) -> values[random.nextInt(values.length)];
+    }
+
+    List<Record> generate(int count) {
+        Random random = new Random(seed);
+        List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new Record(lastName.next(random, i), firstName.next(random, i), gender.next(random, i),
+                    favoriteColor.next(random, i), firstEpochDay + random.nextInt(days)));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,129 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RecordAggregateTest {
+
+    @Test
+    public void matchesCountingRecords() {
+        List<Record> records = randomRecords(5_000);
+        RecordAggregate aggregate = new RecordAggregate();
+        records.forEach(aggregate::add);
+
+        SortedMap<String, Long> colors = new TreeMap<>();
+        SortedMap<Integer, Long> years = new TreeMap<>();
+        long female = 0;
+        for (Record record : records) {
+            colors.merge(record.getFavoriteColor(), 1L, Long::sum);
+            years.merge(record.getDateOfBirth().getYear(), 1L, Long::sum);
+            female += record.getGender() == Gender.FEMALE ? 1 : 0;
+        }
+        assertEquals(records.size(), aggregate.getCount());
+        assertEquals(female, aggregate.getCount(Gender.FEMALE));
+        assertEquals(records.size() - female, aggregate.getCount(Gender.MALE));
+        assertEquals(colors, aggregate.getFavoriteColorCounts());
+        assertEquals(years, aggregate.getBirthYearCounts());
+        assertEquals(records.stream().map(Record::getDateOfBirth).min(LocalDate::compareTo).get(), aggregate.getMinDateOfBirth());
+        assertEquals(records.stream().map(Record::getDateOfBirth).max(LocalDate::compareTo).get(), aggregate.getMaxDateOfBirth());
+    }
+
+    @Test
+    public void mergeMatchesSingleAggregate() {
+        List<Record> records = randomRecords(5_000);
+        RecordAggregate whole = new RecordAggregate();
+        records.forEach(whole::add);
+
+        // uneven parts, including an empty one, so the years of each part span different ranges
+        RecordAggregate merged = new RecordAggregate();
+        int[] bounds = {0, 0, 10, 1_000, 4_999, 5_000};
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            RecordAggregate part = new RecordAggregate();
+            records.subList(bounds[i], bounds[i + 1]).forEach(part::add);
+            merged.merge(part);
+        }
+        assertEquals(csv(whole), csv(merged));
+        assertEquals(json(whole), json(merged));
+    }
+
+    @Test
+    public void extremeYears() {
+        RecordAggregate aggregate = new RecordAggregate();
+        RecordAggregate other = new RecordAggregate();
+        aggregate.add(new Record("Smith", "Ann", Gender.FEMALE, "red", LocalDate.of(1980, 2, 3)));
+        other.add(new Record("Jones", "Bo", Gender.MALE, "blue", LocalDate.of(1980 + RecordAggregate.MAX_DENSE_YEARS, 1, 1)));
+        other.add(new Record("Jones", "Bo", Gender.MALE, "blue", LocalDate.of(-4_000_000, 1, 1)));
+        aggregate.add(new Record("Lee", "Cy", Gender.FEMALE, "red", LocalDate.of(4_000_000, 12, 31)));
+        aggregate.add(new Record("Lee", "Cy", Gender.FEMALE, "red", LocalDate.of(1980, 7, 4)));
+        aggregate.merge(other);
+
+        SortedMap<Integer, Long> years = new TreeMap<>();
+        years.put(-4_000_000, 1L);
+        years.put(1980, 2L);
+        years.put(1980 + RecordAggregate.MAX_DENSE_YEARS, 1L);
+        years.put(4_000_000, 1L);
+        assertEquals(years, aggregate.getBirthYearCounts());
+        assertEquals(LocalDate.of(-4_000_000, 1, 1), aggregate.getMinDateOfBirth());
+    }
+
+    @Test
+    public void output() throws Exception {
+        RecordAggregate aggregate = new RecordAggregate();
+        assertNull(aggregate.getMinDateOfBirth());
+        assertEquals("{\"records\":0,\"gender\":{\"male\":0,\"female\":0},\"favoriteColor\":{},\"birthYear\":{}}\n", json(aggregate));
+
+        aggregate.add(new Record("Smith", "Ann", Gender.FEMALE, "red, mostly", LocalDate.of(1980, 2, 3)));
+        aggregate.add(new Record("Jones", "Bo", Gender.MALE, "blue", LocalDate.of(1975, 12, 31)));
+        aggregate.add(new Record("Lee", "Cy", Gender.FEMALE, "\"blue\"", LocalDate.of(1980, 7, 4)));
+        assertEquals("group,key,value\n"
+                + "records,total,3\n"
+                + "birth_date,min,12/31/1975\n"
+                + "birth_date,max,07/04/1980\n"
+                + "gender,male,1\n"
+                + "gender,female,2\n"
+                + "favorite_color,\"\"\"blue\"\"\",1\n"
+                + "favorite_color,blue,1\n"
+                + "favorite_color,\"red, mostly\",1\n"
+                + "birth_year,1975,1\n"
+                + "birth_year,1980,2\n", csv(aggregate));
+        assertEquals("{\"records\":3,\"minDateOfBirth\":\"12/31/1975\",\"maxDateOfBirth\":\"07/04/1980\","
+                + "\"gender\":{\"male\":1,\"female\":2},\"favoriteColor\":{\"\\\"blue\\\"\":1,\"blue\":1,\"red, mostly\":1},"
+                + "\"birthYear\":{\"1975\":1,\"1980\":2}}\n", json(aggregate));
+    }
+
+    private static String csv(RecordAggregate aggregate) {
+        StringBuilder out = new StringBuilder();
+        try {
+            aggregate.writeCsv(out);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return out.toString().replace(System.lineSeparator(), "\n");
+    }
+
+    private static String json(RecordAggregate aggregate) {
+        StringBuilder out = new StringBuilder();
+        try {
+            aggregate.writeJson(out);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return out.toString().replace(System.lineSeparator(), "\n");
+    }
+
+    private static List<Record> randomRecords(int count) {
+        return new RandomRecords(5)
+                .favoriteColor(RandomRecords.oneOf("red", "blue", "green", "yellow", "black"))
+                // about three hundred years either side of 1970
+                .epochDays(-110_000, 220_000)
+                .generate(count);
+    }
+}
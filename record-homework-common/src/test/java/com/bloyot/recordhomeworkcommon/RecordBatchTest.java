@@ -0,0 +1,97 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RecordBatchTest {
+
+    @Test
+    public void parseBatchMatchesParseFile() throws IOException, RecordParseException {
+        Path path = Paths.get("src", "test", "resources", "records_valid.psv");
+        RecordBatch batch = RecordParser.parseBatch(path, "|");
+
+        assertEquals(RecordParser.parseFile(path, "|"), batch.asRecords());
+        assertEquals(3, batch.size());
+        // Ada, Weaver, red, Kobe, Bass, green, Riya, Murray
+        assertEquals(8, batch.getDictionarySize());
+        assertEquals(batch.getFavoriteColorId(1), batch.getFavoriteColorId(2));
+        assertEquals(Gender.MALE, batch.getGender(1));
+        assertEquals(LocalDate.of(1949, 10, 11).toEpochDay(), batch.getDateOfBirthEpochDay(1));
+    }
+
+    @Test
+    public void parseBatchInvalidFile() {
+        RecordParseException e = assertThrows(RecordParseException.class, () -> {
+            RecordParser.parseBatch(Paths.get("src", "test", "resources", "records_invalid.psv"), "|");
+        });
+        assertEquals(2, e.getLineNumber());
+    }
+
+    @Test
+    public void parseBatchNonAscii(@TempDir Path tempDir) throws IOException, RecordParseException {
+        Path path = tempDir.resolve("records.csv");
+        Files.write(path, "M\u00fcller,J\u00f6rg,male,gr\u00fcn,01/02/1980\nMuller,Jorg,male,green,01/02/1980\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(RecordParser.parseFile(path, ","), RecordParser.parseBatch(path, ",").asRecords());
+    }
+
+    @Test
+    public void sortMatchesComparators() {
+        Random random = new Random(42);
+        String[] names = {"Ada", "Kobe", "Riya", "ada", "Bass", "Weaver", "Murray", ""};
+        List<Record> records = new ArrayList<>();
+        RecordBatch batch = new RecordBatch(4);
+        for (int i = 0; i < 1000; i++) {
+            Record record = new Record(names[random.nextInt(names.length)], "First" + i, random.nextBoolean() ? Gender.MALE : Gender.FEMALE,
+                    "blue", random.nextInt(100));
+            records.add(record);
+            batch.add(record);
+        }
+        assertEquals(records, batch.asRecords());
+
+        assertSorted(records, batch, Comparator.comparing(Record::getGender), batch.genderOrder());
+        assertSorted(records, batch, Comparator.comparingInt(Record::dateOfBirthEpochDay), batch.birthDateOrder());
+        assertSorted(records, batch, Comparator.comparing(Record::getLastName).reversed(), batch.lastNameOrder().reversed());
+        assertSorted(records, batch, Comparator.comparing(Record::getGender).reversed().thenComparing(Record::getLastName),
+                batch.genderOrder().reversed().thenComparing(batch.lastNameOrder()));
+        // "Ada" and "ada" are equal when case insensitive, so they have to keep their order
+        for (boolean caseSensitive : new boolean[]{true, false}) {
+            RecordCollation collation = new RecordCollation(Locale.ROOT, caseSensitive);
+            assertSorted(records, batch, collation.lastNameOrder().reversed(), batch.lastNameOrder(collation).reversed());
+        }
+    }
+
+    @Test
+    public void filter() {
+        RecordBatch batch = new RecordBatch();
+        batch.add(new Record("Ada", "Weaver", Gender.FEMALE, "red", 10));
+        batch.add(new Record("Kobe", "Bass", Gender.MALE, "green", 20));
+        batch.add(new Record("Riya", "Murray", Gender.FEMALE, "green", 30));
+
+        int[] females = batch.filter(batch.indexes(), i -> batch.getGender(i) == Gender.FEMALE);
+        assertEquals(2, females.length);
+        assertEquals("Ada", batch.asRecords(females).get(0).getLastName());
+        assertEquals("Riya", batch.asRecords(females).get(1).getLastName());
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.getRecord(3));
+    }
+
+    private void assertSorted(List<Record> records, RecordBatch batch, Comparator<Record> comparator, RecordBatch.IndexComparator indexComparator) {
+        List<Record> expected = new ArrayList<>(records);
+        expected.sort(comparator);
+        assertEquals(expected, batch.asRecords(batch.sort(batch.indexes(), indexComparator)));
+    }
+}
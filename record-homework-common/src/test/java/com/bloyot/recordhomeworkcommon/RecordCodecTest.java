@@ -0,0 +1,45 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RecordCodecTest {
+
+    @Test
+    public void roundTrip() throws IOException {
+        char[] longName = new char[300];
+        Arrays.fill(longName, '\u00e9');
+        List<Record> records = Arrays.asList(
+                new Record("Smith", "Ann", Gender.FEMALE, "red", 100),
+                new Record("", "", Gender.MALE, "", -719_528),
+                // a byte count that takes more than one byte
+                new Record(new String(longName), "M\u00fcller", Gender.FEMALE, "blue", Integer.MAX_VALUE));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Record record : records) {
+            out.write(RecordCodec.encode(record));
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        for (Record record : records) {
+            assertEquals(record, RecordCodec.read(in));
+        }
+        assertThrows(EOFException.class, () -> RecordCodec.read(in));
+    }
+
+    @Test
+    public void truncated() {
+        byte[] encoded = RecordCodec.encode(new Record("Smith", "Ann", Gender.FEMALE, "red", 100));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded, 0, encoded.length - 1));
+        assertThrows(EOFException.class, () -> RecordCodec.read(in));
+    }
+}
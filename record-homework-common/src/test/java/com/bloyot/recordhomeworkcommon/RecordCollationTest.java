@@ -0,0 +1,93 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RecordCollationTest {
+
+    @Test
+    public void keysMatchCollator() {
+        Random random = new Random(3);
+        String alphabet = "aAbBzZ\u00e9\u00c9\u00f6\u00df\u0301 '-\u4e2d";
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int length = random.nextInt(6); length > 0; length--) {
+                name.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            names.add(name.toString());
+        }
+        for (Locale locale : new Locale[]{Locale.ROOT, Locale.GERMAN, new Locale("sv")}) {
+            for (boolean caseSensitive : new boolean[]{true, false}) {
+                RecordCollation collation = new RecordCollation(locale, caseSensitive);
+                Collator collator = Collator.getInstance(locale);
+                collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+                collator.setStrength(caseSensitive ? Collator.TERTIARY : Collator.SECONDARY);
+                for (int i = 0; i + 1 < names.size(); i++) {
+                    String a = names.get(i);
+                    String b = names.get(i + 1);
+                    assertEquals(Integer.signum(collator.compare(a, b)),
+                            Integer.signum(RecordCollation.compareKeys(collation.key(a), collation.key(b))), a + " " + b);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void order() {
+        RecordCollation caseSensitive = new RecordCollation(Locale.ROOT, true);
+        RecordCollation caseInsensitive = new RecordCollation(Locale.ROOT, false);
+        // accents sort next to the plain letter rather than after z, and precomposed accents equal combining ones
+        assertEquals(-1, Integer.signum(compare(caseSensitive, "\u00c9mile", "Zed")));
+        assertEquals(0, compare(caseSensitive, "\u00e9", "e\u0301"));
+        assertEquals(-1, Integer.signum(compare(caseSensitive, "adams", "Adams")));
+        assertEquals(0, compare(caseInsensitive, "adams", "Adams"));
+        assertEquals(-1, Integer.signum(compare(caseInsensitive, "adams", "\u00c4dams")));
+    }
+
+    @Test
+    public void parseLocale() {
+        assertSame(Locale.ROOT, RecordCollation.parseLocale("root"));
+        assertSame(Locale.ROOT, RecordCollation.parseLocale("ROOT"));
+        assertSame(Locale.ROOT, RecordCollation.parseLocale(""));
+        assertEquals(Locale.GERMAN, RecordCollation.parseLocale("de"));
+        assertEquals(Locale.US, RecordCollation.parseLocale("en-US"));
+        // well formed, but there's no collator for it
+        assertThrows(IllegalArgumentException.class, () -> RecordCollation.parseLocale("xx"));
+        assertThrows(IllegalArgumentException.class, () -> RecordCollation.parseLocale("!!"));
+        assertThrows(IllegalArgumentException.class, () -> RecordCollation.parseLocale("en_US"));
+    }
+
+    @Test
+    public void keysCached() {
+        RecordCollation collation = new RecordCollation(Locale.ROOT, true);
+        Record record = new Record("Smith", "Ann", Gender.FEMALE, "red", 0);
+        byte[] key = collation.lastNameKey(record);
+        assertSame(key, collation.lastNameKey(record));
+
+        // a new name or a different collation replaces the key
+        record.setLastName("Jones");
+        assertArrayEquals(collation.key("Jones"), collation.lastNameKey(record));
+        byte[] jones = collation.lastNameKey(record);
+        RecordCollation other = new RecordCollation(Locale.ROOT, false);
+        assertArrayEquals(other.key("Jones"), other.lastNameKey(record));
+        assertNotSame(jones, collation.lastNameKey(record));
+        assertEquals(Arrays.toString(jones), Arrays.toString(collation.lastNameKey(record)));
+    }
+
+    private static int compare(RecordCollation collation, String a, String b) {
+        return RecordCollation.compareKeys(collation.key(a), collation.key(b));
+    }
+}
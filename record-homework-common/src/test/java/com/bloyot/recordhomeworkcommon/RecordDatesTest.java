@@ -0,0 +1,91 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RecordDatesTest {
+
+    @Test
+    public void parseValidDates() {
+        assertEquals(LocalDate.of(2031, 9, 3).toEpochDay(), RecordDates.parseEpochDay("09/03/2031"));
+        assertEquals(LocalDate.of(1970, 1, 1).toEpochDay(), RecordDates.parseEpochDay("01/01/1970"));
+        assertEquals(LocalDate.of(1, 1, 1).toEpochDay(), RecordDates.parseEpochDay("01/01/0001"));
+        assertEquals(LocalDate.of(99999, 12, 31).toEpochDay(), RecordDates.parseEpochDay("12/31/+99999"));
+    }
+
+    @Test
+    public void parseClampsDayToEndOfMonth() {
+        // the formatter's smart resolver does the same
+        assertEquals(LocalDate.of(2020, 2, 29).toEpochDay(), RecordDates.parseEpochDay("02/30/2020"));
+        assertEquals(LocalDate.of(2021, 2, 28).toEpochDay(), RecordDates.parseEpochDay("02/31/2021"));
+        assertEquals(LocalDate.of(2020, 4, 30).toEpochDay(), RecordDates.parseEpochDay("04/31/2020"));
+    }
+
+    @Test
+    public void parseInvalidDates() {
+        for (String date : new String[]{"", "090/03/2031", "1/01/2020", "01/01/202", "02/32/2020", "00/10/2020", "13/01/2020",
+                "01/00/2020", "01/01/0000", "01/01/20201", "01/01/+2020", "01/01/-2020", "01/01/ 2020", "01/01/2020 ", "01-01-2020",
+                "0a/01/2020", "01/01/+9999999"}) {
+            assertEquals(RecordDates.INVALID, RecordDates.parseEpochDay(date), date);
+        }
+    }
+
+    @Test
+    public void parseMatchesFormatter() {
+        // every month and day combination, plus some out of range ones, over a few leap and non leap years
+        for (String year : new String[]{"1900", "1999", "2000", "2004", "2100", "0400", "9999", "+10000"}) {
+            for (int month = 0; month <= 13; month++) {
+                for (int day = 0; day <= 32; day++) {
+                    String date = String.format("%02d/%02d/%s", month, day, year);
+                    assertEquals(formatterEpochDay(date), RecordDates.parseEpochDay(date), date);
+
+                    ByteBuffer bytes = ByteBuffer.wrap(("|" + date + "|").getBytes(StandardCharsets.US_ASCII));
+                    assertEquals(formatterEpochDay(date), RecordDates.parseEpochDay(bytes, 1, date.length() + 1), date);
+                }
+            }
+        }
+    }
+
+    private int formatterEpochDay(String date) {
+        try {
+            return (int) LocalDate.parse(date, Record.DATE_TIME_FORMATTER).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return RecordDates.INVALID;
+        }
+    }
+
+    @Test
+    public void formatMatchesFormatter() {
+        byte[] bytes = new byte[RecordDates.MAX_FORMATTED_LENGTH];
+        // every day from well before year 1 to well after 9999, plus the extremes of an int
+        int[] extremes = {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -1_000_000_000, 1_000_000_000, Integer.MAX_VALUE};
+        for (int epochDay = -800_000; epochDay <= 3_000_000; epochDay++) {
+            assertFormatted(epochDay, bytes);
+        }
+        for (int epochDay : extremes) {
+            assertFormatted(epochDay, bytes);
+        }
+    }
+
+    @Test
+    public void yearOfEpochDay() {
+        for (int epochDay = -800_000; epochDay <= 3_000_000; epochDay += 7) {
+            assertEquals(LocalDate.ofEpochDay(epochDay).getYear(), RecordDates.yearOfEpochDay(epochDay));
+        }
+        for (int epochDay : new int[]{Integer.MIN_VALUE, -1, 0, 59, 60, Integer.MAX_VALUE}) {
+            assertEquals(LocalDate.ofEpochDay(epochDay).getYear(), RecordDates.yearOfEpochDay(epochDay));
+        }
+    }
+
+    private static void assertFormatted(int epochDay, byte[] bytes) {
+        int length = RecordDates.formatEpochDay(epochDay, bytes, 0);
+        String expected = Record.DATE_TIME_FORMATTER.format(LocalDate.ofEpochDay(epochDay));
+        assertEquals(expected, new String(bytes, 0, length, StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,104 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecordFingerprintSetTest {
+
+    @Test
+    public void matchesHashSet(@TempDir Path tempDir) throws Exception {
+        List<Record> records = randomRecords(20_000);
+        // in memory, spilled straight away, and spilled part way through
+        for (long maxMemory : new long[]{Long.MAX_VALUE, 0, 100_000}) {
+            Set<Record> expected = new HashSet<>();
+            try (RecordFingerprintSet set = new RecordFingerprintSet(maxMemory, tempDir)) {
+                for (Record record : records) {
+                    // a copy, so equal records are never the same object
+                    Record copy = new Record(record.getLastName(), record.getFirstName(), record.getGender(),
+                            record.getFavoriteColor(), record.dateOfBirthEpochDay());
+                    assertEquals(expected.add(record), set.add(copy));
+                }
+                assertEquals(expected.size(), set.size());
+                assertEquals(records.size() - expected.size(), set.getDuplicateCount());
+                assertEquals(maxMemory != Long.MAX_VALUE, set.isSpilled());
+            }
+            // the log file is deleted on close
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertEquals(0, files.count());
+            }
+        }
+    }
+
+    @Test
+    public void spillsAtMaxLogLength(@TempDir Path tempDir) throws Exception {
+        List<Record> records = randomRecords(20_000);
+        Set<Record> expected = new HashSet<>();
+        // a max memory far past what an array can hold, so only the log length limit decides when to spill
+        try (RecordFingerprintSet set = new RecordFingerprintSet(RecordFingerprintSet::fingerprint, Long.MAX_VALUE, 4096, tempDir)) {
+            for (Record record : records) {
+                assertEquals(expected.add(record), set.add(record));
+            }
+            assertEquals(expected.size(), set.size());
+            assertTrue(set.isSpilled());
+        }
+    }
+
+    @Test
+    public void collisions(@TempDir Path tempDir) throws Exception {
+        List<Record> records = randomRecords(2_000);
+        for (long maxMemory : new long[]{Long.MAX_VALUE, 0}) {
+            Set<Record> expected = new HashSet<>();
+            // only a handful of fingerprints, so nearly every record shares one with a different record
+            try (RecordFingerprintSet set = new RecordFingerprintSet(record -> record.getLastName().length() % 4, maxMemory, tempDir)) {
+                for (Record record : records) {
+                    assertEquals(expected.add(record), set.add(record));
+                }
+                assertEquals(expected.size(), set.size());
+                assertTrue(set.getCollisionCount() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void allFieldsCompared() throws Exception {
+        try (RecordFingerprintSet set = new RecordFingerprintSet(record -> 42, Long.MAX_VALUE, null)) {
+            assertTrue(set.add(new Record("Smith", "Ann", Gender.FEMALE, "red", 100)));
+            assertTrue(set.add(new Record("Smith", "Ann", Gender.MALE, "red", 100)));
+            assertTrue(set.add(new Record("Smith", "Ann", Gender.FEMALE, "red", 101)));
+            assertTrue(set.add(new Record("Smith", "Ann", Gender.FEMALE, "blue", 100)));
+            assertTrue(set.add(new Record("Smith", "Anna", Gender.FEMALE, "red", 100)));
+            // the same chars split differently between fields
+            assertTrue(set.add(new Record("SmithA", "nn", Gender.FEMALE, "red", 100)));
+            assertTrue(set.add(new Record("Sm\u00efth", "Ann", Gender.FEMALE, "red", 100)));
+            assertFalse(set.add(new Record("Smith", "Ann", Gender.FEMALE, "red", 100)));
+            assertFalse(set.add(new Record("Sm\u00efth", "Ann", Gender.FEMALE, "red", 100)));
+            assertEquals(7, set.size());
+            // each record is compared with every one added before it, and the last duplicate is found after six others
+            assertEquals(0 + 1 + 2 + 3 + 4 + 5 + 6 + 6, set.getCollisionCount());
+        }
+    }
+
+    /**
+     * Records drawn from small pools of values, so plenty of them are duplicates.
+     */
+    private static List<Record> randomRecords(int count) {
+        RandomRecords.Value<String> names = RandomRecords.oneOf("Smith", "Jones", "O'Ryan", "Nguyen", "M\u00fcller", "Li", "Garcia", "Brown");
+        return new RandomRecords(11)
+                .lastName(names)
+                .firstName((random, i) -> names.next(random, i) + random.nextInt(20))
+                .favoriteColor(RandomRecords.oneOf("red", "blue", "green"))
+                .epochDays(9000, 10)
+                .generate(count);
+    }
+}
@@ -1,13 +1,24 @@
 package com.bloyot.recordhomeworkcommon;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RecordParserTest {
 
@@ -39,6 +50,14 @@ public class RecordParserTest {
         assertEquals("Nelson,,male,magenta,09/03/2031", record.toString());
     }
 
+    @Test
+    public void parseStoresEpochDay() throws RecordParseException {
+        Record record = RecordParser.parseLine("Nelson,Lukas,male,magenta,09/03/2031", ",");
+        assertEquals(LocalDate.of(2031, 9, 3), record.getDateOfBirth());
+        assertEquals(LocalDate.of(2031, 9, 3).toEpochDay(), record.dateOfBirthEpochDay());
+        assertEquals(new Record("Nelson", "Lukas", Gender.MALE, "magenta", LocalDate.of(2031, 9, 3)), record);
+    }
+
     @Test
     public void invalidDelimiter() {
         assertThrows(RecordParseException.class, () -> {
@@ -126,4 +145,256 @@ public class RecordParserTest {
             RecordParser.parseFile(Paths.get("z", "foo", "bar", "nonexistant.csv"), ",");
         });
     }
+
+    // tests for RecordParser#parseFileMapped, which should always agree with RecordParser#parseFile
+    @Test
+    public void parseValidFileMapped() throws IOException, RecordParseException {
+        Path path = Paths.get("src", "test", "resources", "records_valid.psv");
+        assertEquals(RecordParser.parseFile(path, "|"), RecordParser.parseFileMapped(path, "|"));
+    }
+
+    @Test
+    public void parseInvalidFileMapped() {
+        Path path = Paths.get("src", "test", "resources", "records_invalid.psv");
+        RecordParseException expected = assertThrows(RecordParseException.class, () -> RecordParser.parseFile(path, "|"));
+        RecordParseException actual = assertThrows(RecordParseException.class, () -> RecordParser.parseFileMapped(path, "|"));
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    @Test
+    public void parseFileMappedValidations() {
+        assertThrows(RecordParseException.class, () -> {
+            RecordParser.parseFileMapped(Paths.get("src", "test", "resources", "records_valid.psv"), "/");
+        });
+        assertThrows(RecordParseException.class, () -> {
+            RecordParser.parseFileMapped(Paths.get("z", "foo", "bar", "nonexistant.csv"), ",");
+        });
+    }
+
+    @Test
+    public void parseFileMappedLineEndings(@TempDir Path tempDir) throws IOException, RecordParseException {
+        assertMappedMatches(tempDir, "Ada,Weaver,female,red,12/15/2037\r\nKobe,Bass,MALE,green,10/11/1949\rRiya,Murray,Female,green,09/26/1945", ",");
+        assertMappedMatches(tempDir, "Ada Weaver female red 12/15/2037\n", " ");
+        assertMappedMatches(tempDir, "", "|");
+    }
+
+    @Test
+    public void parseFileMappedTrailingDelimiters(@TempDir Path tempDir) throws IOException, RecordParseException {
+        assertMappedMatches(tempDir, "Ada|Weaver|female|red|12/15/2037|||\n", "|");
+        assertMappedMatches(tempDir, "Ada|Weaver|female|red|\n", "|");
+        assertMappedMatches(tempDir, "||||\n", "|");
+        assertMappedMatches(tempDir, "|Weaver|female|red|12/15/2037\n", "|");
+    }
+
+    @Test
+    public void parseFileMappedInvalidLines(@TempDir Path tempDir) throws IOException, RecordParseException {
+        assertMappedMatches(tempDir, "Ada|Weaver|female|red|12/15/2037\n\nKobe|Bass|male|green|10/11/1949\n", "|");
+        assertMappedMatches(tempDir, "Ada|Weaver|other|red|12/15/2037\n", "|");
+        assertMappedMatches(tempDir, "Ada|Weaver|female|red|13/15/2037\n", "|");
+        assertMappedMatches(tempDir, "Ada|Weaver|female|red|02/30/2020\n", "|");
+    }
+
+    @Test
+    public void parseFileMappedNonAscii(@TempDir Path tempDir) throws IOException, RecordParseException {
+        assertMappedMatches(tempDir, "J\u00f6rg,M\u00fcller,male,gr\u00fcn,01/02/1980\n", ",");
+        assertMappedMatches(tempDir, "J\u00f6rg,M\u00fcller,other,gr\u00fcn,01/02/1980\n", ",");
+        assertMappedMatches(tempDir, "J\u00f6rg,M\u00fcller,male,gr\u00fcn,13/02/1980\n", ",");
+        assertMappedMatches(tempDir, "J\u00f6rg,M\u00fcller,male,gr\u00fcn\n", ",");
+    }
+
+    @Test
+    public void parseFileMappedAcrossWindows(@TempDir Path tempDir) throws IOException, RecordParseException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append("Last").append(i).append("|First").append(i).append("|female|blue|01/0").append(i % 9 + 1).append("/2000\r\n");
+        }
+        Path path = tempDir.resolve("records.psv");
+        Files.write(path, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        // windows smaller than a line, and windows that split "\r\n", both have to re-map and produce the same records
+        for (int windowSize : new int[]{7, 33, 34, 35, 1024}) {
+            List<Record> records = new ArrayList<>();
+            try (MappedRecordReader reader = MappedRecordReader.open(path, "|", null, windowSize)) {
+                Record record;
+                while ((record = reader.next()) != null) {
+                    records.add(record);
+                }
+            }
+            assertEquals(RecordParser.parseFile(path, "|"), records);
+        }
+    }
+
+    // tests for RecordParser#parseFileLenient
+    @Test
+    public void parseFileLenientValidFile() throws IOException, RecordParseException {
+        Path path = Paths.get("src", "test", "resources", "records_valid.psv");
+        ParseResult result = RecordParser.parseFileLenient(path, "|");
+        assertEquals(RecordParser.parseFile(path, "|"), result.getRecords());
+        assertTrue(result.isValid());
+        assertEquals(0, result.getErrors().size());
+    }
+
+    @Test
+    public void parseFileLenientInvalidFile() throws IOException, RecordParseException {
+        ParseResult result = RecordParser.parseFileLenient(Paths.get("src", "test", "resources", "records_invalid.psv"), "|");
+        assertEquals(2, result.getRecords().size());
+        assertEquals("Riya", result.getRecords().get(1).getLastName());
+        assertEquals(1, result.getErrorCount());
+        assertEquals(new ParseError(2, 33, ParseError.Reason.WRONG_FIELD_COUNT), result.getErrors().get(0));
+    }
+
+    @Test
+    public void parseFileLenientReasons(@TempDir Path tempDir) throws IOException, RecordParseException {
+        String valid = "Ada,Weaver,female,red,12/15/2037\n";
+        byte[] invalidUtf8 = {'A', (byte) 0xff, ',', 'B', '\n'};
+        Path path = tempDir.resolve("records.csv");
+        Files.write(path, (valid + "\n" + valid + "Ada,Weaver,other,red,12/15/2037\n" + "Ada,Weaver,female,red,13/15/2037\n"
+                + "Ada,Weaver,female\n" + "J\u00f6rg,M\u00fcller,male,gr\u00fcn,01/02/1980\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(path, invalidUtf8, StandardOpenOption.APPEND);
+        Files.write(path, valid.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        ParseResult result = RecordParser.parseFileLenient(path, ",");
+        assertEquals(4, result.getRecords().size());
+        assertEquals("M\u00fcller", result.getRecords().get(2).getFirstName());
+
+        List<ParseError> expected = new ArrayList<>();
+        expected.add(new ParseError(2, 33, ParseError.Reason.EMPTY_LINE));
+        expected.add(new ParseError(4, 67, ParseError.Reason.INVALID_GENDER));
+        expected.add(new ParseError(5, 99, ParseError.Reason.INVALID_DATE));
+        expected.add(new ParseError(6, 132, ParseError.Reason.WRONG_FIELD_COUNT));
+        expected.add(new ParseError(8, 186, ParseError.Reason.INVALID_ENCODING));
+        assertEquals(expected, result.getErrors());
+        assertFalse(result.isErrorsTruncated());
+
+        // the strict parse fails on the first of the same lines
+        RecordParseException e = assertThrows(RecordParseException.class, () -> RecordParser.parseFileMapped(path, ","));
+        assertEquals(2, e.getLineNumber());
+    }
+
+    @Test
+    public void parseFileLenientMaxErrors(@TempDir Path tempDir) throws IOException, RecordParseException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append(i % 10 == 0 ? "Ada,Weaver,female,red,12/15/2037\n" : "not a record\n");
+        }
+        Path path = tempDir.resolve("records.csv");
+        Files.write(path, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        ParseResult result = RecordParser.parseFileLenient(path, ",", 5, new StringPool());
+        assertEquals(100, result.getRecords().size());
+        assertEquals(900, result.getErrorCount());
+        assertEquals(5, result.getErrors().size());
+        assertTrue(result.isErrorsTruncated());
+        assertEquals(new ParseError(2, 33, ParseError.Reason.WRONG_FIELD_COUNT), result.getErrors().get(0));
+        assertEquals(new ParseError(6, 33 + 4 * 13, ParseError.Reason.WRONG_FIELD_COUNT), result.getErrors().get(4));
+    }
+
+    @Test
+    public void parseFileLenientValidations() {
+        assertThrows(RecordParseException.class, () -> RecordParser.parseFileLenient(Paths.get("z", "foo", "bar.psv"), "|"));
+        assertThrows(RecordParseException.class, () -> RecordParser.parseFileLenient(Paths.get("src", "test", "resources", "records_valid.psv"), ";"));
+    }
+
+    // tests for RecordParser#stream
+    @Test
+    public void streamValidFile() throws IOException, RecordParseException {
+        Path path = Paths.get("src", "test", "resources", "records_valid.psv");
+        try (Stream<Record> records = RecordParser.stream(path, "|")) {
+            assertEquals(RecordParser.parseFile(path, "|"), records.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void streamIsLazy() throws IOException, RecordParseException {
+        // the invalid line is the second one, so only consuming the first record should succeed
+        try (Stream<Record> records = RecordParser.stream(Paths.get("src", "test", "resources", "records_invalid.psv"), "|")) {
+            assertEquals("Ada,Weaver,female,red,12/15/2037", records.findFirst().get().toString());
+        }
+    }
+
+    @Test
+    public void streamInvalidFile() throws IOException, RecordParseException {
+        try (Stream<Record> records = RecordParser.stream(Paths.get("src", "test", "resources", "records_invalid.psv"), "|")) {
+            UncheckedRecordParseException e = assertThrows(UncheckedRecordParseException.class, () -> records.count());
+            assertEquals("Expected 5 fields while parsing record, found 4", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void streamValidations() {
+        assertThrows(RecordParseException.class, () -> {
+            RecordParser.stream(Paths.get("src", "test", "resources", "records_valid.psv"), "/");
+        });
+        assertThrows(RecordParseException.class, () -> {
+            RecordParser.stream(Paths.get("z", "foo", "bar", "nonexistant.csv"), ",");
+        });
+    }
+
+    // tests for RecordParser#parseFileParallel
+    @Test
+    public void parseFileParallelMatchesSequential(@TempDir Path tempDir) throws IOException, RecordParseException {
+        Path path = writeLargeFile(tempDir, -1);
+        List<Record> expected = RecordParser.parseFile(path, "|");
+        assertEquals(expected, RecordParser.parseFileParallel(path, "|", 4, 0));
+        assertEquals(expected, RecordParser.parseFileParallel(path, "|", 1, 0));
+        assertEquals(expected, RecordParser.parseFileParallel(path, "|"));
+    }
+
+    @Test
+    public void parseFileParallelReportsFirstInvalidLine(@TempDir Path tempDir) throws IOException {
+        Path path = writeLargeFile(tempDir, 80_000);
+        RecordParseException expected = assertThrows(RecordParseException.class, () -> RecordParser.parseFile(path, "|"));
+        RecordParseException actual = assertThrows(RecordParseException.class, () -> RecordParser.parseFileParallel(path, "|", 4, 0));
+        assertEquals(80_000, expected.getLineNumber());
+        assertEquals(expected.getLineNumber(), actual.getLineNumber());
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    @Test
+    public void parseFileLineNumbers() {
+        Path path = Paths.get("src", "test", "resources", "records_invalid.psv");
+        assertEquals(2, assertThrows(RecordParseException.class, () -> RecordParser.parseFile(path, "|")).getLineNumber());
+        assertEquals(2, assertThrows(RecordParseException.class, () -> RecordParser.parseFileMapped(path, "|")).getLineNumber());
+        assertEquals(-1, assertThrows(RecordParseException.class, () -> RecordParser.parseLine("", "|")).getLineNumber());
+    }
+
+    /**
+     * Writes a file a few MB in size, large enough to be split up by the parallel parser, optionally with an invalid line.
+     */
+    private Path writeLargeFile(Path tempDir, int invalidLine) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 100_000; i++) {
+            if (i == invalidLine) {
+                content.append("Invalid|Line|other|red|01/01/2000\n");
+            } else {
+                content.append("Last").append(i).append("|First").append(i).append(i % 2 == 0 ? "|male" : "|female")
+                        .append("|blue|0").append(i % 9 + 1).append("/1").append(i % 9).append("/19").append(i % 90 + 10).append('\n');
+            }
+        }
+        Path path = tempDir.resolve("large.psv");
+        Files.write(path, content.toString().getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    /**
+     * Writes the content to a file and asserts both file parsers produce the same records, or fail with the same message.
+     */
+    private void assertMappedMatches(Path tempDir, String content, String delimiter) throws IOException {
+        Path path = Files.createTempFile(tempDir, "records", ".txt");
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+
+        List<Record> expected = null;
+        String expectedError = null;
+        try {
+            expected = RecordParser.parseFile(path, delimiter);
+        } catch (RecordParseException e) {
+            expectedError = e.getMessage();
+        }
+
+        try {
+            assertEquals(expected, RecordParser.parseFileMapped(path, delimiter));
+        } catch (RecordParseException e) {
+            assertEquals(expectedError, e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,104 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecordSnapshotTest {
+
+    @Test
+    public void convertRoundTrip(@TempDir Path tempDir) throws IOException, RecordParseException {
+        Path input = Paths.get("src", "test", "resources", "records_valid.psv");
+        Path snapshot = tempDir.resolve("records.snapshot");
+        RecordSnapshot.convert(input, "|", snapshot);
+
+        RecordBatch batch = RecordSnapshot.read(snapshot);
+        assertEquals(RecordParser.parseFile(input, "|"), batch.asRecords());
+        assertEquals(8, batch.getDictionarySize());
+    }
+
+    @Test
+    public void roundTripNonAscii(@TempDir Path tempDir) throws IOException {
+        RecordBatch batch = new RecordBatch();
+        batch.add("M\u00fcller", "J\u00f6rg", Gender.MALE, "gr\u00fcn", -25000);
+        batch.add("", "Ada", Gender.FEMALE, "red", 2_000_000);
+        Path snapshot = tempDir.resolve("records.snapshot");
+        RecordSnapshot.write(batch, snapshot);
+
+        assertEquals(batch.asRecords(), RecordSnapshot.read(snapshot).asRecords());
+    }
+
+    @Test
+    public void readEmpty(@TempDir Path tempDir) throws IOException {
+        Path snapshot = tempDir.resolve("records.snapshot");
+        RecordSnapshot.write(new RecordBatch(), snapshot);
+        assertEquals(0, RecordSnapshot.read(snapshot).size());
+    }
+
+    @Test
+    public void readAppendsToBatch(@TempDir Path tempDir) throws IOException {
+        RecordBatch first = new RecordBatch();
+        first.add("Weaver", "Ada", Gender.FEMALE, "red", 100);
+        first.add("Bass", "Kobe", Gender.MALE, "green", 200);
+        Path snapshot = tempDir.resolve("records.snapshot");
+        RecordSnapshot.write(first, snapshot);
+
+        // the existing batch already has different ids for some of the same values
+        RecordBatch batch = new RecordBatch();
+        batch.add("Murray", "Riya", Gender.FEMALE, "green", 300);
+        RecordSnapshot.read(snapshot, batch);
+
+        List<Record> expected = new ArrayList<>();
+        expected.add(new Record("Murray", "Riya", Gender.FEMALE, "green", 300));
+        expected.addAll(first.asRecords());
+        assertEquals(expected, batch.asRecords());
+        assertEquals(batch.getFavoriteColorId(0), batch.getFavoriteColorId(2));
+    }
+
+    @Test
+    public void readCorruptChecksum(@TempDir Path tempDir) throws IOException, RecordParseException {
+        Path snapshot = tempDir.resolve("records.snapshot");
+        RecordSnapshot.convert(Paths.get("src", "test", "resources", "records_valid.psv"), "|", snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> RecordSnapshot.read(snapshot));
+        assertTrue(e.getMessage().contains("checksum"));
+    }
+
+    @Test
+    public void readTruncated(@TempDir Path tempDir) throws IOException, RecordParseException {
+        Path snapshot = tempDir.resolve("records.snapshot");
+        RecordSnapshot.convert(Paths.get("src", "test", "resources", "records_valid.psv"), "|", snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 10));
+
+        assertThrows(IOException.class, () -> RecordSnapshot.read(snapshot));
+    }
+
+    @Test
+    public void readNotASnapshot() {
+        IOException e = assertThrows(IOException.class, () -> RecordSnapshot.read(Paths.get("src", "test", "resources", "records_valid.psv")));
+        assertTrue(e.getMessage().startsWith("Invalid snapshot"));
+    }
+
+    @Test
+    public void readTooSmall(@TempDir Path tempDir) throws IOException {
+        Path snapshot = tempDir.resolve("records.snapshot");
+        Files.write(snapshot, "RHSN".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> RecordSnapshot.read(snapshot));
+    }
+}
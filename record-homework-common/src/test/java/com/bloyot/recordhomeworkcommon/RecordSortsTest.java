@@ -0,0 +1,125 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class RecordSortsTest {
+
+    @Test
+    public void sortByBirthDate() {
+        Comparator<Record> comparator = Comparator.comparingInt(Record::dateOfBirthEpochDay);
+        // a narrow range of dates takes a single pass, a wide one two
+        assertSameOrder(records(5000, 10, 1000), RecordSorts::sortByBirthDate, comparator);
+        assertSameOrder(records(5000, 10, 1_000_000), RecordSorts::sortByBirthDate, comparator);
+        List<Record> extremes = records(1000, 10, 100);
+        extremes.add(new Record("Min", "First", Gender.MALE, "red", Integer.MIN_VALUE));
+        extremes.add(new Record("Max", "First", Gender.MALE, "red", Integer.MAX_VALUE));
+        extremes.add(0, new Record("Max", "Second", Gender.MALE, "red", Integer.MAX_VALUE));
+        assertSameOrder(extremes, RecordSorts::sortByBirthDate, comparator);
+    }
+
+    @Test
+    public void sortByLastName() {
+        for (boolean descending : new boolean[]{false, true}) {
+            Comparator<Record> comparator = Comparator.comparing(Record::getLastName);
+            if (descending) {
+                comparator = comparator.reversed();
+            }
+            for (int names : new int[]{3, 200, 100_000}) {
+                assertSameOrder(records(5000, names, 1000), records -> RecordSorts.sortByLastName(records, descending), comparator);
+            }
+        }
+    }
+
+    @Test
+    public void sortByGenderThenLastName() {
+        for (boolean descending : new boolean[]{false, true}) {
+            Comparator<Record> byGender = Comparator.comparing(Record::getGender);
+            Comparator<Record> comparator = (descending ? byGender.reversed() : byGender).thenComparing(Record::getLastName);
+            for (int names : new int[]{3, 200, 100_000}) {
+                assertSameOrder(records(5000, names, 1000), records -> RecordSorts.sortByGenderThenLastName(records, descending),
+                        comparator);
+            }
+        }
+    }
+
+    @Test
+    public void sortByCollation() {
+        for (boolean caseSensitive : new boolean[]{true, false}) {
+            RecordCollation collation = new RecordCollation(Locale.ROOT, caseSensitive);
+            for (boolean descending : new boolean[]{false, true}) {
+                Comparator<Record> lastName = descending ? collation.lastNameOrder().reversed() : collation.lastNameOrder();
+                Comparator<Record> byGender = Comparator.comparing(Record::getGender);
+                Comparator<Record> genderThenLastName = (descending ? byGender.reversed() : byGender).thenComparing(collation.lastNameOrder());
+                for (int names : new int[]{3, 200, 100_000}) {
+                    assertSameOrder(collatedRecords(5000, names), records -> RecordSorts.sortByLastName(records, descending, collation),
+                            lastName);
+                    assertSameOrder(collatedRecords(5000, names),
+                            records -> RecordSorts.sortByGenderThenLastName(records, descending, collation), genderThenLastName);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sortLinkedList() {
+        List<Record> records = new LinkedList<>(records(100, 10, 1000));
+        List<Record> expected = new ArrayList<>(records);
+        expected.sort(Comparator.comparingInt(Record::dateOfBirthEpochDay));
+        RecordSorts.sortByBirthDate(records);
+        assertEquals(expected, records);
+    }
+
+    /**
+     * Checks a sort puts the exact same instances in the same order as a stable sort with the comparator, so equal records
+     * have to keep their order too.
+     */
+    private static void assertSameOrder(List<Record> records, Consumer<List<Record>> sort, Comparator<Record> comparator) {
+        List<Record> expected = new ArrayList<>(records);
+        expected.sort(comparator);
+        List<Record> sorted = new ArrayList<>(records);
+        sort.accept(sorted);
+        assertEquals(expected.size(), sorted.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), sorted.get(i), "index " + i);
+        }
+    }
+
+    /**
+     * Records with names that only differ by case or accents, which a collation orders differently to their chars.
+     */
+    private static List<Record> collatedRecords(int count, int names) {
+        List<Record> records = records(count, names, 100);
+        String[] variants = {"", "smith", "Smith", "SMITH", "\u00e9", "e\u0301", "E", "Zed", "zed"};
+        for (int i = 0; i < records.size(); i += 3) {
+            Record record = records.get(i);
+            record.setLastName(variants[i % variants.length] + record.getLastName());
+        }
+        return records;
+    }
+
+    /**
+     * @param names - how many different last names to pick from, which decides how many ties there are
+     * @param days - how wide a range of dates of birth to pick from
+     */
+    private static List<Record> records(int count, int names, int days) {
+        String[] prefixes = {"", "Mc", "O'", "Van ", "M\u00fcl", "\u00ff", "\u0100", "\u4e2d", "Mc\u4e2d", "Smith"};
+        return new RandomRecords(names * 31L + days)
+                .lastName((random, i) -> {
+                    int name = random.nextInt(names);
+                    // prefixes of each other, chars on both sides of latin-1, and empty names
+                    return prefixes[name % prefixes.length] + (name % 7 == 0 ? "" : Integer.toString(name, 36));
+                })
+                .epochDays(-days / 2, days)
+                .generate(count);
+    }
+}
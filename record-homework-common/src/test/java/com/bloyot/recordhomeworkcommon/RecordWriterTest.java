@@ -0,0 +1,93 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RecordWriterTest {
+
+    @Test
+    public void matchesToString() throws IOException {
+        List<Record> records = records(50_000);
+        // more than fills the buffer a few times over, with a non-ASCII name and a huge one
+        records.add(new Record("Garc\u00eda", "Zo\u00eb", Gender.FEMALE, "\u9752", LocalDate.of(1980, 2, 29)));
+        records.add(new Record(repeat('x', RecordWriter.BUFFER_SIZE), "First", Gender.MALE, "red", LocalDate.of(-50, 6, 1)));
+        records.add(new Record("Last", "First", Gender.MALE, "red", LocalDate.of(12345, 1, 31)));
+
+        StringBuilder expected = new StringBuilder();
+        for (Record record : records) {
+            expected.append(record).append(System.lineSeparator());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (RecordWriter writer = new RecordWriter(out, ",")) {
+            for (Record record : records) {
+                writer.write(record);
+            }
+        }
+        assertEquals(expected.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void roundTrip(@TempDir Path tempDir) throws IOException, RecordParseException {
+        List<Record> records = records(10_000);
+        for (String delimiter : RecordParser.VALID_DELIMITERS) {
+            Path path = tempDir.resolve("records.txt");
+            try (RecordWriter writer = RecordWriter.open(path, delimiter)) {
+                for (Record record : records) {
+                    writer.write(record);
+                }
+            }
+            assertEquals(records, RecordParser.parseFile(path, delimiter));
+        }
+    }
+
+    @Test
+    public void flush() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RecordWriter writer = new RecordWriter(out, "|");
+        writer.write(new Record("Weaver", "Ada", Gender.FEMALE, "red", LocalDate.of(2037, 12, 15)));
+        assertEquals(0, out.size());
+        writer.flush();
+        assertEquals("Weaver|Ada|female|red|12/15/2037" + System.lineSeparator(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void invalidDelimiter() {
+        assertThrows(IllegalArgumentException.class, () -> new RecordWriter(new ByteArrayOutputStream(), ";"));
+    }
+
+    @Test
+    public void openReplacesFile(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("records.csv");
+        Files.write(path, "something much longer than a single record, which has to be gone afterwards".getBytes(StandardCharsets.UTF_8));
+        try (RecordWriter writer = RecordWriter.open(path, ",")) {
+            writer.write(new Record("Weaver", "Ada", Gender.FEMALE, "red", LocalDate.of(2037, 12, 15)));
+        }
+        assertEquals("Weaver,Ada,female,red,12/15/2037" + System.lineSeparator(), new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    private static List<Record> records(int count) {
+        return new RandomRecords(3)
+                .lastName((random, i) -> "Last" + random.nextInt(1000))
+                .favoriteColor((random, i) -> "color" + random.nextInt(10))
+                .epochDays(-30_000, 60_000)
+                .generate(count);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,97 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StringPoolTest {
+
+    @Test
+    public void internReturnsCanonicalInstance() {
+        StringPool pool = new StringPool();
+        String first = pool.intern(new String("green"));
+        String second = pool.intern(new String("green"));
+
+        assertEquals("green", first);
+        assertSame(first, second);
+        assertEquals(1, pool.size());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(0.5, pool.getHitRate());
+    }
+
+    @Test
+    public void internFromBytes() {
+        StringPool pool = new StringPool();
+        ByteBuffer bytes = ByteBuffer.wrap("Ada|green|green".getBytes(StandardCharsets.US_ASCII));
+
+        String fromBytes = pool.intern(bytes, 4, 9);
+        assertEquals("green", fromBytes);
+        assertSame(fromBytes, pool.intern(bytes, 10, 15));
+        assertSame(fromBytes, pool.intern(new String("green")));
+        assertEquals("", pool.intern(bytes, 3, 3));
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void poolIsBounded() {
+        StringPool pool = new StringPool(2, 4);
+        String a = pool.intern(new String("a"));
+        pool.intern(new String("b"));
+        String c = new String("c");
+
+        // full, so new values are returned as is but existing values are still found
+        assertSame(c, pool.intern(c));
+        assertSame(a, pool.intern(new String("a")));
+        assertEquals(2, pool.size());
+
+        // too long to pool
+        String longValue = new String("magenta");
+        assertSame(longValue, pool.intern(longValue));
+        assertEquals("magenta", pool.intern(ByteBuffer.wrap("magenta".getBytes(StandardCharsets.US_ASCII)), 0, 7));
+    }
+
+    @Test
+    public void internConcurrently() throws Exception {
+        StringPool pool = new StringPool();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int t = 0; t < futures.length; t++) {
+                futures[t] = executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        assertSame(pool.intern("value" + (i % 100)), pool.intern("value" + (i % 100)));
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        assertEquals(100, pool.size());
+    }
+
+    @Test
+    public void parserSharesFieldInstances() throws IOException, RecordParseException {
+        StringPool pool = new StringPool();
+        List<Record> records = RecordParser.parseFileMapped(Paths.get("src", "test", "resources", "records_valid.psv"), "|", pool);
+
+        assertEquals(RecordParser.parseFile(Paths.get("src", "test", "resources", "records_valid.psv"), "|"), records);
+        assertSame(records.get(1).getFavoriteColor(), records.get(2).getFavoriteColor());
+        assertSame(records.get(1).getFavoriteColor(), RecordParser.parseLine("Kobe|Bass|male|green|10/11/1949", "|", pool).getFavoriteColor());
+        assertTrue(pool.getHits() > 0);
+    }
+}
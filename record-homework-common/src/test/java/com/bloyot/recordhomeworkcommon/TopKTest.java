@@ -0,0 +1,51 @@
+package com.bloyot.recordhomeworkcommon;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TopKTest {
+
+    @Test
+    public void firstElements() {
+        Random random = new Random(7);
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            values.add(random.nextInt(100_000));
+        }
+        List<Integer> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+
+        for (int k : new int[]{1, 10, 500, 10_000, 20_000}) {
+            TopK<Integer> top = new TopK<>(k, Comparator.naturalOrder());
+            values.forEach(top::add);
+            assertEquals(sorted.subList(0, Math.min(k, sorted.size())), top.toSortedList());
+            assertEquals(Math.min(k, sorted.size()), top.size());
+        }
+    }
+
+    @Test
+    public void stable() {
+        // only compares the first letter, so ties have to come out in the order they were added
+        List<String> values = Arrays.asList("b1", "a1", "c1", "a2", "b2", "a3", "a4", "b3");
+        TopK<String> top = new TopK<>(5, Comparator.comparing(value -> value.charAt(0)));
+        values.forEach(top::add);
+        assertEquals(Arrays.asList("a1", "a2", "a3", "a4", "b1"), top.toSortedList());
+    }
+
+    @Test
+    public void zero() {
+        TopK<Integer> top = new TopK<>(0, Comparator.naturalOrder());
+        top.add(1);
+        assertEquals(Collections.emptyList(), top.toSortedList());
+        assertThrows(IllegalArgumentException.class, () -> new TopK<Integer>(-1, Comparator.naturalOrder()));
+    }
+}